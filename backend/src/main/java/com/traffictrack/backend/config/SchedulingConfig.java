@@ -0,0 +1,12 @@
+package com.traffictrack.backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled maintenance jobs such as traffic data retention
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,69 @@
+package com.traffictrack.backend.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * traffic_data and traffic_incidents used to take IDENTITY ids. Their new sequences start at 1,
+ * so on Postgres move each sequence past the highest existing id before any insert runs.
+ * Runs after the entity manager factory so the schema update has created the sequences.
+ */
+@Configuration
+@DependsOn("entityManagerFactory")
+public class SequenceAlignmentConfig {
+
+    private static final Logger LOGGER = Logger.getLogger(SequenceAlignmentConfig.class.getName());
+
+    // Must match allocationSize on the entities' @SequenceGenerator
+    private static final int ALLOCATION_SIZE = 50;
+    private static final String[][] SEQUENCES = {
+            {"traffic_data", "traffic_data_seq"},
+            {"traffic_incidents", "traffic_incidents_seq"},
+    };
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    public SequenceAlignmentConfig(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @PostConstruct
+    public void alignSequences() {
+        if (!isPostgres()) return;
+        for (String[] entry : SEQUENCES) {
+            String table = entry[0];
+            String sequence = entry[1];
+            try {
+                // The pooled optimizer hands out (value - allocationSize, value], so keep a full block of headroom
+                Long value = jdbcTemplate.queryForObject(
+                        "SELECT setval('" + sequence + "', GREATEST((SELECT COALESCE(MAX(id), 0) FROM " + table + ") + "
+                                + ALLOCATION_SIZE + ", (SELECT last_value FROM " + sequence + ")))",
+                        Long.class);
+                LOGGER.info("Sequence " + sequence + " aligned at " + value);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not align sequence " + sequence, e);
+            }
+        }
+    }
+
+    private boolean isPostgres() {
+        try (Connection connection = dataSource.getConnection()) {
+            return "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not determine database type", e);
+            return false;
+        }
+    }
+}
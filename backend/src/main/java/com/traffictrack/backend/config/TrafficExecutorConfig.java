@@ -0,0 +1,69 @@
+package com.traffictrack.backend.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TrafficExecutorConfig {
+
+    private static final Logger LOGGER = Logger.getLogger(TrafficExecutorConfig.class.getName());
+
+    /**
+     * Executor for the live traffic pipeline: HTTP client callbacks, response parsing and persistence.
+     * "auto" prefers virtual threads when the running JVM has them and falls back to a bounded pool.
+     */
+    @Bean(name = "trafficExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService trafficExecutor(
+            @Value("${traffic.executor.mode:auto}") String mode,
+            @Value("${traffic.executor.pool-size:16}") int poolSize,
+            @Value("${traffic.executor.queue-capacity:2048}") int queueCapacity) {
+
+        if (!"pool".equalsIgnoreCase(mode)) {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) {
+                LOGGER.info("Traffic executor using virtual threads");
+                return virtual;
+            }
+            if ("virtual".equalsIgnoreCase(mode)) {
+                LOGGER.warning("Virtual threads not supported by this JVM. Falling back to a bounded pool.");
+            }
+        }
+
+        LOGGER.info("Traffic executor using a bounded pool of " + poolSize + " threads");
+        return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), namedThreadFactory("traffic-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Look up Executors.newVirtualThreadPerTaskExecutor reflectively so the code still runs on Java 17
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    public static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
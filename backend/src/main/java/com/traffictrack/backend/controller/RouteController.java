@@ -0,0 +1,140 @@
+package com.traffictrack.backend.controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.traffictrack.backend.service.RoadGraphService;
+import com.traffictrack.backend.service.SwarmState;
+
+@RestController
+@RequestMapping("/api/routes")
+public class RouteController {
+
+    private final RoadGraphService roadGraphService;
+
+    public RouteController(RoadGraphService roadGraphService) {
+        this.roadGraphService = roadGraphService;
+    }
+
+    public static class MatrixRequest {
+        public List<Long> sources;
+        public List<Long> targets;
+    }
+
+    /**
+     * Fastest route under current congestion, between intersection ids (from, to) or the
+     * intersections nearest to two points (fromLat, fromLng, toLat, toLng)
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> route(@RequestParam(required = false) Long from,
+                                     @RequestParam(required = false) Long to,
+                                     @RequestParam(required = false) Double fromLat,
+                                     @RequestParam(required = false) Double fromLng,
+                                     @RequestParam(required = false) Double toLat,
+                                     @RequestParam(required = false) Double toLng) {
+        long started = System.nanoTime();
+        RoadGraphService.Graph graph = roadGraphService.graph();
+        int source = locate(graph, from, fromLat, fromLng, "from");
+        int target = locate(graph, to, toLat, toLng, "to");
+        RoadGraphService.Route route = roadGraphService.route(graph, source, target);
+        if (route == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No route between the given intersections");
+        }
+
+        SwarmState.Grid grid = graph.grid();
+        List<Long> intersections = new ArrayList<>(route.intersections().length);
+        for (int i : route.intersections()) intersections.add(grid.intersectionId(i));
+        List<Long> roads = new ArrayList<>(route.roads().length);
+        for (int r : route.roads()) roads.add(grid.roadId(r));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("from", grid.intersectionId(source));
+        result.put("to", grid.intersectionId(target));
+        result.put("travelTimeSeconds", route.travelSeconds());
+        result.put("distanceKm", route.distanceKm());
+        result.put("intersections", intersections);
+        result.put("roads", roads);
+        result.put("path", route.coordinates(grid));
+        result.put("version", grid.version());
+        result.put("settled", route.settled());
+        result.put("elapsedMs", (System.nanoTime() - started) / 1_000_000.0);
+        return result;
+    }
+
+    /**
+     * Travel seconds between every source and target intersection id; null where unreachable
+     */
+    @PostMapping(value = "/matrix", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> matrix(@RequestBody MatrixRequest request) {
+        if (request == null || request.sources == null || request.targets == null
+                || request.sources.isEmpty() || request.targets.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "sources and targets are required");
+        }
+        long started = System.nanoTime();
+        RoadGraphService.Graph graph = roadGraphService.graph();
+        int[] sources = indexes(graph, request.sources);
+        int[] targets = indexes(graph, request.targets);
+        double[][] seconds;
+        try {
+            seconds = roadGraphService.matrix(graph, sources, targets);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        List<List<Double>> durations = new ArrayList<>(seconds.length);
+        for (double[] row : seconds) {
+            List<Double> values = new ArrayList<>(row.length);
+            for (double value : row) values.add(Double.isNaN(value) ? null : value);
+            durations.add(values);
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("sources", request.sources);
+        result.put("targets", request.targets);
+        result.put("durations", durations);
+        result.put("version", graph.grid().version());
+        result.put("elapsedMs", (System.nanoTime() - started) / 1_000_000.0);
+        return result;
+    }
+
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> getStats() {
+        return roadGraphService.getStats();
+    }
+
+    private int locate(RoadGraphService.Graph graph, Long id, Double lat, Double lng, String name) {
+        if (id != null) return index(graph, id);
+        if (lat == null || lng == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " or " + name + "Lat and " + name + "Lng are required");
+        }
+        int nearest = roadGraphService.nearestIntersection(graph, lat, lng);
+        if (nearest < 0) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "The road network is empty");
+        return nearest;
+    }
+
+    private static int index(RoadGraphService.Graph graph, long id) {
+        int index = graph.grid().indexOfIntersection(id);
+        if (index < 0) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown intersection " + id);
+        return index;
+    }
+
+    private static int[] indexes(RoadGraphService.Graph graph, List<Long> ids) {
+        int[] result = new int[ids.size()];
+        for (int k = 0; k < result.length; k++) {
+            if (ids.get(k) == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Intersection ids must not be null");
+            result[k] = index(graph, ids.get(k));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,52 @@
+package com.traffictrack.backend.controller;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.traffictrack.backend.geo.BoundingBox;
+import com.traffictrack.backend.service.LiveUpdateHub;
+import com.traffictrack.backend.service.SwarmService;
+
+@RestController
+@RequestMapping("/api/stream")
+public class StreamController {
+
+    private final LiveUpdateHub liveUpdateHub;
+    private final SwarmService swarmService;
+
+    public StreamController(LiveUpdateHub liveUpdateHub, SwarmService swarmService) {
+        this.liveUpdateHub = liveUpdateHub;
+        this.swarmService = swarmService;
+    }
+
+    /**
+     * Server-sent events for a viewport: "hello" with the current swarm version, then "swarm"
+     * frames of changed intersections and roads and "traffic" frames of fresh readings.
+     * Reconnect with a new bbox when the viewport changes; on reconnect, catch up through
+     * /api/swarm/changes?since=&lt;last version seen&gt;.
+     * 
+     * @param bbox minLng,minLat,maxLng,maxLat
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam String bbox) {
+        BoundingBox box = BoundingBox.parse(bbox);
+        if (box == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "bbox must be minLng,minLat,maxLng,maxLat with min <= max");
+        }
+        return liveUpdateHub.subscribe(box.minLat(), box.minLng(), box.maxLat(), box.maxLng(),
+                Map.of("version", swarmService.getVersion()));
+    }
+
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> getStats() {
+        return liveUpdateHub.getStats();
+    }
+}
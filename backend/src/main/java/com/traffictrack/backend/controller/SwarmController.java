@@ -1,34 +1,156 @@
 package com.traffictrack.backend.controller;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+import com.traffictrack.backend.service.SignalOptimizerService;
 import com.traffictrack.backend.service.SwarmService;
+import com.traffictrack.backend.service.SwarmState;
+import com.traffictrack.backend.service.SwarmTileService;
+import com.traffictrack.backend.service.TrafficSimulationService;
 
 @RestController
 @RequestMapping("/api/swarm")
 public class SwarmController {
 
     private final SwarmService swarmService;
+    private final SwarmState swarmState;
+    private final SwarmTileService swarmTileService;
+    private final TrafficSimulationService trafficSimulationService;
+    private final SignalOptimizerService signalOptimizerService;
 
-    public SwarmController(SwarmService swarmService) {
+    public SwarmController(SwarmService swarmService, SwarmState swarmState, SwarmTileService swarmTileService,
+                           TrafficSimulationService trafficSimulationService, SignalOptimizerService signalOptimizerService) {
         this.swarmService = swarmService;
+        this.swarmState = swarmState;
+        this.swarmTileService = swarmTileService;
+        this.trafficSimulationService = trafficSimulationService;
+        this.signalOptimizerService = signalOptimizerService;
     }
 
     /**
-     * Get swarm data from database.
+     * Get the current swarm, loaded from the database on first use.
      * If database is empty, it will automatically initialize with default grid data.
      */
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public Map<String, Object> getSwarm() {
-        return swarmService.getSwarmData();
+    public ResponseEntity<byte[]> getSwarm(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        SwarmService.EncodedSnapshot snapshot = swarmService.getEncodedSnapshot();
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = gzip ? snapshot.gzipEtag() : snapshot.etag();
+
+        // Clients must revalidate, but an unchanged version costs only a 304
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (matches(ifNoneMatch, snapshot.etag(), snapshot.gzipEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(snapshot.gzip());
+        }
+        return response.contentType(MediaType.APPLICATION_JSON).body(snapshot.json());
+    }
+
+    /**
+     * Swarm features inside one web map tile: intersections and roads from the detail zoom in,
+     * aggregated congestion cells further out ("lod": "features" or "cells")
+     */
+    @GetMapping(value = "/tiles/{z}/{x}/{y}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getTile(@PathVariable int z, @PathVariable int x, @PathVariable int y,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        SwarmTileService.Tile tile = swarmTileService.getTile(z, x, y);
+        if (tile == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No tile " + z + "/" + x + "/" + y);
+        }
+        if (matches(ifNoneMatch, tile.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tile.etag()).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(tile.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(tile.json());
+    }
+
+    /**
+     * If-None-Match uses weak comparison, so either encoding's tag, with or without W/, matches
+     */
+    private static boolean matches(String ifNoneMatch, String... etags) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+            if (candidate.equals("*") || Arrays.asList(etags).contains(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) continue;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Intersections and roads changed since the given version. Clients without a version,
+     * or too far behind, get a full snapshot with "full": true.
+     */
+    @GetMapping(value = "/changes", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> getChanges(@RequestParam(required = false) Long since) {
+        return swarmService.getChanges(since != null ? since : -1);
+    }
+
+    /**
+     * In-memory state, write-behind and tile cache counters
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>(swarmState.getStats());
+        stats.put("tiles", swarmTileService.getStats());
+        stats.put("simulation", trafficSimulationService.getStats());
+        stats.put("optimizer", signalOptimizerService.getStats());
+        return stats;
     }
 
     /**
@@ -42,16 +164,37 @@ public class SwarmController {
     }
 
     /**
-     * Update congestion levels for all intersections and roads
+     * Advance the traffic simulation by one tick now, on top of its scheduled ticks
      */
     @PostMapping("/update-congestion")
     public ResponseEntity<String> updateCongestion() {
-        swarmService.updateCongestion();
+        trafficSimulationService.tick();
         return ResponseEntity.ok("Congestion updated successfully");
     }
 
     /**
-     * Clear all swarm data from database
+     * Start a signal timing optimization in the background; 409 with its progress if one is
+     * already running. Poll GET /optimize for progress and the result.
+     */
+    @PostMapping("/optimize")
+    public ResponseEntity<Map<String, Object>> optimize(@RequestParam(required = false) Integer particles,
+                                                        @RequestParam(required = false) Integer iterations,
+                                                        @RequestParam(defaultValue = "true") boolean apply) {
+        if ((particles != null && (particles < 2 || particles > 1000)) || (iterations != null && (iterations < 1 || iterations > 10000))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "particles must be 2-1000 and iterations 1-10000");
+        }
+        boolean started = signalOptimizerService.start(particles, iterations, apply);
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(signalOptimizerService.getProgress());
+    }
+
+    @GetMapping("/optimize")
+    public Map<String, Object> getOptimization() {
+        return signalOptimizerService.getProgress();
+    }
+
+    /**
+     * Clear all swarm data from memory and database
      */
     @DeleteMapping
     public ResponseEntity<String> clearSwarm() {
@@ -1,9 +1,16 @@
 package com.traffictrack.backend.controller;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -13,18 +20,55 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.traffictrack.backend.geo.BoundingBox;
+import com.traffictrack.backend.geo.Geohash;
 import com.traffictrack.backend.model.TrafficData;
 import com.traffictrack.backend.model.TrafficIncident;
+import com.traffictrack.backend.provider.TrafficProviderEngine;
+import com.traffictrack.backend.service.ActiveIncidentIndex;
+import com.traffictrack.backend.service.GridTrafficService;
 import com.traffictrack.backend.service.TrafficApiService;
+import com.traffictrack.backend.service.TrafficDataCache;
+import com.traffictrack.backend.service.TrafficHistoryStore;
+import com.traffictrack.backend.service.TrafficIncidentService;
+import com.traffictrack.backend.service.TrafficProximityService;
+import com.traffictrack.backend.service.TrafficRetentionService;
 
 @RestController
 @RequestMapping("/api/traffic")
 public class TrafficController {
 
+    private static final Duration HISTORY_WINDOW = Duration.ofHours(6);
+
     private final TrafficApiService trafficApiService;
+    private final GridTrafficService gridTrafficService;
+    private final TrafficDataCache trafficDataCache;
+    private final TrafficProviderEngine providerEngine;
+    private final TrafficIncidentService trafficIncidentService;
+    private final TrafficRetentionService trafficRetentionService;
+    private final TrafficProximityService trafficProximityService;
+    private final ActiveIncidentIndex activeIncidentIndex;
+    private final TrafficHistoryStore trafficHistoryStore;
+    private final double maxRadiusKm;
 
-    public TrafficController(TrafficApiService trafficApiService) {
+    public TrafficController(TrafficApiService trafficApiService, GridTrafficService gridTrafficService,
+                             TrafficDataCache trafficDataCache, TrafficProviderEngine providerEngine,
+                             TrafficIncidentService trafficIncidentService,
+                             TrafficRetentionService trafficRetentionService,
+                             TrafficProximityService trafficProximityService,
+                             ActiveIncidentIndex activeIncidentIndex,
+                             TrafficHistoryStore trafficHistoryStore,
+                             @Value("${traffic.max-radius-km:50}") double maxRadiusKm) {
         this.trafficApiService = trafficApiService;
+        this.gridTrafficService = gridTrafficService;
+        this.trafficDataCache = trafficDataCache;
+        this.providerEngine = providerEngine;
+        this.trafficIncidentService = trafficIncidentService;
+        this.trafficRetentionService = trafficRetentionService;
+        this.trafficProximityService = trafficProximityService;
+        this.activeIncidentIndex = activeIncidentIndex;
+        this.trafficHistoryStore = trafficHistoryStore;
+        this.maxRadiusKm = maxRadiusKm;
     }
 
     /**
@@ -36,28 +80,29 @@ public class TrafficController {
      * @return Traffic data including congestion, speed, incidents
      */
     @GetMapping(value = "/live", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Map<String, Object>> getLiveTrafficData(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getLiveTrafficData(
             @RequestParam Double lat,
             @RequestParam Double lng,
             @RequestParam(defaultValue = "5.0") Double radius) {
         
-        try {
-            TrafficData trafficData = trafficApiService.fetchLiveTrafficData(lat, lng, radius);
-            
-            if (trafficData == null) {
-                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                        .body(Map.of("error", "Unable to fetch traffic data"));
-            }
-            
-            Map<String, Object> response = buildTrafficResponse(trafficData);
-            return ResponseEntity.ok(response);
-            
-        } catch (Exception e) {
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Failed to fetch traffic data");
-            error.put("message", e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        ResponseEntity<Map<String, Object>> invalid = validateRadius(radius);
+        if (invalid != null) {
+            return CompletableFuture.completedFuture(invalid);
         }
+        return trafficApiService.fetchLiveTrafficDataAsync(lat, lng, radius)
+                .thenCombine(trafficIncidentService.fetchAround(lat, lng, radius), (trafficData, incidents) -> {
+                    if (trafficData == null) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .body(Map.<String, Object>of("error", "Unable to fetch traffic data"));
+                    }
+                    return ResponseEntity.ok(buildTrafficResponse(trafficData, incidents));
+                })
+                .exceptionally(e -> {
+                    Map<String, Object> error = new HashMap<>();
+                    error.put("error", "Failed to fetch traffic data");
+                    error.put("message", e.getMessage());
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+                });
     }
     
     /**
@@ -68,82 +113,310 @@ public class TrafficController {
      * @param centerLng Center longitude
      * @param radius Overall radius in km
      * @param gridSize Number of points per side (e.g., 3 = 3x3 grid = 9 points)
-     * @return List of traffic data for each grid point
+     * @return List of traffic data for each grid point; cells that missed the deadline are marked pending
      */
     @GetMapping(value = "/grid", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Map<String, Object>> getGridTrafficData(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getGridTrafficData(
             @RequestParam Double centerLat,
             @RequestParam Double centerLng,
             @RequestParam(defaultValue = "5.0") Double radius,
             @RequestParam(defaultValue = "3") Integer gridSize) {
         
-        try {
-            Map<String, Object> response = new HashMap<>();
-            response.put("center", Map.of("lat", centerLat, "lng", centerLng));
-            response.put("radius", radius);
-            response.put("gridSize", gridSize);
-            
-            // Calculate grid points
-            double latStep = (radius * 2 / 111.0) / (gridSize - 1); // ~111km per degree
-            double lngStep = (radius * 2 / (111.0 * Math.cos(Math.toRadians(centerLat)))) / (gridSize - 1);
-            
-            double topLeftLat = centerLat + (radius / 111.0);
-            double topLeftLng = centerLng - (radius / (111.0 * Math.cos(Math.toRadians(centerLat))));
-            
-            List<Map<String, Object>> gridPoints = new java.util.ArrayList<>();
-            
-            for (int i = 0; i < gridSize; i++) {
-                for (int j = 0; j < gridSize; j++) {
-                    double lat = topLeftLat - (i * latStep);
-                    double lng = topLeftLng + (j * lngStep);
-                    
-                    TrafficData trafficData = trafficApiService.fetchLiveTrafficData(lat, lng, radius / gridSize);
-                    if (trafficData != null) {
+        ResponseEntity<Map<String, Object>> invalid = validateRadius(radius);
+        if (invalid != null) {
+            return CompletableFuture.completedFuture(invalid);
+        }
+        if (gridSize == null || gridSize < 1 || gridSize > gridTrafficService.getMaxGridSize()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Map.of("error", "gridSize must be between 1 and " + gridTrafficService.getMaxGridSize())));
+        }
+        return gridTrafficService.fetchGridAsync(centerLat, centerLng, radius, gridSize)
+                .thenApply(grid -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("center", Map.of("lat", centerLat, "lng", centerLng));
+                    response.put("radius", radius);
+                    response.put("gridSize", gridSize);
+
+                    List<Map<String, Object>> gridPoints = new java.util.ArrayList<>();
+                    for (GridTrafficService.GridCell cell : grid.getCells()) {
                         Map<String, Object> point = new HashMap<>();
-                        point.put("gridX", i);
-                        point.put("gridY", j);
-                        point.put("lat", lat);
-                        point.put("lng", lng);
-                        point.put("congestion", trafficData.getCongestionLevel());
-                        point.put("flowSpeed", trafficData.getFlowSpeed());
-                        point.put("freeFlowSpeed", trafficData.getFreeFlowSpeed());
-                        point.put("dataSource", trafficData.getDataSource());
+                        point.put("gridX", cell.getGridX());
+                        point.put("gridY", cell.getGridY());
+                        point.put("lat", cell.getLat());
+                        point.put("lng", cell.getLng());
+                        point.put("status", cell.getStatus());
+                        TrafficData trafficData = cell.getData();
+                        if (trafficData != null) {
+                            point.put("congestion", trafficData.getCongestionLevel());
+                            point.put("flowSpeed", trafficData.getFlowSpeed());
+                            point.put("freeFlowSpeed", trafficData.getFreeFlowSpeed());
+                            point.put("dataSource", trafficData.getDataSource());
+                        }
+                        if (!cell.getIncidents().isEmpty()) {
+                            point.put("incidents", buildIncidentList(cell.getIncidents()));
+                        }
                         gridPoints.add(point);
                     }
-                }
+
+                    response.put("points", gridPoints);
+                    response.put("pending", grid.getPending());
+                    response.put("elapsedMs", grid.getElapsedMillis());
+                    response.put("deadlineMs", grid.getDeadlineMillis());
+                    response.put("timestamp", System.currentTimeMillis());
+                    return ResponseEntity.ok(response);
+                })
+                .exceptionally(e -> {
+                    Map<String, Object> error = new HashMap<>();
+                    error.put("error", "Failed to fetch grid traffic data");
+                    error.put("message", e.getMessage());
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+                });
+    }
+    
+    /**
+     * Latest stored reading near a point, without calling a provider
+     * 
+     * @param lat Latitude
+     * @param lng Longitude
+     * @param radius Radius in km; matched by radius bucket
+     * @param maxAgeMinutes Ignore readings older than this
+     * @return The reading for the point's tile, or the nearest one in the adjacent tiles
+     */
+    @GetMapping(value = "/latest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getLatestReading(
+            @RequestParam Double lat,
+            @RequestParam Double lng,
+            @RequestParam(defaultValue = "5.0") Double radius,
+            @RequestParam(defaultValue = "60") Long maxAgeMinutes) {
+        
+        return trafficProximityService.findLatest(lat, lng, radius, Duration.ofMinutes(maxAgeMinutes))
+                .map(trafficData -> {
+                    Map<String, Object> response = buildTrafficResponse(trafficData, List.of());
+                    response.put("distanceKm", Geohash.distanceKm(lat, lng, trafficData.getLatitude(), trafficData.getLongitude()));
+                    return ResponseEntity.ok(response);
+                })
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "No stored reading near this location")));
+    }
+    
+    /**
+     * Stored readings and incidents nearest to a point, closest first
+     * 
+     * @param lat Latitude
+     * @param lng Longitude
+     * @param radius Radius in km; matched by radius bucket
+     * @param k Maximum number of readings and of incidents to return
+     * @param maxAgeMinutes Ignore readings and incidents older than this
+     */
+    @GetMapping(value = "/nearest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getNearestReadings(
+            @RequestParam Double lat,
+            @RequestParam Double lng,
+            @RequestParam(defaultValue = "5.0") Double radius,
+            @RequestParam(defaultValue = "5") Integer k,
+            @RequestParam(defaultValue = "60") Long maxAgeMinutes) {
+        
+        Duration maxAge = Duration.ofMinutes(maxAgeMinutes);
+        int limit = Math.max(1, Math.min(k, 100));
+        List<Map<String, Object>> readings = new java.util.ArrayList<>();
+        for (TrafficData trafficData : trafficProximityService.findNearest(lat, lng, radius, limit, maxAge)) {
+            Map<String, Object> reading = buildTrafficResponse(trafficData, List.of());
+            reading.remove("incidents");
+            reading.put("distanceKm", Geohash.distanceKm(lat, lng, trafficData.getLatitude(), trafficData.getLongitude()));
+            readings.add(reading);
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("center", Map.of("lat", lat, "lng", lng));
+        response.put("readings", readings);
+        response.put("incidents", buildIncidentList(trafficProximityService.findNearestIncidents(lat, lng, limit, maxAge)));
+        response.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Active incidents inside a bounding box, newest first, served from the in-memory index
+     * 
+     * @param bbox minLng,minLat,maxLng,maxLat
+     * @param severity Optional comma-separated severities to keep, e.g. "high,critical"
+     * @param page Zero-based page number
+     * @param size Page size (max 1000)
+     */
+    @GetMapping(value = "/incidents", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getIncidents(
+            @RequestParam String bbox,
+            @RequestParam(required = false) String severity,
+            @RequestParam(defaultValue = "0") Integer page,
+            @RequestParam(defaultValue = "100") Integer size) {
+        
+        BoundingBox box = BoundingBox.parse(bbox);
+        if (box == null) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "bbox must be minLng,minLat,maxLng,maxLat with min <= max"));
+        }
+        if (page < 0 || size < 1 || size > 1000) {
+            return ResponseEntity.badRequest().body(Map.of("error", "page must be >= 0 and size between 1 and 1000"));
+        }
+        Set<String> severities = new HashSet<>();
+        if (severity != null) {
+            for (String value : severity.split(",")) {
+                if (!value.isBlank()) severities.add(value.trim().toLowerCase());
             }
-            
-            response.put("points", gridPoints);
-            response.put("timestamp", System.currentTimeMillis());
-            
-            return ResponseEntity.ok(response);
-            
-        } catch (Exception e) {
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Failed to fetch grid traffic data");
-            error.put("message", e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
         }
+        
+        ActiveIncidentIndex.Page result = activeIncidentIndex.query(box.minLat(), box.minLng(), box.maxLat(), box.maxLng(), severities, page, size);
+        List<Map<String, Object>> incidents = new java.util.ArrayList<>();
+        for (ActiveIncidentIndex.Entry entry : result.incidents()) {
+            Map<String, Object> incidentMap = new HashMap<>();
+            incidentMap.put("id", entry.id());
+            incidentMap.put("latitude", entry.latitude());
+            incidentMap.put("longitude", entry.longitude());
+            incidentMap.put("type", entry.incidentType());
+            incidentMap.put("severity", entry.severity());
+            incidentMap.put("description", entry.description());
+            incidentMap.put("delayMinutes", entry.delayMinutes());
+            incidentMap.put("reportedAt", entry.reportedAt() != null ? entry.reportedAt().toString() : null);
+            incidents.add(incidentMap);
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("incidents", incidents);
+        response.put("page", page);
+        response.put("size", size);
+        response.put("total", result.total());
+        response.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Congestion history of the tile containing a point, from the in-memory history store
+     * 
+     * @param lat Latitude
+     * @param lng Longitude
+     * @param from Start, epoch milliseconds or ISO-8601 instant (default 6 hours before to)
+     * @param to End, epoch milliseconds or ISO-8601 instant (default now)
+     * @param step Optional bucket width, seconds or ISO-8601 duration (e.g. PT5M); without it
+     *             every reading in the range is returned
+     */
+    @GetMapping(value = "/history", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getHistory(
+            @RequestParam Double lat,
+            @RequestParam Double lng,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String step) {
+        
+        if (lat < -90 || lat > 90 || lng < -180 || lng > 180) {
+            return ResponseEntity.badRequest().body(Map.of("error", "lat must be within [-90, 90] and lng within [-180, 180]"));
+        }
+        Long toMillis = to != null ? parseInstant(to) : Long.valueOf(System.currentTimeMillis());
+        Long fromMillis = from != null ? parseInstant(from) : (toMillis != null ? toMillis - HISTORY_WINDOW.toMillis() : null);
+        if (fromMillis == null || toMillis == null || fromMillis > toMillis) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "from and to must be epoch milliseconds or ISO-8601 instants with from <= to"));
+        }
+        long stepSeconds = 0;
+        if (step != null) {
+            Long parsed = parseStepSeconds(step);
+            if (parsed == null || parsed < 1) {
+                return ResponseEntity.badRequest().body(Map.of("error", "step must be a positive number of seconds or an ISO-8601 duration"));
+            }
+            stepSeconds = parsed;
+            if ((toMillis - fromMillis) / 1000 / stepSeconds >= trafficHistoryStore.maxPoints()) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "step is too small: at most " + trafficHistoryStore.maxPoints() + " buckets per request"));
+            }
+        }
+        
+        long started = System.nanoTime();
+        TrafficHistoryStore.History history = trafficHistoryStore.query(lat, lng,
+                Math.floorDiv(fromMillis, 1000), Math.floorDiv(toMillis, 1000), stepSeconds);
+        List<Map<String, Object>> points = new java.util.ArrayList<>(history.points().size());
+        for (TrafficHistoryStore.Point point : history.points()) {
+            Map<String, Object> pointMap = new HashMap<>();
+            pointMap.put("t", point.time() * 1000);
+            pointMap.put("congestion", point.congestion());
+            if (stepSeconds > 0) {
+                pointMap.put("min", point.min());
+                pointMap.put("max", point.max());
+                pointMap.put("samples", point.samples());
+            }
+            points.add(pointMap);
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("tile", history.tile());
+        response.put("from", fromMillis);
+        response.put("to", toMillis);
+        response.put("step", stepSeconds > 0 ? stepSeconds : null);
+        response.put("points", points);
+        response.put("truncated", history.truncated());
+        response.put("elapsedMs", (System.nanoTime() - started) / 1_000_000.0);
+        response.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(response);
     }
     
     /**
-     * Clean up old traffic data from database
+     * Cache and fetch counters for the live traffic pipeline
+     */
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("cache", trafficDataCache.getStats());
+        stats.put("coalescing", trafficApiService.getCoalescingStats());
+        stats.put("providers", providerEngine.getStats());
+        stats.put("persistence", trafficApiService.getPersistenceStats());
+        stats.put("incidents", trafficIncidentService.getStats());
+        stats.put("retention", trafficRetentionService.getStats());
+        stats.put("incidentIndex", activeIncidentIndex.getStats());
+        stats.put("history", trafficHistoryStore.getStats());
+        return ResponseEntity.ok(stats);
+    }
+    
+    /**
+     * Run a retention pass now instead of waiting for the schedule
      */
     @PostMapping("/cleanup")
-    public ResponseEntity<Map<String, String>> cleanupOldData() {
+    public ResponseEntity<Map<String, Object>> cleanupOldData() {
         try {
-            trafficApiService.cleanupOldData();
-            return ResponseEntity.ok(Map.of("message", "Old traffic data cleaned up successfully"));
+            Map<String, Long> deleted = trafficRetentionService.run();
+            return ResponseEntity.ok(Map.of("message", "Old traffic data cleaned up successfully", "deleted", deleted));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "Failed to cleanup data", "message", e.getMessage()));
+                    .body(Map.of("error", "Failed to cleanup data", "message", String.valueOf(e.getMessage())));
+        }
+    }
+    
+    /**
+     * Radius bounds every provider and incident call a request can make, so it is checked up front
+     */
+    private ResponseEntity<Map<String, Object>> validateRadius(Double radius) {
+        if (radius == null || !(radius > 0) || radius > maxRadiusKm) {
+            return ResponseEntity.badRequest().body(Map.of("error", "radius must be greater than 0 and at most " + maxRadiusKm + " km"));
+        }
+        return null;
+    }
+    
+    private static Long parseInstant(String value) {
+        try {
+            return value.matches("-?\\d+") ? Long.parseLong(value) : Instant.parse(value).toEpochMilli();
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return null;
+        }
+    }
+    
+    private static Long parseStepSeconds(String value) {
+        try {
+            return value.matches("\\d+") ? Long.parseLong(value) : Duration.parse(value).toSeconds();
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return null;
         }
     }
     
     /**
      * Build traffic response map from TrafficData entity
      */
-    private Map<String, Object> buildTrafficResponse(TrafficData trafficData) {
+    private Map<String, Object> buildTrafficResponse(TrafficData trafficData, List<TrafficIncident> areaIncidents) {
         Map<String, Object> response = new HashMap<>();
         
         response.put("latitude", trafficData.getLatitude());
@@ -158,23 +431,31 @@ public class TrafficController {
         response.put("dataSource", trafficData.getDataSource());
         response.put("fetchedAt", trafficData.getFetchedAt().toString());
         
-        // Add incidents
-        if (trafficData.getIncidents() != null && !trafficData.getIncidents().isEmpty()) {
-            List<Map<String, Object>> incidents = new java.util.ArrayList<>();
-            for (TrafficIncident incident : trafficData.getIncidents()) {
-                Map<String, Object> incidentMap = new HashMap<>();
-                incidentMap.put("latitude", incident.getLatitude());
-                incidentMap.put("longitude", incident.getLongitude());
-                incidentMap.put("type", incident.getIncidentType());
-                incidentMap.put("severity", incident.getSeverity());
-                incidentMap.put("description", incident.getDescription());
-                incidentMap.put("delayMinutes", incident.getDelayMinutes());
-                incidentMap.put("reportedAt", incident.getReportedAt().toString());
-                incidents.add(incidentMap);
-            }
-            response.put("incidents", incidents);
+        // Add incidents; readings stored before area lookups may still carry their own
+        List<TrafficIncident> incidents = areaIncidents;
+        if (incidents.isEmpty() && trafficData.getIncidents() != null) {
+            incidents = trafficData.getIncidents();
+        }
+        if (!incidents.isEmpty()) {
+            response.put("incidents", buildIncidentList(incidents));
         }
         
         return response;
     }
+    
+    private List<Map<String, Object>> buildIncidentList(List<TrafficIncident> incidents) {
+        List<Map<String, Object>> result = new java.util.ArrayList<>();
+        for (TrafficIncident incident : incidents) {
+            Map<String, Object> incidentMap = new HashMap<>();
+            incidentMap.put("latitude", incident.getLatitude());
+            incidentMap.put("longitude", incident.getLongitude());
+            incidentMap.put("type", incident.getIncidentType());
+            incidentMap.put("severity", incident.getSeverity());
+            incidentMap.put("description", incident.getDescription());
+            incidentMap.put("delayMinutes", incident.getDelayMinutes());
+            incidentMap.put("reportedAt", incident.getReportedAt().toString());
+            result.add(incidentMap);
+        }
+        return result;
+    }
 }
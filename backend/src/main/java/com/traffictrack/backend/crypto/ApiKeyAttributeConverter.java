@@ -1,16 +1,19 @@
 package com.traffictrack.backend.crypto;
 
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -23,47 +26,81 @@ public class ApiKeyAttributeConverter implements AttributeConverter<String, Stri
 
     private static final int GCM_IV_LENGTH = 12; // 12 bytes for GCM
     private static final int GCM_TAG_LENGTH = 128; // bits
+    private static final int DEFAULT_MEMO_SIZE = 256;
 
-    private SecretKeySpec keySpec;
-    private final SecureRandom secureRandom = new SecureRandom();
     private static final Logger LOGGER = Logger.getLogger(ApiKeyAttributeConverter.class.getName());
 
-    // Spring will inject this value
-    @Value("${app.encryption.key:}")
-    private String encryptionKey;
+    // Cipher instances are not thread-safe, and Cipher.getInstance is a provider lookup; keep one per thread
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("AES/GCM not available", ex);
+        }
+    });
 
+    private final SecretKeySpec keySpec;
+    private final IllegalStateException initError;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final int memoSize;
+
+    /**
+     * Ciphertext to plaintext for recently seen rows. GCM already authenticated the
+     * ciphertext the first time it was decrypted, so identical input can skip AES.
+     */
+    private final Map<String, String> decrypted;
+
+    /**
+     * Used when Hibernate or a test instantiates the converter outside Spring
+     */
     public ApiKeyAttributeConverter() {
-        // Empty constructor - Spring will inject values after construction
+        this(null, DEFAULT_MEMO_SIZE);
     }
 
-    private void ensureKey() {
-        if (this.keySpec == null) {
-            // Lazy initialization on first use
-            try {
-                byte[] keyBytes = resolveKeyBytes();
-                this.keySpec = new SecretKeySpec(keyBytes, "AES");
-                LOGGER.info("Encryption key successfully initialized");
-            } catch (Exception ex) {
-                LOGGER.severe("Failed to initialize encryption key: " + ex.getMessage());
-                throw new IllegalStateException("Encryption key not configured properly. Check app.encryption.key property.", ex);
+    @Autowired
+    public ApiKeyAttributeConverter(@Value("${app.encryption.key:}") String encryptionKey,
+                                    @Value("${app.encryption.memo-size:256}") int memoSize) {
+        SecretKeySpec spec = null;
+        IllegalStateException error = null;
+        try {
+            spec = new SecretKeySpec(resolveKeyBytes(encryptionKey), "AES");
+            LOGGER.info("Encryption key successfully initialized");
+        } catch (Exception ex) {
+            // Keep the application bootable; the error surfaces on first use
+            LOGGER.severe("Failed to initialize encryption key: " + ex.getMessage());
+            error = new IllegalStateException("Encryption key not configured properly. Check app.encryption.key property.", ex);
+        }
+        this.keySpec = spec;
+        this.initError = error;
+        this.memoSize = Math.max(0, memoSize);
+        this.decrypted = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > ApiKeyAttributeConverter.this.memoSize;
             }
+        };
+    }
+
+    private void ensureKey() {
+        if (initError != null) {
+            throw initError;
         }
     }
 
-    private byte[] resolveKeyBytes() {
+    private static byte[] resolveKeyBytes(String encryptionKey) {
         // Try environment variable first
         String key = System.getenv("APP_ENC_KEY");
-        
+
         // Fall back to Spring property
         if (key == null || key.isEmpty()) {
-            key = this.encryptionKey;
+            key = encryptionKey;
         }
-        
+
         // Fall back to system property
         if (key == null || key.isEmpty()) {
             key = System.getProperty("APP_ENC_KEY");
         }
-        
+
         if (key == null || key.isEmpty()) {
             throw new IllegalStateException("Encryption key not set. Please set APP_ENC_KEY environment variable or app.encryption.key property");
         }
@@ -84,7 +121,7 @@ public class ApiKeyAttributeConverter implements AttributeConverter<String, Stri
         }
     }
 
-    private byte[] normalizeKey(byte[] k) {
+    private static byte[] normalizeKey(byte[] k) {
         if (k.length == 32) return k;
         // if shorter, expand by hashing
         try {
@@ -100,18 +137,20 @@ public class ApiKeyAttributeConverter implements AttributeConverter<String, Stri
         if (attribute == null) return null;
         ensureKey();
         try {
+            byte[] plain = attribute.getBytes(StandardCharsets.UTF_8);
             byte[] iv = new byte[GCM_IV_LENGTH];
             secureRandom.nextBytes(iv);
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec, spec);
-            byte[] ciphertext = cipher.doFinal(attribute.getBytes(StandardCharsets.UTF_8));
-
-            // store iv + ciphertext together
-            ByteBuffer bb = ByteBuffer.allocate(iv.length + ciphertext.length);
-            bb.put(iv);
-            bb.put(ciphertext);
-            return Base64.getEncoder().encodeToString(bb.array());
+            byte[] out = new byte[GCM_IV_LENGTH + plain.length + GCM_TAG_LENGTH / 8];
+            System.arraycopy(iv, 0, out, 0, GCM_IV_LENGTH);
+
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, keySpec, new GCMParameterSpec(GCM_TAG_LENGTH, out, 0, GCM_IV_LENGTH));
+            // store iv + ciphertext together, encrypting straight into the output buffer
+            cipher.doFinal(plain, 0, plain.length, out, GCM_IV_LENGTH);
+
+            String dbData = Base64.getEncoder().encodeToString(out);
+            remember(dbData, attribute);
+            return dbData;
         } catch (Exception ex) {
             throw new RuntimeException("Failed to encrypt api key", ex);
         }
@@ -121,21 +160,34 @@ public class ApiKeyAttributeConverter implements AttributeConverter<String, Stri
     public String convertToEntityAttribute(String dbData) {
         if (dbData == null) return null;
         ensureKey();
+        String cached = recall(dbData);
+        if (cached != null) {
+            return cached;
+        }
         try {
             byte[] all = Base64.getDecoder().decode(dbData);
-            ByteBuffer bb = ByteBuffer.wrap(all);
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            bb.get(iv);
-            byte[] cipherBytes = new byte[bb.remaining()];
-            bb.get(cipherBytes);
-
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.DECRYPT_MODE, keySpec, spec);
-            byte[] plain = cipher.doFinal(cipherBytes);
-            return new String(plain, StandardCharsets.UTF_8);
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, keySpec, new GCMParameterSpec(GCM_TAG_LENGTH, all, 0, GCM_IV_LENGTH));
+            byte[] plain = cipher.doFinal(all, GCM_IV_LENGTH, all.length - GCM_IV_LENGTH);
+            String value = new String(plain, StandardCharsets.UTF_8);
+            remember(dbData, value);
+            return value;
         } catch (Exception ex) {
             throw new RuntimeException("Failed to decrypt api key", ex);
         }
     }
+
+    private String recall(String dbData) {
+        if (memoSize == 0) return null;
+        synchronized (decrypted) {
+            return decrypted.get(dbData);
+        }
+    }
+
+    private void remember(String dbData, String plain) {
+        if (memoSize == 0) return;
+        synchronized (decrypted) {
+            decrypted.put(dbData, plain);
+        }
+    }
 }
@@ -0,0 +1,52 @@
+package com.traffictrack.backend.geo;
+
+/**
+ * Latitude/longitude box as passed in bbox query parameters
+ */
+public record BoundingBox(double minLat, double minLng, double maxLat, double maxLng) {
+
+    /**
+     * Parse "minLng,minLat,maxLng,maxLat"; null when malformed, inverted or out of range
+     */
+    public static BoundingBox parse(String bbox) {
+        if (bbox == null) return null;
+        String[] parts = bbox.split(",");
+        if (parts.length != 4) return null;
+        double[] values = new double[4];
+        try {
+            for (int i = 0; i < 4; i++) {
+                values[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        BoundingBox box = new BoundingBox(values[1], values[0], values[3], values[2]);
+        if (box.minLng > box.maxLng || box.minLat > box.maxLat
+                || box.minLat < -90 || box.maxLat > 90 || box.minLng < -180 || box.maxLng > 180) {
+            return null;
+        }
+        return box;
+    }
+
+    /**
+     * Bounds of a web map (XYZ / slippy map) tile; null when z, x or y is out of range
+     */
+    public static BoundingBox ofTile(int z, int x, int y) {
+        if (z < 0 || z > 30) return null;
+        long n = 1L << z;
+        if (x < 0 || y < 0 || x >= n || y >= n) return null;
+        return new BoundingBox(tileLat(y + 1, n), x * 360.0 / n - 180, tileLat(y, n), (x + 1) * 360.0 / n - 180);
+    }
+
+    private static double tileLat(long y, long n) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2.0 * y / n))));
+    }
+
+    public boolean contains(double lat, double lng) {
+        return lat >= minLat && lat <= maxLat && lng >= minLng && lng <= maxLng;
+    }
+
+    public boolean intersects(double otherMinLat, double otherMinLng, double otherMaxLat, double otherMaxLng) {
+        return otherMinLat <= maxLat && otherMaxLat >= minLat && otherMinLng <= maxLng && otherMaxLng >= minLng;
+    }
+}
@@ -0,0 +1,150 @@
+package com.traffictrack.backend.geo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Minimal geohash encoder/decoder used to quantize coordinates into tiles.
+ */
+public final class Geohash {
+
+    /** Precision of the tile column stored with traffic readings and incidents (~150m cells) */
+    public static final int TILE_PRECISION = 7;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private Geohash() {
+    }
+
+    /**
+     * Encode a coordinate to a geohash of the given length (1-12)
+     */
+    public static String encode(double lat, double lng, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        char[] hash = new char[precision];
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+        int idx = 0;
+
+        while (idx < precision) {
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (lng >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLng = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (lat >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash[idx++] = BASE32[ch];
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Decode a geohash to its bounding box as {minLat, minLng, maxLat, maxLng}
+     */
+    public static double[] bounds(String geohash) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        boolean evenBit = true;
+
+        for (int i = 0; i < geohash.length(); i++) {
+            int value = indexOf(geohash.charAt(i));
+            for (int n = 4; n >= 0; n--) {
+                int bitN = (value >> n) & 1;
+                if (evenBit) {
+                    double mid = (minLng + maxLng) / 2;
+                    if (bitN == 1) minLng = mid; else maxLng = mid;
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (bitN == 1) minLat = mid; else maxLat = mid;
+                }
+                evenBit = !evenBit;
+            }
+        }
+        return new double[]{minLat, minLng, maxLat, maxLng};
+    }
+
+    /**
+     * Tiles of the same precision within the given number of rings around a tile, the tile
+     * itself first. One ring is the usual 3x3 neighbourhood.
+     */
+    public static List<String> around(String geohash, int rings) {
+        double[] box = bounds(geohash);
+        double height = box[2] - box[0];
+        double width = box[3] - box[1];
+        double centerLat = (box[0] + box[2]) / 2;
+        double centerLng = (box[1] + box[3]) / 2;
+
+        Set<String> tiles = new LinkedHashSet<>();
+        tiles.add(geohash);
+        for (int dy = -rings; dy <= rings; dy++) {
+            double lat = centerLat + dy * height;
+            if (lat < -90 || lat > 90) continue;
+            for (int dx = -rings; dx <= rings; dx++) {
+                double lng = centerLng + dx * width;
+                // Wrap across the antimeridian
+                if (lng >= 180) lng -= 360;
+                if (lng < -180) lng += 360;
+                tiles.add(encode(lat, lng, geohash.length()));
+            }
+        }
+        return new ArrayList<>(tiles);
+    }
+
+    /**
+     * Great-circle distance in km between two coordinates
+     */
+    public static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * 6371.0 * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private static int indexOf(char c) {
+        for (int i = 0; i < BASE32.length; i++) {
+            if (BASE32[i] == c) return i;
+        }
+        throw new IllegalArgumentException("Invalid geohash character: " + c);
+    }
+
+    /**
+     * Bucket a search radius into half-octave steps so nearby radii share a cache slot.
+     */
+    public static int radiusBucket(double radiusKm) {
+        double meters = Math.max(1.0, radiusKm * 1000.0);
+        return (int) Math.round(2.0 * Math.log(meters) / Math.log(2.0));
+    }
+
+    /**
+     * Radius range in km covered by a bucket as {min, max}
+     */
+    public static double[] radiusRange(int bucket) {
+        double min = Math.pow(2.0, (bucket - 0.5) / 2.0) / 1000.0;
+        double max = Math.pow(2.0, (bucket + 0.5) / 2.0) / 1000.0;
+        return new double[]{min, max};
+    }
+}
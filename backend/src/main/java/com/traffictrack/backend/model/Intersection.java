@@ -40,9 +40,14 @@ public class Intersection {
     @Column(nullable = false)
     private Integer cycleDuration;
 
+    // Countdown when the row was inserted; the live countdown is derived from cycleStartEpoch
     @Column(nullable = false)
     private Integer timeRemaining;
 
+    // Epoch millisecond at which the signal's cycle started; it repeats every cycleDuration seconds
+    @Column(name = "cycle_start_epoch")
+    private Long cycleStartEpoch;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -149,6 +154,14 @@ public class Intersection {
         this.timeRemaining = timeRemaining;
     }
 
+    public Long getCycleStartEpoch() {
+        return cycleStartEpoch;
+    }
+
+    public void setCycleStartEpoch(Long cycleStartEpoch) {
+        this.cycleStartEpoch = cycleStartEpoch;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -3,21 +3,29 @@ package com.traffictrack.backend.model;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import com.traffictrack.backend.geo.Geohash;
+
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "traffic_data")
+@Table(name = "traffic_data", indexes = @Index(name = "idx_traffic_data_tile_recent", columnList = "geohash, radius_bucket, fetched_at DESC"))
 public class TrafficData {
     
+    // Pooled sequence ids let Hibernate batch inserts; IDENTITY forces one round trip per row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "traffic_data_seq")
+    @SequenceGenerator(name = "traffic_data_seq", sequenceName = "traffic_data_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
@@ -29,6 +37,12 @@ public class TrafficData {
     @Column(nullable = false)
     private Double radius; // Search radius in km
     
+    @Column(name = "geohash", length = 12)
+    private String geohash; // Geohash.TILE_PRECISION tile of the reading, set on save
+    
+    @Column(name = "radius_bucket")
+    private Integer radiusBucket; // Geohash.radiusBucket of the radius, set on save
+    
     @Column(name = "congestion_level")
     private Double congestionLevel; // 0.0 to 1.0
     
@@ -68,6 +82,17 @@ public class TrafficData {
         this.fetchedAt = LocalDateTime.now();
     }
     
+    @PrePersist
+    @PreUpdate
+    void assignTile() {
+        if (latitude != null && longitude != null) {
+            geohash = Geohash.encode(latitude, longitude, Geohash.TILE_PRECISION);
+        }
+        if (radius != null) {
+            radiusBucket = Geohash.radiusBucket(radius);
+        }
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -101,6 +126,14 @@ public class TrafficData {
         this.radius = radius;
     }
     
+    public String getGeohash() {
+        return geohash;
+    }
+    
+    public Integer getRadiusBucket() {
+        return radiusBucket;
+    }
+    
     public Double getCongestionLevel() {
         return congestionLevel;
     }
@@ -0,0 +1,69 @@
+package com.traffictrack.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * A sealed, compressed block of congestion history for one geohash tile. Rows are written and
+ * read with JDBC by TrafficHistoryStore; the entity only defines the table.
+ */
+@Entity
+@Table(name = "traffic_history_chunks", indexes = {
+        @Index(name = "idx_traffic_history_chunks_tile_start", columnList = "tile, start_epoch"),
+        @Index(name = "idx_traffic_history_chunks_end", columnList = "end_epoch")
+})
+public class TrafficHistoryChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 12)
+    private String tile;
+
+    // Epoch seconds of the first and last point in the chunk
+    @Column(name = "start_epoch", nullable = false)
+    private Long startEpoch;
+
+    @Column(name = "end_epoch", nullable = false)
+    private Long endEpoch;
+
+    @Column(nullable = false)
+    private Integer points;
+
+    // GorillaChunk.toBytes()
+    @Column(nullable = false, length = 65536)
+    private byte[] data;
+
+    public TrafficHistoryChunk() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTile() {
+        return tile;
+    }
+
+    public Long getStartEpoch() {
+        return startEpoch;
+    }
+
+    public Long getEndEpoch() {
+        return endEpoch;
+    }
+
+    public Integer getPoints() {
+        return points;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+}
@@ -2,21 +2,33 @@ package com.traffictrack.backend.model;
 
 import java.time.LocalDateTime;
 
+import com.traffictrack.backend.geo.Geohash;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "traffic_incidents")
+@Table(name = "traffic_incidents", indexes = {
+        @Index(name = "idx_traffic_incidents_external_id", columnList = "external_id"),
+        @Index(name = "idx_traffic_incidents_tile_recent", columnList = "geohash, reported_at DESC"),
+        @Index(name = "idx_traffic_incidents_last_seen", columnList = "last_seen_at")
+})
 public class TrafficIncident {
     
+    // Pooled sequence ids let Hibernate batch inserts; IDENTITY forces one round trip per row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "traffic_incidents_seq")
+    @SequenceGenerator(name = "traffic_incidents_seq", sequenceName = "traffic_incidents_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne
@@ -29,6 +41,9 @@ public class TrafficIncident {
     @Column(nullable = false)
     private Double longitude;
     
+    @Column(name = "geohash", length = 12)
+    private String geohash; // Geohash.TILE_PRECISION tile of the incident, set on save
+    
     @Column(name = "incident_type")
     private String incidentType; // "accident", "roadwork", "congestion", "closure", "other"
     
@@ -41,9 +56,16 @@ public class TrafficIncident {
     @Column(name = "reported_at")
     private LocalDateTime reportedAt;
     
+    // Last time a provider still reported the incident; retention expires on this, not reported_at
+    @Column(name = "last_seen_at")
+    private LocalDateTime lastSeenAt;
+    
     @Column(name = "delay_minutes")
     private Integer delayMinutes;
     
+    @Column(name = "external_id", length = 200)
+    private String externalId; // provider:id, or provider:type@lat,lng when the provider has no id
+    
     // Constructors
     public TrafficIncident() {
         this.reportedAt = LocalDateTime.now();
@@ -57,6 +79,17 @@ public class TrafficIncident {
         this.reportedAt = LocalDateTime.now();
     }
     
+    @PrePersist
+    @PreUpdate
+    void assignTile() {
+        if (latitude != null && longitude != null) {
+            geohash = Geohash.encode(latitude, longitude, Geohash.TILE_PRECISION);
+        }
+        if (lastSeenAt == null) {
+            lastSeenAt = reportedAt;
+        }
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -90,6 +123,10 @@ public class TrafficIncident {
         this.longitude = longitude;
     }
     
+    public String getGeohash() {
+        return geohash;
+    }
+    
     public String getIncidentType() {
         return incidentType;
     }
@@ -122,6 +159,14 @@ public class TrafficIncident {
         this.reportedAt = reportedAt;
     }
     
+    public LocalDateTime getLastSeenAt() {
+        return lastSeenAt;
+    }
+    
+    public void setLastSeenAt(LocalDateTime lastSeenAt) {
+        this.lastSeenAt = lastSeenAt;
+    }
+    
     public Integer getDelayMinutes() {
         return delayMinutes;
     }
@@ -129,4 +174,12 @@ public class TrafficIncident {
     public void setDelayMinutes(Integer delayMinutes) {
         this.delayMinutes = delayMinutes;
     }
+    
+    public String getExternalId() {
+        return externalId;
+    }
+    
+    public void setExternalId(String externalId) {
+        this.externalId = externalId;
+    }
 }
@@ -0,0 +1,133 @@
+package com.traffictrack.backend.provider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.springframework.core.env.Environment;
+
+import com.traffictrack.backend.config.TrafficExecutorConfig;
+
+/**
+ * Shared request/response handling for HTTP based providers.
+ * Limits are read from traffic.provider.&lt;id&gt;.* with per-provider defaults.
+ * Each provider owns its HTTP client and parsing pool so a slow upstream only ties up its own threads.
+ * Response bodies are streamed straight into a token-level JSON parser instead of being buffered as a String.
+ */
+public abstract class AbstractHttpTrafficProvider implements TrafficProvider, DisposableBean {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int ERROR_BODY_LIMIT = 1024;
+
+    private final String id;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final int maxConcurrency;
+    private final Duration timeout;
+
+    protected AbstractHttpTrafficProvider(String id, Environment environment, int defaultMaxConcurrency) {
+        this.id = id;
+        int threads = environment.getProperty("traffic.provider." + id + ".threads", Integer.class, 4);
+        this.executor = Executors.newFixedThreadPool(threads, TrafficExecutorConfig.namedThreadFactory("provider-" + id + "-"));
+        // The client keeps its own delivery threads; blocking reads of the body stream happen on executor
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        Duration defaultTimeout = Duration.ofSeconds(environment.getProperty("traffic.api.timeout", Integer.class, 10));
+        this.maxConcurrency = environment.getProperty("traffic.provider." + id + ".max-concurrency", Integer.class, defaultMaxConcurrency);
+        this.timeout = environment.getProperty("traffic.provider." + id + ".timeout", Duration.class, defaultTimeout);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Maps a streamed JSON body onto a result without building an intermediate tree
+     */
+    @FunctionalInterface
+    protected interface JsonBodyParser<T> {
+        T parse(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * Issue a GET and parse the body once a 200 arrives; other statuses fail the future
+     */
+    protected <T> CompletableFuture<T> getJson(String url, JsonBodyParser<T> bodyParser) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .timeout(timeout)
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                    .thenApplyAsync(response -> readBody(response, bodyParser), executor);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private <T> T readBody(HttpResponse<InputStream> response, JsonBodyParser<T> bodyParser) {
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                String preview = new String(body.readNBytes(ERROR_BODY_LIMIT), StandardCharsets.UTF_8);
+                throw new TrafficProviderException(id, response.statusCode(), describeError(response.statusCode(), preview));
+            }
+            return parse(body, bodyParser);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + id + " response", e);
+        }
+    }
+
+    static <T> T parse(InputStream body, JsonBodyParser<T> bodyParser) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            return bodyParser.parse(parser);
+        }
+    }
+
+    /**
+     * Message used when the provider answers with a non-200 status; body holds at most the first 1KB
+     */
+    protected String describeError(int statusCode, String body) {
+        return String.format("%s API returned status: %d", id, statusCode);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    protected static double clamp01(double value) {
+        return Math.max(0.0, Math.min(1.0, value));
+    }
+}
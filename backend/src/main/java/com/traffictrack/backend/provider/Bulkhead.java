@@ -0,0 +1,113 @@
+package com.traffictrack.backend.provider;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking concurrency limit for async calls. Up to maxConcurrent calls run at once;
+ * further calls wait in a bounded FIFO queue and are rejected once the queue is full.
+ * Cancelling a returned future cancels the call behind it, or skips it while still queued,
+ * and frees its place for the next one.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Executor handoffExecutor;
+    private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+    private int active;
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    public Bulkhead(String name, int maxConcurrent, int maxQueued, Executor handoffExecutor) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.handoffExecutor = handoffExecutor;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable task = () -> run(call, result);
+
+        synchronized (this) {
+            if (active < maxConcurrent) {
+                active++;
+            } else if (waiting.size() < maxQueued) {
+                waiting.addLast(task);
+                return result;
+            } else {
+                rejected.increment();
+                return CompletableFuture.failedFuture(
+                        new RejectedExecutionException("Bulkhead " + name + " is full"));
+            }
+        }
+        task.run();
+        return result;
+    }
+
+    private <T> void run(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            // Cancelled while queued; the permit goes to the next call
+            cancelled.increment();
+            release();
+            return;
+        }
+        started.increment();
+        CompletableFuture<T> inner;
+        try {
+            inner = call.get();
+        } catch (RuntimeException e) {
+            inner = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> upstream = inner;
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled() && upstream.cancel(true)) cancelled.increment();
+        });
+        inner.whenComplete((value, error) -> {
+            release();
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = waiting.pollFirst();
+            if (next == null) {
+                active--;
+                return;
+            }
+        }
+        // The permit passes straight to the next waiting call; hand off so completions don't recurse
+        try {
+            handoffExecutor.execute(next);
+        } catch (RejectedExecutionException e) {
+            next.run();
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("active", active);
+        stats.put("queued", waiting.size());
+        stats.put("started", started.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("cancelled", cancelled.sum());
+        return stats;
+    }
+}
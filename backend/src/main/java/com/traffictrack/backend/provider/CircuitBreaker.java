@@ -0,0 +1,150 @@
+package com.traffictrack.backend.provider;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count-based circuit breaker. Opens when the failure rate over the last windowSize calls
+ * reaches the threshold, or immediately on a non-transient failure such as 401 or 429.
+ * After openMillis one trial call is let through; its outcome closes or re-opens the breaker.
+ * <p>
+ * Each permit carries the generation it was issued in, which moves on with every state change.
+ * Outcomes of calls permitted in an earlier generation, such as a slow call let through while
+ * CLOSED finishing after the breaker opened, are dropped, so only the trial decides HALF_OPEN.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Returned by tryAcquire when the call may not proceed */
+    public static final long NOT_PERMITTED = -1;
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+
+    private final boolean[] outcomes;
+    private int position;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long generation;
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder notPermitted = new LongAdder();
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openMillis) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+        this.outcomes = new boolean[this.windowSize];
+    }
+
+    /**
+     * A permit for the call, or NOT_PERMITTED. Every permitted call must be followed by exactly
+     * one of onSuccess, onFailure or onIgnored with its permit.
+     */
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            generation++;
+            trialInFlight = false;
+        }
+        switch (state) {
+            case CLOSED:
+                return generation;
+            case HALF_OPEN:
+                if (!trialInFlight) {
+                    trialInFlight = true;
+                    return generation;
+                }
+                break;
+            default:
+                break;
+        }
+        notPermitted.increment();
+        return NOT_PERMITTED;
+    }
+
+    public synchronized void onSuccess(long permit) {
+        if (permit != generation) return;
+        if (state == State.HALF_OPEN) {
+            reset();
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * @param nonTransient open the breaker right away instead of waiting for the failure rate
+     */
+    public synchronized void onFailure(long permit, boolean nonTransient) {
+        if (permit != generation) return;
+        if (state == State.HALF_OPEN || nonTransient) {
+            open();
+            return;
+        }
+        record(true);
+        if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * The permitted call never reached the provider (e.g. rejected by the bulkhead)
+     */
+    public synchronized void onIgnored(long permit) {
+        if (permit == generation && state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    private void record(boolean failed) {
+        if (recorded == windowSize) {
+            if (outcomes[position]) failures--;
+        } else {
+            recorded++;
+        }
+        outcomes[position] = failed;
+        if (failed) failures++;
+        position = (position + 1) % windowSize;
+    }
+
+    private void open() {
+        if (state != State.OPEN) {
+            opened.increment();
+        }
+        state = State.OPEN;
+        generation++;
+        openedAt = System.currentTimeMillis();
+        trialInFlight = false;
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        generation++;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("state", state.name());
+        stats.put("failureRate", recorded == 0 ? 0.0 : (double) failures / recorded);
+        stats.put("opened", opened.sum());
+        stats.put("notPermitted", notPermitted.sum());
+        return stats;
+    }
+}
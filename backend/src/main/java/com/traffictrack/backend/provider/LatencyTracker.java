@@ -0,0 +1,52 @@
+package com.traffictrack.backend.provider;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recent call latencies in a ring buffer and answers percentile queries
+ */
+public class LatencyTracker {
+
+    private final long[] samples;
+    private int position;
+    private int count;
+
+    public LatencyTracker(int capacity) {
+        this.samples = new long[Math.max(1, capacity)];
+    }
+
+    public synchronized void record(long millis) {
+        samples[position] = millis;
+        position = (position + 1) % samples.length;
+        if (count < samples.length) count++;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Latency at the given percentile (0-1), or -1 when nothing has been recorded
+     */
+    public long percentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count == 0) return -1;
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("samples", getCount());
+        stats.put("p50", percentile(0.50));
+        stats.put("p95", percentile(0.95));
+        stats.put("p99", percentile(0.99));
+        return stats;
+    }
+}
@@ -0,0 +1,63 @@
+package com.traffictrack.backend.provider;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.stereotype.Component;
+
+import com.traffictrack.backend.model.ApiCredential;
+import com.traffictrack.backend.model.TrafficData;
+
+/**
+ * Simulated readings used when no credential is configured or a provider fails
+ */
+@Component
+public class StaticTrafficProvider implements TrafficProvider {
+
+    public static final String ID = "static";
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public boolean supports(String providerName) {
+        return false;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public Duration getTimeout() {
+        return Duration.ZERO;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public CompletableFuture<TrafficData> fetch(ApiCredential credential, double lat, double lng, double radius) {
+        return CompletableFuture.completedFuture(create(lat, lng, radius));
+    }
+
+    /**
+     * Create static/simulated traffic data as fallback
+     */
+    public TrafficData create(double lat, double lng, double radius) {
+        TrafficData trafficData = new TrafficData(lat, lng, radius);
+        trafficData.setDataSource(ID);
+        trafficData.setCongestionLevel(Math.random() * 0.7);
+        trafficData.setFlowSpeed(20.0 + Math.random() * 30.0);
+        trafficData.setFreeFlowSpeed(50.0);
+        trafficData.setCurrentTravelTime((int) (Math.random() * 600 + 300));
+        trafficData.setFreeFlowTravelTime(300);
+        trafficData.setRoadClosure(false);
+        return trafficData;
+    }
+}
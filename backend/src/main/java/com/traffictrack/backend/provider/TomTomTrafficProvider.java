@@ -0,0 +1,323 @@
+package com.traffictrack.backend.provider;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.traffictrack.backend.model.ApiCredential;
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.model.TrafficIncident;
+
+/**
+ * TomTom Traffic Flow and Incident Details APIs
+ */
+@Component
+public class TomTomTrafficProvider extends AbstractHttpTrafficProvider {
+
+    private static final double MAX_BBOX_AREA_KM2 = 10_000;
+
+    // The fields filter contains braces, which URI.create rejects unless encoded
+    private static final String INCIDENT_FIELDS = URLEncoder.encode(
+            "{incidents{type,geometry,properties{id,iconCategory,magnitudeOfDelay,events{description,code}}}}",
+            StandardCharsets.UTF_8);
+
+    private final int maxIncidentSplits;
+
+    public TomTomTrafficProvider(Environment environment) {
+        super("tomtom", environment, 8);
+        this.maxIncidentSplits = environment.getProperty("traffic.provider.tomtom.max-incident-splits", Integer.class, 4);
+    }
+
+    @Override
+    public boolean supports(String providerName) {
+        return "tomtom traffic api".equalsIgnoreCase(providerName);
+    }
+
+    @Override
+    public CompletableFuture<TrafficData> fetch(ApiCredential credential, double lat, double lng, double radius) {
+        String url = String.format(
+            "https://api.tomtom.com/traffic/services/4/flowSegmentData/absolute/10/json?point=%f,%f&key=%s",
+            lat, lng, credential.getApiKey()
+        );
+
+        return getJson(url, parser -> parseFlow(parser, lat, lng, radius));
+    }
+
+    /**
+     * Map flowSegmentData onto a reading; other members, including the segment geometry, are skipped unread
+     */
+    TrafficData parseFlow(JsonParser parser, double lat, double lng, double radius) throws IOException {
+        TrafficData trafficData = new TrafficData(lat, lng, radius);
+        trafficData.setDataSource(getId());
+        if (parser.nextToken() != JsonToken.START_OBJECT) return trafficData;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("flowSegmentData".equals(field) && value == JsonToken.START_OBJECT) {
+                readFlowSegment(parser, trafficData);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return trafficData;
+    }
+
+    private void readFlowSegment(JsonParser parser, TrafficData trafficData) throws IOException {
+        double currentSpeed = 0;
+        double freeFlowSpeed = 50;
+        int currentTravelTime = 0;
+        int freeFlowTravelTime = 0;
+        boolean roadClosure = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "currentSpeed": currentSpeed = parser.getValueAsDouble(currentSpeed); break;
+                case "freeFlowSpeed": freeFlowSpeed = parser.getValueAsDouble(freeFlowSpeed); break;
+                case "currentTravelTime": currentTravelTime = parser.getValueAsInt(currentTravelTime); break;
+                case "freeFlowTravelTime": freeFlowTravelTime = parser.getValueAsInt(freeFlowTravelTime); break;
+                case "roadClosure": roadClosure = parser.getValueAsBoolean(roadClosure); break;
+                default: parser.skipChildren();
+            }
+        }
+
+        trafficData.setCongestionLevel(clamp01(1.0 - (currentSpeed / freeFlowSpeed)));
+        trafficData.setFlowSpeed(currentSpeed);
+        trafficData.setFreeFlowSpeed(freeFlowSpeed);
+        trafficData.setCurrentTravelTime(currentTravelTime);
+        trafficData.setFreeFlowTravelTime(freeFlowTravelTime);
+        trafficData.setRoadClosure(roadClosure);
+    }
+
+    @Override
+    public boolean supportsAreaIncidents() {
+        return true;
+    }
+
+    /**
+     * Incident Details accepts boxes up to 10,000 km2, so larger areas are split into
+     * equal sub-boxes fetched in parallel. Incidents crossing a split are returned once.
+     * The box is clamped to valid coordinates, and an area that would need more than
+     * max-incident-splits per side is rejected before any upstream call.
+     */
+    @Override
+    public CompletableFuture<List<TrafficIncident>> fetchIncidents(ApiCredential credential,
+                                                                  double minLat, double minLng,
+                                                                  double maxLat, double maxLng) {
+        minLat = Math.max(-90, minLat);
+        maxLat = Math.min(90, maxLat);
+        minLng = Math.max(-180, minLng);
+        maxLng = Math.min(180, maxLng);
+        if (minLat >= maxLat || minLng >= maxLng) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        double heightKm = (maxLat - minLat) * 111.0; // ~111 km per degree
+        double widthKm = (maxLng - minLng) * 111.0 * Math.cos(Math.toRadians((minLat + maxLat) / 2));
+        int splits = (int) Math.ceil(Math.sqrt(Math.max(1.0, heightKm * widthKm / MAX_BBOX_AREA_KM2)));
+        if (splits > maxIncidentSplits) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(String.format(
+                    "Incident area of %.0f km2 needs %d x %d requests; at most %d x %d are allowed",
+                    heightKm * widthKm, splits, splits, maxIncidentSplits, maxIncidentSplits)));
+        }
+
+        double latStep = (maxLat - minLat) / splits;
+        double lngStep = (maxLng - minLng) / splits;
+        List<CompletableFuture<List<TrafficIncident>>> parts = new ArrayList<>(splits * splits);
+        for (int i = 0; i < splits; i++) {
+            for (int j = 0; j < splits; j++) {
+                String bbox = String.format("%f,%f,%f,%f",
+                    minLng + j * lngStep, minLat + i * latStep, minLng + (j + 1) * lngStep, minLat + (i + 1) * latStep);
+                String url = String.format(
+                    "https://api.tomtom.com/traffic/services/5/incidentDetails?bbox=%s&fields=%s&key=%s",
+                    bbox, INCIDENT_FIELDS, credential.getApiKey()
+                );
+                parts.add(getJson(url, this::parseIncidents));
+            }
+        }
+
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            Map<String, TrafficIncident> unique = new LinkedHashMap<>();
+            for (CompletableFuture<List<TrafficIncident>> part : parts) {
+                for (TrafficIncident incident : part.join()) {
+                    unique.putIfAbsent(incident.getExternalId(), incident);
+                }
+            }
+            return new ArrayList<>(unique.values());
+        });
+    }
+
+    /**
+     * Stream incidents[] one feature at a time so large bounding boxes never materialize as a tree
+     */
+    List<TrafficIncident> parseIncidents(JsonParser parser) throws IOException {
+        List<TrafficIncident> incidents = new ArrayList<>();
+        if (parser.nextToken() != JsonToken.START_OBJECT) return incidents;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (!"incidents".equals(field) || value != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                TrafficIncident trafficIncident = parseIncident(parser);
+                if (trafficIncident != null) {
+                    incidents.add(trafficIncident);
+                }
+            }
+        }
+        return incidents;
+    }
+
+    /**
+     * Parse one incident feature; the parser is positioned on its START_OBJECT and left on its END_OBJECT.
+     * Point geometries give their coordinate; line geometries use their first vertex.
+     */
+    private TrafficIncident parseIncident(JsonParser parser) throws IOException {
+        double[] position = null;
+        String iconCategory = null;
+        int magnitude = 0;
+        String description = null;
+        String id = null;
+        boolean hasProperties = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("geometry".equals(field) && value == JsonToken.START_OBJECT) {
+                position = readGeometry(parser);
+            } else if ("properties".equals(field) && value == JsonToken.START_OBJECT) {
+                hasProperties = true;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String property = parser.getCurrentName();
+                    JsonToken propertyValue = parser.nextToken();
+                    if ("id".equals(property)) {
+                        id = parser.getValueAsString();
+                    } else if ("iconCategory".equals(property)) {
+                        iconCategory = parser.getValueAsString();
+                    } else if ("magnitudeOfDelay".equals(property)) {
+                        magnitude = parser.getValueAsInt(0);
+                    } else if ("events".equals(property) && propertyValue == JsonToken.START_ARRAY) {
+                        description = readFirstEventDescription(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (position == null || !hasProperties) return null;
+
+        String incidentType = mapIconToType(iconCategory != null ? iconCategory : "other");
+        String severity = magnitude < 1 ? "low" : magnitude < 3 ? "medium" : magnitude < 5 ? "high" : "critical";
+
+        TrafficIncident trafficIncident = new TrafficIncident(position[1], position[0], incidentType, severity);
+        trafficIncident.setDelayMinutes(magnitude);
+        if (description != null) {
+            trafficIncident.setDescription(description);
+        }
+        trafficIncident.setExternalId(id != null && !id.isEmpty()
+                ? getId() + ":" + id
+                : String.format("%s:%s@%.5f,%.5f", getId(), incidentType, position[1], position[0]));
+        return trafficIncident;
+    }
+
+    /**
+     * First [lng, lat] pair of a geometry object, or null when it has none
+     */
+    private double[] readGeometry(JsonParser parser) throws IOException {
+        double[] position = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("coordinates".equals(field) && value == JsonToken.START_ARRAY) {
+                position = readFirstPosition(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Descend into nested coordinate arrays until a numeric pair is found, then skip the rest
+     */
+    private double[] readFirstPosition(JsonParser parser) throws IOException {
+        double[] position = null;
+        int count = 0;
+        double[] values = new double[2];
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token == JsonToken.START_ARRAY) {
+                double[] nested = position == null && count == 0 ? readFirstPosition(parser) : null;
+                if (nested == null) parser.skipChildren();
+                if (position == null) position = nested;
+            } else if (token.isNumeric() && count < 2) {
+                values[count++] = parser.getDoubleValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return position != null ? position : count == 2 ? values : null;
+    }
+
+    private String readFirstEventDescription(JsonParser parser) throws IOException {
+        String description = null;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token != JsonToken.START_OBJECT || description != null) {
+                parser.skipChildren();
+                continue;
+            }
+            description = "";
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("description".equals(field)) {
+                    description = parser.getValueAsString("");
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return description;
+    }
+
+    /**
+     * Map TomTom icon category to incident type
+     */
+    private String mapIconToType(String iconCategory) {
+        // Incident Details v5 reports numeric categories: 1 accident, 6 jam, 7 lane closed, 8 road closed, 9 road works
+        switch (iconCategory.toLowerCase()) {
+            case "1": return "accident";
+            case "6": return "congestion";
+            case "7": case "8": return "closure";
+            case "9": return "roadwork";
+            case "accident": return "accident";
+            case "roadwork": case "construction": return "roadwork";
+            case "congestion": case "jam": return "congestion";
+            case "closure": case "roadclosed": return "closure";
+            default: return "other";
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.traffictrack.backend.provider;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.traffictrack.backend.model.ApiCredential;
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.model.TrafficIncident;
+
+/**
+ * A source of live traffic readings. Implementations are Spring beans and are picked up
+ * by {@link TrafficProviderEngine}, which enforces the limits each provider declares.
+ */
+public interface TrafficProvider {
+
+    /**
+     * Short id stored as TrafficData.dataSource, e.g. "tomtom"
+     */
+    String getId();
+
+    /**
+     * Whether this provider serves credentials saved under the given provider name
+     */
+    boolean supports(String providerName);
+
+    /**
+     * Maximum number of concurrent upstream requests
+     */
+    int getMaxConcurrency();
+
+    /**
+     * Upper bound for one fetch, including any secondary requests it makes
+     */
+    Duration getTimeout();
+
+    /**
+     * Maximum number of points the upstream API accepts in one request
+     */
+    int getMaxBatchSize();
+
+    /**
+     * Fetch a reading for a point. Fails exceptionally on any upstream or parse error;
+     * the engine decides how to fall back.
+     */
+    CompletableFuture<TrafficData> fetch(ApiCredential credential, double lat, double lng, double radius);
+
+    /**
+     * Whether incidents can be fetched for a whole bounding box in one call
+     */
+    default boolean supportsAreaIncidents() {
+        return false;
+    }
+
+    /**
+     * Incidents inside a bounding box, each carrying a stable externalId.
+     * Point readings from {@link #fetch} carry no incidents; they are looked up per area instead.
+     */
+    default CompletableFuture<List<TrafficIncident>> fetchIncidents(ApiCredential credential,
+                                                                   double minLat, double minLng,
+                                                                   double maxLat, double maxLng) {
+        return CompletableFuture.completedFuture(List.of());
+    }
+}
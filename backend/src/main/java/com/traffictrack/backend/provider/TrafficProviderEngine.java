@@ -0,0 +1,303 @@
+package com.traffictrack.backend.provider;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.traffictrack.backend.model.ApiCredential;
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.model.TrafficIncident;
+import com.traffictrack.backend.service.ApiCredentialService;
+
+/**
+ * Routes lookups to the provider matching a credential. Every call goes through the
+ * provider's circuit breaker and bulkhead, so an unhealthy upstream fails fast and a slow
+ * one cannot starve the others. When hedging is configured for a provider, a call that runs
+ * past that provider's latency percentile is also sent to a second provider and the first
+ * successful answer wins; the other request is cancelled. Any remaining failure falls back
+ * to static data.
+ */
+@Component
+public class TrafficProviderEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(TrafficProviderEngine.class.getName());
+
+    private final List<TrafficProvider> providers;
+    private final StaticTrafficProvider staticProvider;
+    private final ApiCredentialService apiCredentialService;
+    private final ExecutorService trafficExecutor;
+    private final Map<String, Guard> guards = new HashMap<>();
+
+    private final boolean hedgingEnabled;
+    private final double hedgePercentile;
+    private final long hedgeMinDelayMillis;
+    private final int hedgeMinSamples;
+
+    public TrafficProviderEngine(List<TrafficProvider> providers, StaticTrafficProvider staticProvider,
+                                 ApiCredentialService apiCredentialService, Environment environment,
+                                 @Qualifier("trafficExecutor") ExecutorService trafficExecutor) {
+        this.providers = providers;
+        this.staticProvider = staticProvider;
+        this.apiCredentialService = apiCredentialService;
+        this.trafficExecutor = trafficExecutor;
+        this.hedgingEnabled = environment.getProperty("traffic.hedge.enabled", Boolean.class, false);
+        this.hedgePercentile = environment.getProperty("traffic.hedge.percentile", Double.class, 0.95);
+        this.hedgeMinDelayMillis = environment.getProperty("traffic.hedge.min-delay-ms", Long.class, 100L);
+        this.hedgeMinSamples = environment.getProperty("traffic.hedge.min-samples", Integer.class, 20);
+
+        for (TrafficProvider provider : providers) {
+            if (provider == staticProvider) continue;
+            guards.put(provider.getId(), new Guard(provider, environment, trafficExecutor));
+            LOGGER.info(String.format("Registered traffic provider %s (maxConcurrency=%d, timeout=%s, maxBatch=%d)",
+                    provider.getId(), provider.getMaxConcurrency(), provider.getTimeout(), provider.getMaxBatchSize()));
+        }
+    }
+
+    /**
+     * Provider serving the credential, or the static provider when there is none
+     */
+    public TrafficProvider resolve(ApiCredential credential) {
+        if (credential == null || credential.getProvider() == null) {
+            return staticProvider;
+        }
+        for (TrafficProvider provider : providers) {
+            if (provider.supports(credential.getProvider())) {
+                return provider;
+            }
+        }
+        LOGGER.warning("Unknown provider: " + credential.getProvider() + ". Using static data.");
+        return staticProvider;
+    }
+
+    public CompletableFuture<TrafficData> fetch(ApiCredential credential, double lat, double lng, double radius) {
+        TrafficProvider provider = resolve(credential);
+        if (provider == staticProvider) {
+            return provider.fetch(credential, lat, lng, radius);
+        }
+
+        Guard primary = guards.get(provider.getId());
+        CompletableFuture<TrafficData> result = hedgingEnabled && primary.hedgeWith != null
+                ? hedged(primary, credential, lat, lng, radius)
+                : primary.call(credential, lat, lng, radius);
+
+        return result.exceptionally(e -> {
+            LOGGER.log(Level.WARNING, "Provider " + provider.getId() + " failed. Using static data.", e);
+            return staticProvider.create(lat, lng, radius);
+        });
+    }
+
+    /**
+     * Race the primary against a delayed hedge request. The hedge also fires immediately
+     * if the primary fails before the delay elapses. Whichever call is still running once
+     * the race is decided is cancelled, releasing its bulkhead slot.
+     */
+    private CompletableFuture<TrafficData> hedged(Guard primary, ApiCredential credential, double lat, double lng, double radius) {
+        Guard secondary = guards.get(primary.hedgeWith);
+        ApiCredential secondaryCredential = secondary != null ? findCredential(secondary.provider) : null;
+        if (secondaryCredential == null || secondary.breaker.getState() == CircuitBreaker.State.OPEN) {
+            return primary.call(credential, lat, lng, radius);
+        }
+
+        CompletableFuture<TrafficData> result = new CompletableFuture<>();
+        AtomicBoolean hedgeLaunched = new AtomicBoolean();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicReference<CompletableFuture<TrafficData>> hedgeCall = new AtomicReference<>();
+
+        Runnable launchHedge = () -> {
+            if (result.isDone() || !hedgeLaunched.compareAndSet(false, true)) return;
+            primary.hedgesLaunched.increment();
+            CompletableFuture<TrafficData> call = secondary.call(secondaryCredential, lat, lng, radius);
+            hedgeCall.set(call);
+            // The primary may have won while the hedge was being sent
+            if (result.isDone()) call.cancel(true);
+            call.whenComplete((data, error) -> {
+                if (error == null) {
+                    if (result.complete(data)) primary.hedgeWins.increment();
+                } else if (failures.incrementAndGet() == 2) {
+                    result.completeExceptionally(error);
+                }
+            });
+        };
+
+        CompletableFuture<TrafficData> primaryCall = primary.call(credential, lat, lng, radius);
+        primaryCall.whenComplete((data, error) -> {
+            if (error == null) {
+                result.complete(data);
+            } else if (failures.incrementAndGet() == 2) {
+                result.completeExceptionally(error);
+            } else {
+                launchHedge.run();
+            }
+        });
+
+        result.whenComplete((data, error) -> {
+            primaryCall.cancel(true);
+            CompletableFuture<TrafficData> call = hedgeCall.get();
+            if (call != null) call.cancel(true);
+        });
+
+        long delay = primary.hedgeDelayMillis();
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, trafficExecutor).execute(launchHedge);
+        return result;
+    }
+
+    /**
+     * Incidents inside a bounding box from the credential's provider, or an empty list when the
+     * provider cannot serve area lookups or the lookup fails
+     */
+    public CompletableFuture<List<TrafficIncident>> fetchIncidents(ApiCredential credential,
+                                                                  double minLat, double minLng,
+                                                                  double maxLat, double maxLng) {
+        TrafficProvider provider = resolve(credential);
+        Guard guard = guards.get(provider.getId());
+        if (guard == null || !provider.supportsAreaIncidents()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return guard.guarded(() -> provider.fetchIncidents(credential, minLat, minLng, maxLat, maxLng), false)
+                .exceptionally(e -> {
+                    LOGGER.log(Level.WARNING, "Error fetching " + provider.getId() + " incidents", e);
+                    return List.of();
+                });
+    }
+
+    private ApiCredential findCredential(TrafficProvider provider) {
+        for (ApiCredential credential : apiCredentialService.findUsable()) {
+            if (provider.supports(credential.getProvider())) {
+                return credential;
+            }
+        }
+        return null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        for (Map.Entry<String, Guard> entry : guards.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().getStats());
+        }
+        return stats;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Circuit breaker, bulkhead and latency tracking for one provider
+     */
+    private final class Guard {
+        private final TrafficProvider provider;
+        private final CircuitBreaker breaker;
+        private final Bulkhead bulkhead;
+        private final LatencyTracker latency = new LatencyTracker(256);
+        private final String hedgeWith;
+        private final LongAdder hedgesLaunched = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+
+        private Guard(TrafficProvider provider, Environment environment, ExecutorService handoffExecutor) {
+            String prefix = "traffic.provider." + provider.getId() + ".";
+            this.provider = provider;
+            this.breaker = new CircuitBreaker(
+                    environment.getProperty(prefix + "breaker.window", Integer.class, 20),
+                    environment.getProperty(prefix + "breaker.minimum-calls", Integer.class, 10),
+                    environment.getProperty(prefix + "breaker.failure-rate", Double.class, 0.5),
+                    environment.getProperty(prefix + "breaker.open-ms", Long.class, 30000L));
+            this.bulkhead = new Bulkhead(provider.getId(), provider.getMaxConcurrency(),
+                    environment.getProperty(prefix + "max-queue", Integer.class, 256), handoffExecutor);
+            String hedge = environment.getProperty(prefix + "hedge-with");
+            this.hedgeWith = hedge == null || hedge.isBlank() || hedge.equals(provider.getId()) ? null : hedge;
+        }
+
+        private CompletableFuture<TrafficData> call(ApiCredential credential, double lat, double lng, double radius) {
+            return guarded(() -> provider.fetch(credential, lat, lng, radius), true);
+        }
+
+        /**
+         * Run an upstream call through the breaker and bulkhead. Only point reads feed the
+         * latency tracker, since they are what hedging delays are derived from. Cancelling the
+         * returned future cancels the upstream call.
+         */
+        private <T> CompletableFuture<T> guarded(Supplier<CompletableFuture<T>> upstream, boolean trackLatency) {
+            long permit = breaker.tryAcquire();
+            if (permit == CircuitBreaker.NOT_PERMITTED) {
+                return CompletableFuture.failedFuture(
+                        new RejectedExecutionException("Circuit breaker open for " + provider.getId()));
+            }
+
+            long timeoutMillis = provider.getTimeout().toMillis();
+            long start = System.nanoTime();
+            CompletableFuture<T> call = bulkhead.submit(() -> upstream.get().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS));
+            call.whenComplete((data, error) -> {
+                if (error == null) {
+                    breaker.onSuccess(permit);
+                    if (trackLatency) {
+                        latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    }
+                    return;
+                }
+                Throwable cause = unwrap(error);
+                // Rejected locally (bulkhead full, request out of range) or cancelled as a hedge loser;
+                // neither says anything about the provider's health
+                if (cause instanceof RejectedExecutionException || cause instanceof IllegalArgumentException
+                        || cause instanceof CancellationException) {
+                    breaker.onIgnored(permit);
+                } else {
+                    breaker.onFailure(permit, isNonTransient(cause));
+                }
+            });
+            return call;
+        }
+
+        /**
+         * Auth failures and rate limiting will not clear up on retry, so they open the breaker at once
+         */
+        private boolean isNonTransient(Throwable cause) {
+            if (cause instanceof TrafficProviderException) {
+                int status = ((TrafficProviderException) cause).getStatusCode();
+                return status == 401 || status == 403 || status == 429;
+            }
+            return false;
+        }
+
+        private long hedgeDelayMillis() {
+            if (latency.getCount() < hedgeMinSamples) {
+                return Math.max(hedgeMinDelayMillis, provider.getTimeout().toMillis() / 2);
+            }
+            return Math.max(hedgeMinDelayMillis, latency.percentile(hedgePercentile));
+        }
+
+        private Map<String, Object> getStats() {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("bulkhead", bulkhead.getStats());
+            stats.put("breaker", breaker.getStats());
+            stats.put("latencyMs", latency.getStats());
+            if (hedgeWith != null) {
+                long launched = hedgesLaunched.sum();
+                long wins = hedgeWins.sum();
+                Map<String, Object> hedge = new HashMap<>();
+                hedge.put("with", hedgeWith);
+                hedge.put("launched", launched);
+                hedge.put("wins", wins);
+                hedge.put("winRate", launched == 0 ? 0.0 : (double) wins / launched);
+                stats.put("hedge", hedge);
+            }
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.traffictrack.backend.provider;
+
+/**
+ * Raised when a provider answers with a non-success status or an unusable body
+ */
+public class TrafficProviderException extends RuntimeException {
+
+    private final String providerId;
+    private final int statusCode;
+
+    public TrafficProviderException(String providerId, int statusCode, String message) {
+        super(message);
+        this.providerId = providerId;
+        this.statusCode = statusCode;
+    }
+
+    public String getProviderId() {
+        return providerId;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -1,9 +1,10 @@
 package com.traffictrack.backend.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,20 +16,46 @@ import com.traffictrack.backend.model.TrafficData;
 public interface TrafficDataRepository extends JpaRepository<TrafficData, Long> {
     
     /**
-     * Find most recent traffic data for a specific location and radius
+     * Most recent readings in one tile and radius bucket, newest first. Served by the
+     * (geohash, radius_bucket, fetched_at) index, so a page of one is a single index seek.
      */
-    @Query("SELECT t FROM TrafficData t WHERE t.latitude = :lat AND t.longitude = :lng AND t.radius = :radius ORDER BY t.fetchedAt DESC")
-    Optional<TrafficData> findLatestByLocation(@Param("lat") Double latitude, @Param("lng") Double longitude, @Param("radius") Double radius);
+    @Query("SELECT t FROM TrafficData t WHERE t.geohash = :tile AND t.radiusBucket = :radiusBucket " +
+           "AND t.fetchedAt > :since ORDER BY t.fetchedAt DESC")
+    List<TrafficData> findLatestInTile(@Param("tile") String tile, @Param("radiusBucket") Integer radiusBucket,
+                                       @Param("since") LocalDateTime since, Pageable pageable);
     
     /**
-     * Find all traffic data within a time range
+     * Most recent readings from one source in one tile and radius bucket, newest first
      */
-    List<TrafficData> findByFetchedAtBetween(LocalDateTime start, LocalDateTime end);
+    @Query("SELECT t FROM TrafficData t WHERE t.geohash = :tile AND t.radiusBucket = :radiusBucket " +
+           "AND t.dataSource = :source AND t.fetchedAt > :since ORDER BY t.fetchedAt DESC")
+    List<TrafficData> findLatestInTileFromSource(@Param("tile") String tile, @Param("radiusBucket") Integer radiusBucket,
+                                                 @Param("source") String source, @Param("since") LocalDateTime since,
+                                                 Pageable pageable);
+    
+    /**
+     * Recent readings in any of the given tiles for one radius bucket, newest first
+     */
+    @Query("SELECT t FROM TrafficData t WHERE t.geohash IN :tiles AND t.radiusBucket = :radiusBucket " +
+           "AND t.fetchedAt > :since ORDER BY t.fetchedAt DESC")
+    List<TrafficData> findRecentInTiles(@Param("tiles") Collection<String> tiles, @Param("radiusBucket") Integer radiusBucket,
+                                        @Param("since") LocalDateTime since, Pageable pageable);
     
     /**
-     * Delete old traffic data
+     * Find the most recent readings from one source inside a bounding box and radius range
      */
-    void deleteByFetchedAtBefore(LocalDateTime cutoffTime);
+    @Query("SELECT t FROM TrafficData t WHERE t.latitude BETWEEN :minLat AND :maxLat AND t.longitude BETWEEN :minLng AND :maxLng " +
+           "AND t.radius BETWEEN :minRadius AND :maxRadius AND t.dataSource = :source AND t.fetchedAt > :since ORDER BY t.fetchedAt DESC")
+    List<TrafficData> findRecentInBounds(@Param("minLat") Double minLat, @Param("maxLat") Double maxLat,
+                                         @Param("minLng") Double minLng, @Param("maxLng") Double maxLng,
+                                         @Param("minRadius") Double minRadius, @Param("maxRadius") Double maxRadius,
+                                         @Param("source") String source, @Param("since") LocalDateTime since,
+                                         Pageable pageable);
+    
+    /**
+     * Find all traffic data within a time range
+     */
+    List<TrafficData> findByFetchedAtBetween(LocalDateTime start, LocalDateTime end);
     
     /**
      * Find all recent traffic data (last hour)
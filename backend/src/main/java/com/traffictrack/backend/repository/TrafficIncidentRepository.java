@@ -1,8 +1,10 @@
 package com.traffictrack.backend.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -14,19 +16,19 @@ import com.traffictrack.backend.model.TrafficIncident;
 public interface TrafficIncidentRepository extends JpaRepository<TrafficIncident, Long> {
     
     /**
-     * Find incidents within a geographic bounding box
+     * Incidents reported since the cutoff in any of the given tiles, newest first
      */
-    @Query("SELECT i FROM TrafficIncident i WHERE i.latitude BETWEEN :minLat AND :maxLat AND i.longitude BETWEEN :minLng AND :maxLng")
-    List<TrafficIncident> findByLocationBounds(@Param("minLat") Double minLat, @Param("maxLat") Double maxLat, 
-                                               @Param("minLng") Double minLng, @Param("maxLng") Double maxLng);
+    @Query("SELECT i FROM TrafficIncident i WHERE i.geohash IN :tiles AND i.reportedAt > :since ORDER BY i.reportedAt DESC")
+    List<TrafficIncident> findRecentInTiles(@Param("tiles") Collection<String> tiles, @Param("since") LocalDateTime since,
+                                            Pageable pageable);
     
     /**
-     * Find active incidents (reported in last 24 hours)
+     * Stored incidents with any of the given provider identities
      */
-    List<TrafficIncident> findByReportedAtAfter(LocalDateTime cutoffTime);
+    List<TrafficIncident> findByExternalIdIn(Collection<String> externalIds);
     
     /**
-     * Delete old incidents
+     * Find active incidents (reported in last 24 hours)
      */
-    void deleteByReportedAtBefore(LocalDateTime cutoffTime);
+    List<TrafficIncident> findByReportedAtAfter(LocalDateTime cutoffTime);
 }
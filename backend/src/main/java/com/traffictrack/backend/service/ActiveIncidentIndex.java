@@ -0,0 +1,269 @@
+package com.traffictrack.backend.service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.traffictrack.backend.model.TrafficIncident;
+
+/**
+ * In-memory uniform-grid index of active incidents, so bounding box reads never touch the
+ * database. Incidents are added as they are persisted and dropped when retention deletes
+ * them or go unreported for the incident retention window. Loaded from traffic_incidents once
+ * the application is ready.
+ */
+@Component
+public class ActiveIncidentIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(ActiveIncidentIndex.class.getName());
+
+    private static final Comparator<Entry> NEWEST_FIRST = Comparator
+            .comparing(Entry::reportedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Entry::id);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final double cellDegrees;
+    private final Duration retention;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> byId = new HashMap<>();
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder added = new LongAdder();
+    private final LongAdder removed = new LongAdder();
+
+    public ActiveIncidentIndex(DataSource dataSource,
+                               @Value("${traffic.incidents.index.cell-degrees:0.05}") double cellDegrees,
+                               @Value("${traffic.retention.traffic-incidents:24h}") Duration retention) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.cellDegrees = cellDegrees;
+        this.retention = retention;
+    }
+
+    /**
+     * Load incidents still inside the retention window
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            List<Entry> entries = jdbcTemplate.query(
+                    "SELECT id, traffic_data_id, latitude, longitude, incident_type, severity, description, "
+                            + "delay_minutes, reported_at, COALESCE(last_seen_at, reported_at) AS last_seen_at "
+                            + "FROM traffic_incidents WHERE COALESCE(last_seen_at, reported_at) > ?",
+                    (rs, rowNum) -> {
+                        Timestamp reportedAt = rs.getTimestamp("reported_at");
+                        Timestamp lastSeenAt = rs.getTimestamp("last_seen_at");
+                        return new Entry(rs.getLong("id"), rs.getObject("traffic_data_id", Long.class),
+                                rs.getDouble("latitude"), rs.getDouble("longitude"),
+                                rs.getString("incident_type"), rs.getString("severity"), rs.getString("description"),
+                                rs.getObject("delay_minutes", Integer.class),
+                                reportedAt != null ? reportedAt.toLocalDateTime() : null,
+                                lastSeenAt != null ? lastSeenAt.toLocalDateTime() : null);
+                    },
+                    Timestamp.valueOf(LocalDateTime.now().minus(retention)));
+            lock.writeLock().lock();
+            try {
+                entries.forEach(this::put);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            LOGGER.info("Incident index loaded " + entries.size() + " active incidents");
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not load the incident index", e);
+        }
+    }
+
+    /**
+     * Index persisted incidents; ones without an id yet are ignored
+     */
+    public void addAll(Collection<TrafficIncident> incidents) {
+        lock.writeLock().lock();
+        try {
+            for (TrafficIncident incident : incidents) {
+                if (incident.getId() == null || incident.getLatitude() == null || incident.getLongitude() == null) continue;
+                put(Entry.of(incident));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop incidents that belonged to the given readings
+     */
+    public void removeForReadings(Collection<Long> trafficDataIds) {
+        Set<Long> readings = new HashSet<>(trafficDataIds);
+        lock.writeLock().lock();
+        try {
+            List<Entry> doomed = new ArrayList<>();
+            for (Entry entry : byId.values()) {
+                if (entry.trafficDataId() != null && readings.contains(entry.trafficDataId())) doomed.add(entry);
+            }
+            doomed.forEach(this::remove);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop incidents last seen before the cutoff
+     */
+    public void expire(LocalDateTime cutoff) {
+        lock.writeLock().lock();
+        try {
+            List<Entry> doomed = new ArrayList<>();
+            for (Entry entry : byId.values()) {
+                if (entry.lastSeenAt() == null || entry.lastSeenAt().isBefore(cutoff)) doomed.add(entry);
+            }
+            doomed.forEach(this::remove);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * One page of the incidents inside a bounding box, newest first.
+     *
+     * @param severities lower-case severities to keep, or empty for all
+     */
+    public Page query(double minLat, double minLng, double maxLat, double maxLng, Set<String> severities, int page, int size) {
+        queries.increment();
+        List<Entry> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            long fromRow = cellIndex(minLat), toRow = cellIndex(maxLat);
+            long fromCol = cellIndex(minLng), toCol = cellIndex(maxLng);
+            if ((toRow - fromRow + 1) * (toCol - fromCol + 1) > cells.size()) {
+                // The box spans more cells than are occupied; walk the occupied ones instead
+                for (List<Entry> cell : cells.values()) {
+                    collect(cell, minLat, minLng, maxLat, maxLng, severities, matches);
+                }
+            } else {
+                for (long row = fromRow; row <= toRow; row++) {
+                    for (long col = fromCol; col <= toCol; col++) {
+                        List<Entry> cell = cells.get(key(row, col));
+                        if (cell != null) collect(cell, minLat, minLng, maxLat, maxLng, severities, matches);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort(NEWEST_FIRST);
+        int from = (int) Math.min((long) page * size, matches.size());
+        int to = Math.min(from + size, matches.size());
+        return new Page(List.copyOf(matches.subList(from, to)), matches.size());
+    }
+
+    private static void collect(List<Entry> cell, double minLat, double minLng, double maxLat, double maxLng,
+                                Set<String> severities, List<Entry> matches) {
+        for (Entry entry : cell) {
+            if (entry.latitude() < minLat || entry.latitude() > maxLat
+                    || entry.longitude() < minLng || entry.longitude() > maxLng) continue;
+            if (!severities.isEmpty() && (entry.severity() == null
+                    || !severities.contains(entry.severity().toLowerCase()))) continue;
+            matches.add(entry);
+        }
+    }
+
+    // Callers hold the write lock
+    private void put(Entry entry) {
+        Entry previous = byId.put(entry.id(), entry);
+        if (previous != null) {
+            removeFromCell(previous);
+        } else {
+            added.increment();
+        }
+        cells.computeIfAbsent(key(cellIndex(entry.latitude()), cellIndex(entry.longitude())), k -> new ArrayList<>())
+                .add(entry);
+    }
+
+    private void remove(Entry entry) {
+        if (byId.remove(entry.id()) != null) {
+            removeFromCell(entry);
+            removed.increment();
+        }
+    }
+
+    private void removeFromCell(Entry entry) {
+        long key = key(cellIndex(entry.latitude()), cellIndex(entry.longitude()));
+        List<Entry> cell = cells.get(key);
+        if (cell == null) return;
+        cell.removeIf(e -> e.id() == entry.id());
+        if (cell.isEmpty()) cells.remove(key);
+    }
+
+    private long cellIndex(double degrees) {
+        return (long) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long key(long row, long col) {
+        return (row << 32) ^ (col & 0xffffffffL);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("size", byId.size());
+            stats.put("cells", cells.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("cellDegrees", cellDegrees);
+        stats.put("queries", queries.sum());
+        stats.put("added", added.sum());
+        stats.put("removed", removed.sum());
+        return stats;
+    }
+
+    /**
+     * Immutable copy of an incident as indexed
+     */
+    public record Entry(long id, Long trafficDataId, double latitude, double longitude, String incidentType,
+                        String severity, String description, Integer delayMinutes, LocalDateTime reportedAt,
+                        LocalDateTime lastSeenAt) {
+
+        static Entry of(TrafficIncident incident) {
+            Long trafficDataId = incident.getTrafficData() != null ? incident.getTrafficData().getId() : null;
+            return new Entry(incident.getId(), trafficDataId, incident.getLatitude(), incident.getLongitude(),
+                    incident.getIncidentType(), incident.getSeverity(), incident.getDescription(),
+                    incident.getDelayMinutes(), incident.getReportedAt(),
+                    incident.getLastSeenAt() != null ? incident.getLastSeenAt() : incident.getReportedAt());
+        }
+    }
+
+    public record Page(List<Entry> incidents, int total) {
+    }
+}
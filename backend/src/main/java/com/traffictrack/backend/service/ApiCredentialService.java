@@ -1,8 +1,14 @@
 package com.traffictrack.backend.service;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.traffictrack.backend.model.ApiCredential;
 import com.traffictrack.backend.repository.ApiCredentialRepository;
@@ -11,22 +17,91 @@ import com.traffictrack.backend.repository.ApiCredentialRepository;
 public class ApiCredentialService {
 
     private final ApiCredentialRepository repository;
+    private final long refreshNanos;
 
-    public ApiCredentialService(ApiCredentialRepository repository) {
+    /**
+     * Decrypted usable credentials. Dropped whenever this node changes the table and
+     * reloaded after the refresh interval so changes made by other nodes are picked up.
+     */
+    private volatile Snapshot snapshot;
+
+    public ApiCredentialService(ApiCredentialRepository repository,
+                                @Value("${app.credentials.refresh-seconds:60}") long refreshSeconds) {
         this.repository = repository;
+        this.refreshNanos = TimeUnit.SECONDS.toNanos(refreshSeconds);
     }
 
     public ApiCredential save(String provider, String apiKey) {
         ApiCredential cred = new ApiCredential(provider, apiKey);
-        return repository.save(cred);
+        ApiCredential saved = repository.save(cred);
+        invalidateAfterCommit();
+        return saved;
     }
 
     public Optional<ApiCredential> getLatest() {
         return repository.findTopByOrderByIdDesc();
     }
 
+    /**
+     * Credentials that carry a usable API key, in table order
+     */
+    public List<ApiCredential> findUsable() {
+        Snapshot current = snapshot;
+        if (current == null || System.nanoTime() - current.loadedAt > refreshNanos) {
+            current = reload();
+        }
+        return current.usable;
+    }
+
+    /**
+     * Credential used for live traffic lookups: the first usable one
+     */
+    public ApiCredential getActiveCredential() {
+        List<ApiCredential> usable = findUsable();
+        return usable.isEmpty() ? null : usable.get(0);
+    }
+
     @org.springframework.transaction.annotation.Transactional
     public void deleteAll() {
         repository.deleteAllNative();
+        invalidateAfterCommit();
+    }
+
+    private synchronized Snapshot reload() {
+        // Another caller may have reloaded while this one waited for the lock
+        Snapshot current = snapshot;
+        if (current != null && System.nanoTime() - current.loadedAt <= refreshNanos) {
+            return current;
+        }
+        List<ApiCredential> usable = repository.findAll().stream()
+                .filter(c -> c.getApiKey() != null && !c.getApiKey().isEmpty())
+                .collect(Collectors.toUnmodifiableList());
+        current = new Snapshot(usable, System.nanoTime());
+        snapshot = current;
+        return current;
+    }
+
+    /**
+     * Drop the snapshot once the change is visible to readers. Invalidating before commit
+     * would let a concurrent lookup reload the old rows and keep them for a full interval.
+     */
+    private void invalidateAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate();
+                }
+            });
+        } else {
+            invalidate();
+        }
+    }
+
+    private synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    private record Snapshot(List<ApiCredential> usable, long loadedAt) {
     }
 }
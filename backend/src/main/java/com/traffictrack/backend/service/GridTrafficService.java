@@ -0,0 +1,230 @@
+package com.traffictrack.backend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.model.TrafficIncident;
+
+/**
+ * Fans grid cell lookups out over the async traffic pipeline and collects whatever finishes
+ * within the request deadline. Cells that miss the deadline are reported as stale when a
+ * cached reading exists, otherwise as pending. Incidents are fetched once for the whole grid
+ * envelope and handed to the cell whose point is nearest.
+ */
+@Service
+public class GridTrafficService {
+
+    private static final Logger LOGGER = Logger.getLogger(GridTrafficService.class.getName());
+
+    public static final String STATUS_OK = "ok";
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_STALE = "stale";
+
+    private final TrafficApiService trafficApiService;
+    private final TrafficIncidentService trafficIncidentService;
+    private final ExecutorService trafficExecutor;
+
+    @Value("${traffic.grid.deadline-ms:8000}")
+    private long deadlineMillis;
+
+    @Value("${traffic.grid.max-size:10}")
+    private int maxGridSize;
+
+    public GridTrafficService(TrafficApiService trafficApiService,
+                              TrafficIncidentService trafficIncidentService,
+                              @Qualifier("trafficExecutor") ExecutorService trafficExecutor) {
+        this.trafficApiService = trafficApiService;
+        this.trafficIncidentService = trafficIncidentService;
+        this.trafficExecutor = trafficExecutor;
+    }
+
+    /**
+     * Largest gridSize accepted; a request fans out to gridSize x gridSize lookups
+     */
+    public int getMaxGridSize() {
+        return maxGridSize;
+    }
+
+    /**
+     * Fetch traffic data for every point of a gridSize x gridSize grid around the center.
+     * The returned future completes no later than the configured deadline.
+     *
+     * @throws IllegalArgumentException if gridSize is outside 1..max-size or radius is not positive
+     */
+    public CompletableFuture<GridResult> fetchGridAsync(double centerLat, double centerLng, double radius, int gridSize) {
+        if (gridSize < 1 || gridSize > maxGridSize) {
+            throw new IllegalArgumentException("gridSize must be between 1 and " + maxGridSize);
+        }
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("radius must be greater than 0");
+        }
+        long startNanos = System.nanoTime();
+        List<GridCell> cells = buildCells(centerLat, centerLng, radius, gridSize);
+        double cellRadius = radius / gridSize;
+
+        List<CompletableFuture<TrafficData>> futures = new ArrayList<>(cells.size());
+        for (GridCell cell : cells) {
+            futures.add(submit(cell, cellRadius));
+        }
+
+        // One incident lookup covering every cell's own radius
+        double latExtent = (radius + cellRadius) / 111.0;
+        double lngExtent = (radius + cellRadius) / (111.0 * Math.cos(Math.toRadians(centerLat)));
+        CompletableFuture<List<TrafficIncident>> incidents = trafficIncidentService.fetchArea(
+                centerLat - latExtent, centerLng - lngExtent, centerLat + latExtent, centerLng + lngExtent);
+
+        List<CompletableFuture<?>> all = new ArrayList<>(futures);
+        all.add(incidents);
+        return CompletableFuture.allOf(all.toArray(new CompletableFuture[0]))
+                .handle((ignored, error) -> (Void) null)
+                .completeOnTimeout(null, deadlineMillis, TimeUnit.MILLISECONDS)
+                .thenApplyAsync(ignored -> {
+                    assignIncidents(cells, incidents.getNow(List.of()), centerLat, centerLng, radius, gridSize);
+                    return collect(cells, futures, cellRadius, startNanos);
+                }, trafficExecutor);
+    }
+
+    /**
+     * Give each incident to the cell with the nearest grid point. The grid is regular,
+     * so the cell index follows directly from the offsets to the top-left point.
+     */
+    static void assignIncidents(List<GridCell> cells, List<TrafficIncident> incidents,
+                                 double centerLat, double centerLng, double radius, int gridSize) {
+        if (incidents.isEmpty()) return;
+        if (gridSize < 2) {
+            cells.get(0).incidents.addAll(incidents);
+            return;
+        }
+
+        double latStep = (radius * 2 / 111.0) / (gridSize - 1);
+        double lngStep = (radius * 2 / (111.0 * Math.cos(Math.toRadians(centerLat)))) / (gridSize - 1);
+        double topLeftLat = centerLat + (radius / 111.0);
+        double topLeftLng = centerLng - (radius / (111.0 * Math.cos(Math.toRadians(centerLat))));
+
+        for (TrafficIncident incident : incidents) {
+            int row = clamp((int) Math.round((topLeftLat - incident.getLatitude()) / latStep), gridSize);
+            int col = clamp((int) Math.round((incident.getLongitude() - topLeftLng) / lngStep), gridSize);
+            cells.get(row * gridSize + col).incidents.add(incident);
+        }
+    }
+
+    private static int clamp(int index, int gridSize) {
+        return Math.max(0, Math.min(gridSize - 1, index));
+    }
+
+    private GridResult collect(List<GridCell> cells, List<CompletableFuture<TrafficData>> futures,
+                               double cellRadius, long startNanos) {
+        int pending = 0;
+        for (int i = 0; i < cells.size(); i++) {
+            GridCell cell = cells.get(i);
+            CompletableFuture<TrafficData> future = futures.get(i);
+            TrafficData data = future.isDone() && !future.isCompletedExceptionally() ? future.getNow(null) : null;
+            if (data != null) {
+                cell.data = data;
+                cell.status = STATUS_OK;
+                continue;
+            }
+
+            // Fall back to the last cached reading for the cell, if any
+            TrafficData stale = trafficApiService.findStaleTrafficData(cell.lat, cell.lng, cellRadius);
+            if (stale != null) {
+                cell.data = stale;
+                cell.status = STATUS_STALE;
+            } else {
+                cell.status = STATUS_PENDING;
+            }
+            pending++;
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return new GridResult(cells, pending, elapsedMillis, deadlineMillis);
+    }
+
+    private CompletableFuture<TrafficData> submit(GridCell cell, double cellRadius) {
+        try {
+            return trafficApiService.fetchLiveTrafficDataAsync(cell.lat, cell.lng, cellRadius);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "Traffic executor saturated, cell left pending", e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Lay out grid points row by row starting from the top-left corner
+     */
+    static List<GridCell> buildCells(double centerLat, double centerLng, double radius, int gridSize) {
+        List<GridCell> cells = new ArrayList<>(gridSize * gridSize);
+        if (gridSize < 2) {
+            cells.add(new GridCell(0, 0, centerLat, centerLng));
+            return cells;
+        }
+
+        double latStep = (radius * 2 / 111.0) / (gridSize - 1); // ~111km per degree
+        double lngStep = (radius * 2 / (111.0 * Math.cos(Math.toRadians(centerLat)))) / (gridSize - 1);
+
+        double topLeftLat = centerLat + (radius / 111.0);
+        double topLeftLng = centerLng - (radius / (111.0 * Math.cos(Math.toRadians(centerLat))));
+
+        for (int i = 0; i < gridSize; i++) {
+            for (int j = 0; j < gridSize; j++) {
+                cells.add(new GridCell(i, j, topLeftLat - (i * latStep), topLeftLng + (j * lngStep)));
+            }
+        }
+        return cells;
+    }
+
+    public static class GridCell {
+        private final int gridX;
+        private final int gridY;
+        private final double lat;
+        private final double lng;
+        private TrafficData data;
+        private String status;
+        private final List<TrafficIncident> incidents = new ArrayList<>();
+
+        GridCell(int gridX, int gridY, double lat, double lng) {
+            this.gridX = gridX;
+            this.gridY = gridY;
+            this.lat = lat;
+            this.lng = lng;
+        }
+
+        public int getGridX() { return gridX; }
+        public int getGridY() { return gridY; }
+        public double getLat() { return lat; }
+        public double getLng() { return lng; }
+        public TrafficData getData() { return data; }
+        public String getStatus() { return status; }
+        public List<TrafficIncident> getIncidents() { return incidents; }
+    }
+
+    public static class GridResult {
+        private final List<GridCell> cells;
+        private final int pending;
+        private final long elapsedMillis;
+        private final long deadlineMillis;
+
+        GridResult(List<GridCell> cells, int pending, long elapsedMillis, long deadlineMillis) {
+            this.cells = cells;
+            this.pending = pending;
+            this.elapsedMillis = elapsedMillis;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        public List<GridCell> getCells() { return cells; }
+        public int getPending() { return pending; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public long getDeadlineMillis() { return deadlineMillis; }
+    }
+}
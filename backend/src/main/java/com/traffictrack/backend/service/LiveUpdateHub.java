@@ -0,0 +1,222 @@
+package com.traffictrack.backend.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.traffictrack.backend.geo.Geohash;
+
+/**
+ * Server-sent event fan-out of swarm and traffic changes to clients watching a viewport.
+ * A published change is split by geohash tile and each tile's frame is serialized once;
+ * subscribers receive the already-encoded frames whose tile overlaps their viewport. Every
+ * subscriber has its own send queue drained on the traffic executor, so a slow client only
+ * delays itself, and one that falls max-pending frames behind is disconnected to resync.
+ */
+@Component
+public class LiveUpdateHub {
+
+    private static final Logger LOGGER = Logger.getLogger(LiveUpdateHub.class.getName());
+
+    private final ObjectMapper objectMapper;
+    private final ExecutorService trafficExecutor;
+    private final long timeoutMillis;
+    private final int tilePrecision;
+    private final int maxPending;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder framesBuilt = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public LiveUpdateHub(ObjectMapper objectMapper,
+                         @Qualifier("trafficExecutor") ExecutorService trafficExecutor,
+                         @Value("${live.stream.timeout-ms:1800000}") long timeoutMillis,
+                         @Value("${live.stream.tile-precision:5}") int tilePrecision,
+                         @Value("${live.stream.max-pending:256}") int maxPending) {
+        this.objectMapper = objectMapper;
+        this.trafficExecutor = trafficExecutor;
+        this.timeoutMillis = timeoutMillis;
+        this.tilePrecision = tilePrecision;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Open a stream for a viewport. The client reconnects with a new viewport when the map moves.
+     */
+    public SseEmitter subscribe(double minLat, double minLng, double maxLat, double maxLng, Map<String, Object> hello) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, new double[]{minLat, minLng, maxLat, maxLng});
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        try {
+            subscriber.offer(SseEmitter.event().name("hello").data(objectMapper.writeValueAsString(hello)));
+        } catch (JsonProcessingException e) {
+            LOGGER.log(Level.WARNING, "Could not encode stream greeting", e);
+        }
+        return emitter;
+    }
+
+    /**
+     * Publish one change. Items are grouped by tile; each frame carries the header fields plus
+     * the items of one tile under their collection names.
+     */
+    public void publish(String event, Map<String, Object> header, List<Item> items) {
+        if (subscribers.isEmpty() || items.isEmpty()) return;
+
+        Map<String, List<Item>> byTile = new LinkedHashMap<>();
+        for (Item item : items) {
+            byTile.computeIfAbsent(Geohash.encode(item.lat(), item.lng(), tilePrecision), k -> new ArrayList<>()).add(item);
+        }
+
+        List<Frame> frames = new ArrayList<>(byTile.size());
+        for (Map.Entry<String, List<Item>> tile : byTile.entrySet()) {
+            Map<String, Object> body = new LinkedHashMap<>(header);
+            body.put("tile", tile.getKey());
+            for (Item item : tile.getValue()) {
+                @SuppressWarnings("unchecked")
+                List<Object> collection = (List<Object>) body.computeIfAbsent(item.collection(), k -> new ArrayList<>());
+                collection.add(item.body());
+            }
+            try {
+                frames.add(new Frame(event, objectMapper.writeValueAsString(body), Geohash.bounds(tile.getKey())));
+                framesBuilt.increment();
+            } catch (JsonProcessingException e) {
+                LOGGER.log(Level.WARNING, "Could not encode " + event + " frame", e);
+            }
+        }
+
+        for (Subscriber subscriber : subscribers) {
+            for (Frame frame : frames) {
+                if (subscriber.sees(frame.bounds())) {
+                    subscriber.offer(SseEmitter.event().name(frame.event()).data(frame.json()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether anyone is listening; lets publishers skip building items nobody will receive
+     */
+    public boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    /**
+     * Keep idle connections open through proxies and notice clients that went away
+     */
+    @Scheduled(fixedDelayString = "${live.stream.heartbeat:PT15S}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(SseEmitter.event().comment("ping"));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("subscribers", subscribers.size());
+        stats.put("framesBuilt", framesBuilt.sum());
+        stats.put("framesSent", framesSent.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+
+    /**
+     * A feature to publish: its position decides which tile frame it goes into
+     */
+    public record Item(String collection, double lat, double lng, Object body) {
+    }
+
+    private record Frame(String event, String json, double[] bounds) {
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final double[] viewport;
+        private final Queue<SseEmitter.SseEventBuilder> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter, double[] viewport) {
+            this.emitter = emitter;
+            this.viewport = viewport;
+        }
+
+        private boolean sees(double[] bounds) {
+            return bounds[0] <= viewport[2] && bounds[2] >= viewport[0]
+                    && bounds[1] <= viewport[3] && bounds[3] >= viewport[1];
+        }
+
+        private void offer(SseEmitter.SseEventBuilder event) {
+            if (pendingCount.incrementAndGet() > maxPending) {
+                disconnect(null);
+                return;
+            }
+            pending.add(event);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (!draining.compareAndSet(false, true)) return;
+            try {
+                trafficExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                disconnect(e);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while ((event = pending.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    emitter.send(event);
+                    framesSent.increment();
+                }
+            } catch (IOException | IllegalStateException e) {
+                disconnect(e);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // A frame may have arrived after the queue looked empty
+            if (!pending.isEmpty()) scheduleDrain();
+        }
+
+        private void disconnect(Throwable cause) {
+            if (!subscribers.remove(this)) return;
+            dropped.increment();
+            pending.clear();
+            if (cause == null) {
+                emitter.complete();
+            } else {
+                emitter.completeWithError(cause);
+            }
+        }
+    }
+}
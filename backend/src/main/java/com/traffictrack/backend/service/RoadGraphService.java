@@ -0,0 +1,432 @@
+package com.traffictrack.backend.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.traffictrack.backend.geo.Geohash;
+
+/**
+ * Routing over the swarm's road network. Roads are linked to the intersections at their
+ * ends and held as a graph in compressed sparse row form: each intersection's outgoing
+ * edges are a contiguous slice of flat target, road and weight arrays. Every road is
+ * travelled both ways. An edge's weight is its travel time in seconds at the free-flow
+ * speed slowed by the road's congestion, never below min-speed-factor of free flow.
+ * The graph follows the swarm: when only congestion changed, the weights of changed roads
+ * are recomputed into a new weight array and the topology is kept; a new network rebuilds it.
+ */
+@Service
+public class RoadGraphService {
+
+    private static final Logger LOGGER = Logger.getLogger(RoadGraphService.class.getName());
+
+    private final SwarmService swarmService;
+    private final SwarmState swarmState;
+    private final double freeFlowKmh;
+    private final double minSpeedFactor;
+    private final int maxMatrixCells;
+
+    private final Object buildLock = new Object();
+    private volatile Graph graph;
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<>();
+
+    private final LongAdder routes = new LongAdder();
+    private final LongAdder matrices = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder reweights = new LongAdder();
+
+    public RoadGraphService(SwarmService swarmService, SwarmState swarmState,
+                            @Value("${routing.free-flow-kmh:50}") double freeFlowKmh,
+                            @Value("${routing.min-speed-factor:0.1}") double minSpeedFactor,
+                            @Value("${routing.matrix.max-cells:10000}") int maxMatrixCells) {
+        this.swarmService = swarmService;
+        this.swarmState = swarmState;
+        this.freeFlowKmh = freeFlowKmh;
+        this.minSpeedFactor = minSpeedFactor;
+        this.maxMatrixCells = maxMatrixCells;
+    }
+
+    /**
+     * The graph for the current swarm version, updated first if the swarm has moved on
+     */
+    public Graph graph() {
+        SwarmState.Grid grid = swarmService.currentGrid();
+        Graph current = graph;
+        if (current != null && current.grid() == grid) return current;
+        synchronized (buildLock) {
+            grid = swarmService.currentGrid();
+            current = graph;
+            if (current != null && current.grid() == grid) return current;
+            if (current != null && current.grid().sameNetwork(grid)) {
+                current = reweigh(current, grid);
+                reweights.increment();
+            } else {
+                current = build(grid);
+                rebuilds.increment();
+            }
+            graph = current;
+            return current;
+        }
+    }
+
+    private Graph build(SwarmState.Grid grid) {
+        int nodes = grid.intersectionCount();
+        Map<Long, Integer> byPosition = new HashMap<>(nodes * 2);
+        for (int i = 0; i < nodes; i++) {
+            byPosition.put(positionKey(grid.lat(i), grid.lng(i)), i);
+        }
+
+        // Link each road's ends to intersections; roads that do not end on two are left out
+        int roads = grid.roadCount();
+        int[] from = new int[roads];
+        int[] to = new int[roads];
+        int[] degree = new int[nodes];
+        int linked = 0;
+        for (int r = 0; r < roads; r++) {
+            Integer a = byPosition.get(positionKey(grid.startLat(r), grid.startLng(r)));
+            Integer b = byPosition.get(positionKey(grid.endLat(r), grid.endLng(r)));
+            if (a == null || b == null || a.equals(b)) {
+                from[r] = -1;
+                continue;
+            }
+            from[r] = a;
+            to[r] = b;
+            degree[a]++;
+            degree[b]++;
+            linked++;
+        }
+
+        int[] offsets = new int[nodes + 1];
+        for (int i = 0; i < nodes; i++) offsets[i + 1] = offsets[i] + degree[i];
+        int[] targets = new int[linked * 2];
+        int[] edgeRoad = new int[linked * 2];
+        double[] lengthKm = new double[linked * 2];
+        int[] roadEdges = new int[roads * 2];
+        Arrays.fill(roadEdges, -1);
+        int[] fill = Arrays.copyOf(offsets, nodes);
+        for (int r = 0; r < roads; r++) {
+            if (from[r] < 0) continue;
+            double km = Geohash.distanceKm(grid.startLat(r), grid.startLng(r), grid.endLat(r), grid.endLng(r));
+            int forward = fill[from[r]]++;
+            targets[forward] = to[r];
+            edgeRoad[forward] = r;
+            lengthKm[forward] = km;
+            int backward = fill[to[r]]++;
+            targets[backward] = from[r];
+            edgeRoad[backward] = r;
+            lengthKm[backward] = km;
+            roadEdges[2 * r] = forward;
+            roadEdges[2 * r + 1] = backward;
+        }
+
+        double[] weights = new double[targets.length];
+        for (int e = 0; e < targets.length; e++) {
+            weights[e] = travelSeconds(lengthKm[e], grid.roadCongestion(edgeRoad[e]));
+        }
+        if (linked < roads) {
+            LOGGER.info("Road graph left out " + (roads - linked) + " roads that do not join two intersections");
+        }
+        return new Graph(grid, offsets, targets, edgeRoad, lengthKm, weights, roadEdges, linked);
+    }
+
+    /**
+     * Same network, newer congestion: copy the weights and recompute the edges of changed
+     * roads, or of all roads when the change log no longer reaches back to the graph's version
+     */
+    private Graph reweigh(Graph previous, SwarmState.Grid grid) {
+        double[] weights = previous.weights().clone();
+        SwarmState.Commit changes = swarmState.changesSince(previous.grid().version());
+        if (changes == null || !changes.grid().sameNetwork(grid)) {
+            for (int e = 0; e < weights.length; e++) {
+                weights[e] = travelSeconds(previous.lengthKm()[e], grid.roadCongestion(previous.edgeRoad()[e]));
+            }
+        } else {
+            // The change set may be newer than grid; reading congestion from its grid keeps both in step
+            grid = changes.grid();
+            BitSet roads = changes.roads();
+            for (int r = roads.nextSetBit(0); r >= 0; r = roads.nextSetBit(r + 1)) {
+                for (int k = 0; k < 2; k++) {
+                    int e = previous.roadEdges()[2 * r + k];
+                    if (e >= 0) weights[e] = travelSeconds(previous.lengthKm()[e], grid.roadCongestion(r));
+                }
+            }
+        }
+        return new Graph(grid, previous.offsets(), previous.targets(), previous.edgeRoad(), previous.lengthKm(),
+                weights, previous.roadEdges(), previous.linkedRoads());
+    }
+
+    private double travelSeconds(double km, double congestion) {
+        double speed = freeFlowKmh * Math.max(minSpeedFactor, 1 - congestion);
+        return km / speed * 3600;
+    }
+
+    private static long positionKey(double lat, double lng) {
+        // Road ends are stored with the coordinates of the intersection they start or end at
+        return (Math.round(lat * 1e6) << 32) ^ (Math.round(lng * 1e6) & 0xffffffffL);
+    }
+
+    /**
+     * The intersection nearest to a point
+     */
+    public int nearestIntersection(Graph graph, double lat, double lng) {
+        SwarmState.Grid grid = graph.grid();
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        double cosLat = Math.cos(Math.toRadians(lat));
+        for (int i = 0; i < grid.intersectionCount(); i++) {
+            double dLat = grid.lat(i) - lat;
+            double dLng = (grid.lng(i) - lng) * cosLat;
+            double distance = dLat * dLat + dLng * dLng;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Fastest path between two intersections by A*, guided by straight-line distance at
+     * free-flow speed, which no edge can beat.
+     *
+     * @return the route, or null when the target cannot be reached
+     */
+    public Route route(Graph graph, int source, int target) {
+        routes.increment();
+        SwarmState.Grid grid = graph.grid();
+        Workspace ws = workspace(graph.nodeCount());
+        ws.reset();
+        ws.relax(source, 0, -1, -1, heuristic(grid, source, target));
+        int settled = 0;
+        while (!ws.heap.isEmpty()) {
+            int node = ws.heap.poll();
+            if (ws.closed[node] == ws.generation) continue;
+            ws.closed[node] = ws.generation;
+            settled++;
+            if (node == target) break;
+            double base = ws.dist[node];
+            for (int e = graph.offsets()[node]; e < graph.offsets()[node + 1]; e++) {
+                int next = graph.targets()[e];
+                if (ws.closed[next] == ws.generation) continue;
+                double candidate = base + graph.weights()[e];
+                if (ws.seen[next] != ws.generation || candidate < ws.dist[next]) {
+                    ws.relax(next, candidate, node, e, candidate + heuristic(grid, next, target));
+                }
+            }
+        }
+        if (ws.closed[target] != ws.generation) return null;
+
+        int hops = 0;
+        for (int node = target; node != source; node = ws.prev[node]) hops++;
+        int[] path = new int[hops + 1];
+        int[] roads = new int[hops];
+        double km = 0;
+        int node = target;
+        for (int k = hops; k > 0; k--) {
+            path[k] = node;
+            int edge = ws.prevEdge[node];
+            roads[k - 1] = graph.edgeRoad()[edge];
+            km += graph.lengthKm()[edge];
+            node = ws.prev[node];
+        }
+        path[0] = source;
+        return new Route(path, roads, ws.dist[target], km, settled);
+    }
+
+    private double heuristic(SwarmState.Grid grid, int node, int target) {
+        return Geohash.distanceKm(grid.lat(node), grid.lng(node), grid.lat(target), grid.lng(target)) / freeFlowKmh * 3600;
+    }
+
+    /**
+     * Travel seconds from every source to every target, one Dijkstra search per source,
+     * run in parallel. Each search stops once all targets are settled. Unreachable pairs are NaN.
+     */
+    public double[][] matrix(Graph graph, int[] sources, int[] targets) {
+        if ((long) sources.length * targets.length > maxMatrixCells) {
+            throw new IllegalArgumentException("Matrix of " + sources.length + " x " + targets.length
+                    + " exceeds " + maxMatrixCells + " cells");
+        }
+        matrices.increment();
+        double[][] result = new double[sources.length][];
+        IntStream.range(0, sources.length).parallel()
+                .forEach(s -> result[s] = oneToMany(graph, sources[s], targets));
+        return result;
+    }
+
+    private double[] oneToMany(Graph graph, int source, int[] targets) {
+        Workspace ws = workspace(graph.nodeCount());
+        ws.reset();
+        BitSet wanted = new BitSet(graph.nodeCount());
+        for (int t : targets) wanted.set(t);
+        int remaining = wanted.cardinality();
+        ws.relax(source, 0, -1, -1, 0);
+        while (!ws.heap.isEmpty() && remaining > 0) {
+            int node = ws.heap.poll();
+            if (ws.closed[node] == ws.generation) continue;
+            ws.closed[node] = ws.generation;
+            if (wanted.get(node)) remaining--;
+            double base = ws.dist[node];
+            for (int e = graph.offsets()[node]; e < graph.offsets()[node + 1]; e++) {
+                int next = graph.targets()[e];
+                if (ws.closed[next] == ws.generation) continue;
+                double candidate = base + graph.weights()[e];
+                if (ws.seen[next] != ws.generation || candidate < ws.dist[next]) {
+                    ws.relax(next, candidate, node, e, candidate);
+                }
+            }
+        }
+        double[] row = new double[targets.length];
+        for (int k = 0; k < targets.length; k++) {
+            row[k] = ws.closed[targets[k]] == ws.generation ? ws.dist[targets[k]] : Double.NaN;
+        }
+        return row;
+    }
+
+    /**
+     * Search state reused by a thread across queries; a generation stamp marks what belongs
+     * to the current search, so nothing is cleared between searches
+     */
+    private Workspace workspace(int nodes) {
+        Workspace ws = workspaces.get();
+        if (ws == null || ws.dist.length < nodes) {
+            ws = new Workspace(nodes);
+            workspaces.set(ws);
+        }
+        return ws;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        Graph current = graph;
+        stats.put("version", current != null ? current.grid().version() : null);
+        stats.put("nodes", current != null ? current.nodeCount() : 0);
+        stats.put("edges", current != null ? current.targets().length : 0);
+        stats.put("linkedRoads", current != null ? current.linkedRoads() : 0);
+        stats.put("routes", routes.sum());
+        stats.put("matrices", matrices.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("reweights", reweights.sum());
+        return stats;
+    }
+
+    /**
+     * The road graph of one swarm version. Edges of node i are offsets[i] until offsets[i + 1];
+     * roadEdges holds each road's two directed edges, or -1 when the road was left out.
+     */
+    public record Graph(SwarmState.Grid grid, int[] offsets, int[] targets, int[] edgeRoad, double[] lengthKm,
+                        double[] weights, int[] roadEdges, int linkedRoads) {
+
+        public int nodeCount() {
+            return offsets.length - 1;
+        }
+    }
+
+    /**
+     * Intersections (by index) and roads (by index) along a route
+     */
+    public record Route(int[] intersections, int[] roads, double travelSeconds, double distanceKm, int settled) {
+
+        public List<double[]> coordinates(SwarmState.Grid grid) {
+            return Arrays.stream(intersections).mapToObj(i -> new double[]{grid.lat(i), grid.lng(i)}).toList();
+        }
+    }
+
+    private static final class Workspace {
+        private final double[] dist;
+        private final int[] prev;
+        private final int[] prevEdge;
+        private final int[] seen;
+        private final int[] closed;
+        private final NodeHeap heap;
+        private int generation;
+
+        private Workspace(int nodes) {
+            dist = new double[nodes];
+            prev = new int[nodes];
+            prevEdge = new int[nodes];
+            seen = new int[nodes];
+            closed = new int[nodes];
+            heap = new NodeHeap(64);
+        }
+
+        private void reset() {
+            generation++;
+            heap.clear();
+        }
+
+        private void relax(int node, double distance, int from, int edge, double priority) {
+            dist[node] = distance;
+            prev[node] = from;
+            prevEdge[node] = edge;
+            seen[node] = generation;
+            heap.add(node, priority);
+        }
+    }
+
+    /**
+     * Binary min-heap of nodes keyed by priority, in two parallel arrays. A node whose
+     * priority improves is added again; stale entries are skipped when polled.
+     */
+    private static final class NodeHeap {
+        private int[] nodes;
+        private double[] keys;
+        private int size;
+
+        private NodeHeap(int capacity) {
+            nodes = new int[capacity];
+            keys = new double[capacity];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(int node, double key) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            int at = size++;
+            while (at > 0) {
+                int parent = (at - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                nodes[at] = nodes[parent];
+                keys[at] = keys[parent];
+                at = parent;
+            }
+            nodes[at] = node;
+            keys[at] = key;
+        }
+
+        int poll() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            double lastKey = keys[size];
+            int at = 0;
+            while (true) {
+                int child = 2 * at + 1;
+                if (child >= size) break;
+                if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                if (keys[child] >= lastKey) break;
+                nodes[at] = nodes[child];
+                keys[at] = keys[child];
+                at = child;
+            }
+            nodes[at] = lastNode;
+            keys[at] = lastKey;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package com.traffictrack.backend.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.traffictrack.backend.config.TrafficExecutorConfig;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Particle swarm search for signal timings. Every intersection has a cycle length between
+ * min-cycle and max-cycle and an offset within its cycle; a candidate is scored by the
+ * modelled delay per vehicle over all road approaches. An approach's delay is Webster's:
+ * the uniform term for its share of green after lost time, plus the overflow term as it
+ * nears saturation. Where the upstream signal runs a similar cycle, a platoon-share of the
+ * traffic arrives as a platoon released at the start of the upstream green, and waits only
+ * if it reaches the stop line on red, which is what the offsets coordinate.
+ *
+ * Intersections are optimized in blocks of at most block-size, against the best timings
+ * found so far for everything outside the block, so memory and work per iteration grow with
+ * the block rather than the network. Particles are scored in parallel; scoring reads only
+ * flat arrays and allocates nothing.
+ */
+@Service
+public class SignalOptimizerService {
+
+    private static final Logger LOGGER = Logger.getLogger(SignalOptimizerService.class.getName());
+
+    private static final double INERTIA = 0.72;
+    private static final double COGNITIVE = 1.49;
+    private static final double SOCIAL = 1.49;
+    private static final double MAX_VELOCITY = 0.2;
+
+    private final SwarmService swarmService;
+    private final SwarmState swarmState;
+    private final RoadGraphService roadGraphService;
+    private final int minCycle;
+    private final int maxCycle;
+    private final double lostSeconds;
+    private final double saturationPerHour;
+    private final double platoonShare;
+    private final double coherenceSeconds;
+    private final double freeFlowKmh;
+    private final int defaultParticles;
+    private final int defaultIterations;
+    private final int blockSize;
+    private final ExecutorService executor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Progress progress;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+
+    public SignalOptimizerService(SwarmService swarmService, SwarmState swarmState, RoadGraphService roadGraphService,
+                                  @Value("${optimizer.min-cycle:30}") int minCycle,
+                                  @Value("${optimizer.max-cycle:120}") int maxCycle,
+                                  @Value("${optimizer.lost-seconds:4}") double lostSeconds,
+                                  @Value("${optimizer.saturation-per-hour:1800}") double saturationPerHour,
+                                  @Value("${optimizer.platoon-share:0.6}") double platoonShare,
+                                  @Value("${optimizer.coherence-seconds:10}") double coherenceSeconds,
+                                  @Value("${routing.free-flow-kmh:50}") double freeFlowKmh,
+                                  @Value("${optimizer.particles:40}") int defaultParticles,
+                                  @Value("${optimizer.iterations:200}") int defaultIterations,
+                                  @Value("${optimizer.block-size:64}") int blockSize) {
+        this.swarmService = swarmService;
+        this.swarmState = swarmState;
+        this.roadGraphService = roadGraphService;
+        this.minCycle = minCycle;
+        this.maxCycle = Math.max(minCycle, maxCycle);
+        this.lostSeconds = lostSeconds;
+        this.saturationPerHour = saturationPerHour;
+        this.platoonShare = platoonShare;
+        this.coherenceSeconds = coherenceSeconds;
+        this.freeFlowKmh = freeFlowKmh;
+        this.defaultParticles = defaultParticles;
+        this.defaultIterations = defaultIterations;
+        this.blockSize = Math.max(1, blockSize);
+        this.executor = Executors.newSingleThreadExecutor(TrafficExecutorConfig.namedThreadFactory("optimizer-"));
+    }
+
+    /**
+     * Start an optimization in the background; false if one is already running
+     */
+    public boolean start(Integer particles, Integer iterations, boolean apply) {
+        if (!running.compareAndSet(false, true)) return false;
+        Progress job = new Progress(particles != null ? particles : defaultParticles,
+                iterations != null ? iterations : defaultIterations, apply);
+        progress = job;
+        try {
+            executor.execute(() -> {
+                try {
+                    optimize(job);
+                } catch (RuntimeException e) {
+                    job.state = "failed";
+                    job.error = e.getMessage();
+                    LOGGER.log(Level.WARNING, "Signal optimization failed", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Progress of the running optimization, or the result of the last one
+     */
+    public Map<String, Object> getProgress() {
+        Progress current = progress;
+        if (current == null) return Map.of("state", "idle");
+        return current.toMap();
+    }
+
+    /**
+     * Run an optimization on the calling thread, reporting into progress, and apply the timings
+     * if asked to and they beat the current ones
+     */
+    public void optimize(Progress progress) {
+        progress.startedNanos = System.nanoTime();
+        progress.state = "running";
+        RoadGraphService.Graph graph = roadGraphService.graph();
+        Problem problem = new Problem(graph);
+        int nodes = graph.nodeCount();
+        double[] cycle = new double[nodes];
+        double[] offset = new double[nodes];
+        // Offsets are seconds after this instant at which each signal's cycle starts
+        long reference = System.currentTimeMillis();
+        for (int i = 0; i < nodes; i++) {
+            cycle[i] = Math.min(maxCycle, Math.max(minCycle, graph.grid().cycleDuration(i)));
+            offset[i] = Math.floorMod(graph.grid().cycleStart(i) - reference, (long) (cycle[i] * 1000)) / 1000.0;
+        }
+        progress.initialDelay = problem.meanDelay(cycle, offset);
+        progress.bestDelay = progress.initialDelay;
+        progress.blocks = (nodes + blockSize - 1) / blockSize;
+
+        for (int block = 0; block < progress.blocks; block++) {
+            progress.block = block + 1;
+            int from = block * blockSize;
+            new Block(problem, from, Math.min(nodes, from + blockSize), cycle, offset, progress).run();
+            progress.bestDelay = problem.meanDelay(cycle, offset);
+        }
+        progress.elapsedMs = (System.nanoTime() - progress.startedNanos) / 1_000_000;
+        runs.increment();
+
+        if (progress.apply && progress.bestDelay < progress.initialDelay) {
+            SwarmState.Commit commit = swarmState.update(update -> {
+                if (!update.base().sameNetwork(graph.grid())) return;
+                for (int i = 0; i < nodes; i++) {
+                    update.setCycleDuration(i, (int) Math.round(cycle[i]));
+                    update.setCycleStart(i, reference + Math.round(offset[i] * 1000));
+                }
+            });
+            if (commit != null) {
+                swarmService.publish(commit);
+                progress.appliedVersion = commit.grid().version();
+            }
+        }
+        progress.state = "done";
+        LOGGER.info(String.format("Signal optimization: mean delay %.1fs -> %.1fs in %d ms", progress.initialDelay,
+                progress.bestDelay, progress.elapsedMs));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("runs", runs.sum());
+        stats.put("evaluations", evaluations.sum());
+        stats.put("running", running.get());
+        stats.put("blockSize", blockSize);
+        return stats;
+    }
+
+    /**
+     * Approach data for every directed edge of the road graph
+     */
+    private final class Problem {
+        private final RoadGraphService.Graph graph;
+        private final int[] source;
+        private final int[] reverse;
+        private final boolean[] northSouth;
+        private final double[] demand;
+        private final double[] travelSeconds;
+        private final double totalDemand;
+
+        private Problem(RoadGraphService.Graph graph) {
+            this.graph = graph;
+            SwarmState.Grid grid = graph.grid();
+            int edges = graph.targets().length;
+            source = new int[edges];
+            reverse = new int[edges];
+            northSouth = new boolean[edges];
+            demand = new double[edges];
+            travelSeconds = new double[edges];
+            int[] offsets = graph.offsets();
+            for (int v = 0; v < graph.nodeCount(); v++) {
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) source[e] = v;
+            }
+            int[] roadEdges = graph.roadEdges();
+            for (int r = 0; r < roadEdges.length / 2; r++) {
+                int forward = roadEdges[2 * r], backward = roadEdges[2 * r + 1];
+                if (forward < 0) continue;
+                reverse[forward] = backward;
+                reverse[backward] = forward;
+                boolean axis = Math.abs(grid.endLat(r) - grid.startLat(r)) >= Math.abs(grid.endLng(r) - grid.startLng(r));
+                northSouth[forward] = axis;
+                northSouth[backward] = axis;
+            }
+            double total = 0;
+            for (int e = 0; e < edges; e++) {
+                // Congestion read as the approach's degree of saturation at an even green split
+                demand[e] = grid.roadCongestion(graph.edgeRoad()[e]) * saturationPerHour / 2;
+                travelSeconds[e] = graph.lengthKm()[e] / freeFlowKmh * 3600;
+                total += demand[e];
+            }
+            totalDemand = total;
+        }
+
+        double meanDelay(double[] cycle, double[] offset) {
+            double sum = 0;
+            for (int e = 0; e < source.length; e++) {
+                int u = source[e], v = graph.targets()[e];
+                sum += demand[e] * delay(e, cycle[u], offset[u], cycle[v], offset[v]);
+            }
+            return totalDemand > 0 ? sum / totalDemand : 0;
+        }
+
+        /**
+         * Seconds of delay per vehicle on edge e into v, released by the signal at u
+         */
+        double delay(int e, double cycleU, double offsetU, double cycleV, double offsetV) {
+            double q = demand[e];
+            if (q <= 0) return 0;
+            double green = Math.max(1, cycleV / 2 - lostSeconds);
+            double share = green / cycleV;
+            double saturation = Math.min(0.98, q / (saturationPerHour * share));
+            double uniform = cycleV * (1 - share) * (1 - share) / (2 * (1 - saturation * share));
+            double overflow = saturation * saturation / (2 * (q / 3600) * (1 - saturation));
+
+            // Green for this approach's axis starts at the offset, or half a cycle later for east-west
+            double halfU = northSouth[e] ? 0 : cycleU / 2;
+            double halfV = northSouth[e] ? 0 : cycleV / 2;
+            double arrival = offsetU + halfU + travelSeconds[e] - (offsetV + halfV);
+            double phase = ((arrival % cycleV) + cycleV) % cycleV;
+            double platoon = phase < green ? 0 : cycleV - phase;
+            double coherence = platoonShare * Math.max(0, 1 - Math.abs(cycleU - cycleV) / coherenceSeconds);
+            return (1 - coherence) * uniform + coherence * platoon + overflow;
+        }
+    }
+
+    /**
+     * One particle swarm over the timings of intersections from..to. Positions are kept in [0, 1]
+     * per dimension, two dimensions per intersection: cycle between the bounds, and offset as a
+     * fraction of that cycle, which wraps around instead of being clamped.
+     */
+    private final class Block {
+        private final Problem problem;
+        private final int from;
+        private final int size;
+        private final double[] cycle;
+        private final double[] offset;
+        private final Progress progress;
+        private final int[] edges;
+        private final int particles;
+        private final int dimensions;
+        private final double[] position;
+        private final double[] velocity;
+        private final double[] best;
+        private final double[] bestFitness;
+        private final double[] swarmBest;
+        private double swarmBestFitness;
+        private final SplittableRandom[] randoms;
+
+        private Block(Problem problem, int from, int to, double[] cycle, double[] offset, Progress progress) {
+            this.problem = problem;
+            this.from = from;
+            this.size = to - from;
+            this.cycle = cycle;
+            this.offset = offset;
+            this.progress = progress;
+            this.particles = Math.max(2, progress.particles);
+            this.dimensions = size * 2;
+
+            // Edges with an end in the block; the rest of the network does not change with it
+            int[] offsets = problem.graph.offsets();
+            int[] targets = problem.graph.targets();
+            int[] found = new int[(offsets[to] - offsets[from]) * 2];
+            int count = 0;
+            for (int v = from; v < to; v++) {
+                for (int o = offsets[v]; o < offsets[v + 1]; o++) {
+                    found[count++] = o;
+                    if (targets[o] < from || targets[o] >= to) found[count++] = problem.reverse[o];
+                }
+            }
+            edges = Arrays.copyOf(found, count);
+
+            position = new double[particles * dimensions];
+            velocity = new double[particles * dimensions];
+            best = new double[particles * dimensions];
+            bestFitness = new double[particles];
+            swarmBest = new double[dimensions];
+            randoms = new SplittableRandom[particles];
+            SplittableRandom seed = new SplittableRandom();
+            for (int p = 0; p < particles; p++) {
+                randoms[p] = seed.split();
+                int base = p * dimensions;
+                for (int k = 0; k < size; k++) {
+                    if (p == 0) {
+                        // The current timings are one of the candidates, so a run never ends worse
+                        position[base + 2 * k] = (cycle[from + k] - minCycle) / Math.max(1, maxCycle - minCycle);
+                        position[base + 2 * k + 1] = offset[from + k] / cycle[from + k];
+                    } else {
+                        position[base + 2 * k] = randoms[p].nextDouble();
+                        position[base + 2 * k + 1] = randoms[p].nextDouble();
+                    }
+                }
+                for (int d = 0; d < dimensions; d++) {
+                    velocity[base + d] = (randoms[p].nextDouble() - 0.5) * MAX_VELOCITY;
+                }
+            }
+        }
+
+        void run() {
+            IntStream.range(0, particles).parallel().forEach(p -> {
+                bestFitness[p] = fitness(p);
+                System.arraycopy(position, p * dimensions, best, p * dimensions, dimensions);
+            });
+            swarmBestFitness = Double.MAX_VALUE;
+            takeSwarmBest();
+
+            for (int iteration = 1; iteration <= progress.totalIterations; iteration++) {
+                progress.iteration = iteration;
+                progress.elapsedMs = (System.nanoTime() - progress.startedNanos) / 1_000_000;
+                IntStream.range(0, particles).parallel().forEach(this::move);
+                takeSwarmBest();
+                evaluations.add(particles);
+            }
+            for (int k = 0; k < size; k++) {
+                cycle[from + k] = cycleOf(swarmBest, 0, k);
+                offset[from + k] = swarmBest[2 * k + 1] * cycle[from + k];
+            }
+        }
+
+        private void takeSwarmBest() {
+            for (int p = 0; p < particles; p++) {
+                if (bestFitness[p] < swarmBestFitness) {
+                    swarmBestFitness = bestFitness[p];
+                    System.arraycopy(best, p * dimensions, swarmBest, 0, dimensions);
+                }
+            }
+        }
+
+        private void move(int p) {
+            SplittableRandom random = randoms[p];
+            int base = p * dimensions;
+            for (int d = 0; d < dimensions; d++) {
+                double v = INERTIA * velocity[base + d]
+                        + COGNITIVE * random.nextDouble() * (best[base + d] - position[base + d])
+                        + SOCIAL * random.nextDouble() * (swarmBest[d] - position[base + d]);
+                v = Math.max(-MAX_VELOCITY, Math.min(MAX_VELOCITY, v));
+                velocity[base + d] = v;
+                double x = position[base + d] + v;
+                position[base + d] = d % 2 == 0 ? Math.max(0, Math.min(1, x)) : x - Math.floor(x);
+            }
+            double fitness = fitness(p);
+            if (fitness < bestFitness[p]) {
+                bestFitness[p] = fitness;
+                System.arraycopy(position, base, best, base, dimensions);
+            }
+        }
+
+        /**
+         * Demand-weighted delay over the block's edges for particle p
+         */
+        private double fitness(int p) {
+            int base = p * dimensions;
+            int[] targets = problem.graph.targets();
+            double sum = 0;
+            for (int e : edges) {
+                int u = problem.source[e], v = targets[e];
+                double cu = cycleAt(base, u), cv = cycleAt(base, v);
+                sum += problem.demand[e] * problem.delay(e, cu, offsetAt(base, u, cu), cv, offsetAt(base, v, cv));
+            }
+            return sum;
+        }
+
+        private double cycleAt(int base, int node) {
+            int k = node - from;
+            return k >= 0 && k < size ? cycleOf(position, base, k) : cycle[node];
+        }
+
+        private double offsetAt(int base, int node, double nodeCycle) {
+            int k = node - from;
+            return k >= 0 && k < size ? position[base + 2 * k + 1] * nodeCycle : offset[node];
+        }
+
+        private double cycleOf(double[] positions, int base, int k) {
+            // Whole seconds, as the signals run them
+            return Math.round(minCycle + positions[base + 2 * k] * (maxCycle - minCycle));
+        }
+    }
+
+    /**
+     * Progress and result of one optimization
+     */
+    public static final class Progress {
+        private final int particles;
+        private final int totalIterations;
+        private final boolean apply;
+        private volatile String state = "queued";
+        private volatile String error;
+        private volatile long startedNanos;
+        private volatile int iteration;
+        private volatile int block;
+        private volatile int blocks;
+        private volatile double initialDelay;
+        private volatile double bestDelay;
+        private volatile long elapsedMs;
+        private volatile Long appliedVersion;
+
+        public Progress(int particles, int iterations, boolean apply) {
+            this.particles = particles;
+            this.totalIterations = Math.max(1, iterations);
+            this.apply = apply;
+        }
+
+        public String state() {
+            return state;
+        }
+
+        public double initialDelay() {
+            return initialDelay;
+        }
+
+        public double bestDelay() {
+            return bestDelay;
+        }
+
+        public Long appliedVersion() {
+            return appliedVersion;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("state", state);
+            map.put("particles", particles);
+            map.put("iterations", totalIterations);
+            map.put("iteration", iteration);
+            map.put("block", block);
+            map.put("blocks", blocks);
+            map.put("apply", apply);
+            map.put("initialDelaySeconds", initialDelay);
+            map.put("bestDelaySeconds", bestDelay);
+            map.put("improvement", initialDelay > 0 ? 1 - bestDelay / initialDelay : 0.0);
+            map.put("elapsedMs", elapsedMs);
+            map.put("appliedVersion", appliedVersion);
+            if (error != null) map.put("error", error);
+            return map;
+        }
+    }
+}
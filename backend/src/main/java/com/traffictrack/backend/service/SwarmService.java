@@ -1,197 +1,386 @@
 package com.traffictrack.backend.service;
 
-import java.time.Duration;
-import java.time.Instant;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-
-import com.traffictrack.backend.model.Intersection;
-import com.traffictrack.backend.model.Road;
-import com.traffictrack.backend.repository.IntersectionRepository;
-import com.traffictrack.backend.repository.RoadRepository;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Swarm reads and updates. The swarm lives in {@link SwarmState}, which is loaded from the
+ * database on first use and written back to it in the background; updates change memory only.
+ * Each committed change has a version, so polling clients can ask for just the changes since
+ * the version they hold, and the full snapshot of each version is encoded, as JSON and
+ * gzipped JSON, once, straight from the state's columns. Signal countdowns and phases in
+ * a response are worked out from each signal's cycle start as of the response's timestamp,
+ * which also lets a client keep counting down without asking again.
+ * The default network is a rows x cols grid of intersections around a configurable center,
+ * each joined to its right and lower neighbours.
+ */
 @Service
 public class SwarmService {
 
-    private static final int GRID_SIZE = 9;
-    private static final Duration CACHE_DURATION = Duration.ofMinutes(10);
-    private final IntersectionRepository intersectionRepository;
-    private final RoadRepository roadRepository;
+    private static final String[] STREET_NAMES = {"Main", "Oak", "Pine", "Maple", "Cedar", "Elm", "Wall", "Park"};
+    private static final String[] AVENUE_NAMES = {"1st", "2nd", "3rd", "4th", "5th", "Broadway", "Central", "Lexington"};
+
+    private final SwarmState swarmState;
+    private final int gridRows;
+    private final int gridCols;
+    private final double centerLat;
+    private final double centerLng;
+    private final double spacingDegrees;
+    private final Object loadLock = new Object();
     private volatile Map<String, Object> cachedResponse;
-    private volatile Instant cacheTimestamp = Instant.EPOCH;
     private final Object cacheLock = new Object();
 
-    public SwarmService(IntersectionRepository intersectionRepository, RoadRepository roadRepository) {
-        this.intersectionRepository = intersectionRepository;
-        this.roadRepository = roadRepository;
+    private final LiveUpdateHub liveUpdateHub;
+    private final ObjectMapper objectMapper;
+    // Distinguishes ETags across restarts, since versions start again from zero
+    private final String instanceTag = Long.toString(System.currentTimeMillis(), 36);
+    private volatile EncodedSnapshot encodedSnapshot;
+
+    public SwarmService(SwarmState swarmState, LiveUpdateHub liveUpdateHub, ObjectMapper objectMapper,
+                        @Value("${swarm.grid.rows:9}") int gridRows,
+                        @Value("${swarm.grid.cols:9}") int gridCols,
+                        @Value("${swarm.grid.center-lat:51.505}") double centerLat,
+                        @Value("${swarm.grid.center-lng:-0.09}") double centerLng,
+                        @Value("${swarm.grid.spacing-degrees:0.0125}") double spacingDegrees) {
+        this.swarmState = swarmState;
+        this.liveUpdateHub = liveUpdateHub;
+        this.objectMapper = objectMapper;
+        this.gridRows = gridRows;
+        this.gridCols = gridCols;
+        this.centerLat = centerLat;
+        this.centerLng = centerLng;
+        this.spacingDegrees = spacingDegrees;
     }
 
     /**
-     * Get swarm data from database. If no data exists, initialize with default data.
+     * Get the current swarm. If no data exists, initialize with default data.
      */
-    @Transactional
     public Map<String, Object> getSwarmData() {
+        SwarmState.Grid grid = grid();
         Map<String, Object> snapshot = cachedResponse;
-        if (snapshot != null && Duration.between(cacheTimestamp, Instant.now()).compareTo(CACHE_DURATION) < 0) {
+        if (isCurrent(snapshot, grid)) {
             return snapshot;
         }
 
         synchronized (cacheLock) {
-            if (cachedResponse != null && Duration.between(cacheTimestamp, Instant.now()).compareTo(CACHE_DURATION) < 0) {
+            grid = grid();
+            if (isCurrent(cachedResponse, grid)) {
                 return cachedResponse;
             }
 
-            Map<String, Object> fresh = fetchSwarmData();
+            Map<String, Object> fresh = buildSwarmResponse(grid, null, null);
             cachedResponse = fresh;
-            cacheTimestamp = Instant.now();
             return fresh;
         }
     }
 
-    private Map<String, Object> fetchSwarmData() {
-        List<Intersection> intersections = intersectionRepository.findAll();
-        List<Road> roads = roadRepository.findAll();
-
-        if (intersections.isEmpty() && roads.isEmpty()) {
-            return initializeDefaultData();
+    /**
+     * The current snapshot serialized once, in identity and gzip form
+     */
+    public EncodedSnapshot getEncodedSnapshot() {
+        SwarmState.Grid grid = grid();
+        EncodedSnapshot encoded = encodedSnapshot;
+        if (encoded != null && encoded.source() == grid) {
+            return encoded;
+        }
+        synchronized (cacheLock) {
+            grid = grid();
+            encoded = encodedSnapshot;
+            if (encoded != null && encoded.source() == grid) {
+                return encoded;
+            }
+            try {
+                ByteArrayOutputStream json = new ByteArrayOutputStream(grid.intersectionCount() * 200 + grid.roadCount() * 120);
+                writeSnapshot(grid, json);
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.size() / 4 + 64);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                    json.writeTo(gzip);
+                }
+                encoded = new EncodedSnapshot(grid, etag(grid, ""), json.toByteArray(), compressed.toByteArray());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not encode swarm snapshot", e);
+            }
+            encodedSnapshot = encoded;
+            return encoded;
         }
+    }
 
-        return buildSwarmResponse(intersections, roads);
+    /**
+     * Strong ETag for a representation of a grid version
+     */
+    String etag(SwarmState.Grid grid, String variant) {
+        return "\"" + instanceTag + "-" + grid.version() + variant + "\"";
     }
 
     /**
-     * Initialize database with default grid data
+     * The current grid, loading or initializing it first if needed
      */
-    @Transactional
-    public Map<String, Object> initializeDefaultData() {
-        double centerLat = 51.505;
-        double centerLng = -0.09;
-        double radius = 0.05;
+    public SwarmState.Grid currentGrid() {
+        return grid();
+    }
 
-        double topLeftLat = centerLat + radius;
-        double topLeftLng = centerLng - radius;
-        double step = (radius * 2) / (GRID_SIZE - 1);
+    private static boolean isCurrent(Map<String, Object> snapshot, SwarmState.Grid grid) {
+        // Countdowns are to the second, so a map is reused within the second it was built in
+        return snapshot != null && snapshot.get("version").equals(grid.version())
+                && (Long) snapshot.get("timestamp") / 1000 == System.currentTimeMillis() / 1000;
+    }
 
-        String[] streetNames = new String[]{"Main","Oak","Pine","Maple","Cedar","Elm","Wall","Park"};
-        String[] avenueNames = new String[]{"1st","2nd","3rd","4th","5th","Broadway","Central","Lexington"};
+    /**
+     * Intersections and roads whose congestion or timing changed after the given version.
+     * Answers with a full snapshot, flagged "full", when the version is no longer covered by
+     * the change log.
+     */
+    public Map<String, Object> getChanges(long since) {
+        grid();
+        SwarmState.Commit delta = swarmState.changesSince(since);
+        if (delta == null) {
+            Map<String, Object> snapshot = new HashMap<>(getSwarmData());
+            snapshot.put("full", true);
+            return snapshot;
+        }
 
-        List<Intersection> intersections = new ArrayList<>();
-        List<Road> roads = new ArrayList<>();
+        Map<String, Object> result = buildSwarmResponse(delta.grid(), delta.intersections(), delta.roads());
+        result.put("since", since);
+        result.put("full", false);
+        return result;
+    }
 
-        // Create intersections
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                double lat = topLeftLat - i * step;
-                double lng = topLeftLng + j * step;
-                String name = streetNames[(i + j) % streetNames.length] + " St & " + avenueNames[j % avenueNames.length] + " Ave";
-                int cycle = 30 + (int) (Math.random() * 31);
-                double congestion = Math.random() * 0.8;
-
-                Intersection intersection = new Intersection(lat, lng, i, j, name, congestion, cycle, cycle);
-                intersections.add(intersection);
+    /**
+     * The in-memory grid, loaded from the database the first time it is needed
+     */
+    private SwarmState.Grid grid() {
+        SwarmState.Grid grid = swarmState.current();
+        if (grid != null) return grid;
+        synchronized (loadLock) {
+            grid = swarmState.current();
+            if (grid != null) return grid;
+
+            grid = swarmState.load();
+            if (grid == null) {
+                initializeDefaultData();
+                grid = swarmState.current();
             }
+            return grid;
         }
+    }
+
+    /**
+     * Initialize database with default grid data, and serve it from memory
+     */
+    public Map<String, Object> initializeDefaultData() {
+        double topLeftLat = centerLat + spacingDegrees * (gridRows - 1) / 2;
+        double topLeftLng = centerLng - spacingDegrees * (gridCols - 1) / 2;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = System.currentTimeMillis();
 
-        // Save intersections to database
-        intersections = intersectionRepository.saveAll(intersections);
+        SwarmState.Builder builder = new SwarmState.Builder();
+
+        // Create intersections
+        for (int i = 0; i < gridRows; i++) {
+            for (int j = 0; j < gridCols; j++) {
+                double lat = topLeftLat - i * spacingDegrees;
+                double lng = topLeftLng + j * spacingDegrees;
+                String name = STREET_NAMES[(i + j) % STREET_NAMES.length] + " St & " + AVENUE_NAMES[j % AVENUE_NAMES.length] + " Ave";
+                int cycle = 30 + random.nextInt(31);
+                // Signals start at random points in their cycles
+                builder.addIntersection(lat, lng, i, j, name, random.nextDouble() * 0.8, cycle, now - random.nextLong(cycle * 1000L));
+            }
+        }
 
         // Create roads connecting intersections
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                double lat = topLeftLat - i * step;
-                double lng = topLeftLng + j * step;
+        for (int i = 0; i < gridRows; i++) {
+            for (int j = 0; j < gridCols; j++) {
+                double lat = topLeftLat - i * spacingDegrees;
+                double lng = topLeftLng + j * spacingDegrees;
 
                 // Connect to right neighbor
-                if (j < GRID_SIZE - 1) {
-                    double latR = topLeftLat - i * step;
-                    double lngR = topLeftLng + (j + 1) * step;
-                    Road road = new Road(lat, lng, latR, lngR, Math.random() * 0.7);
-                    roads.add(road);
+                if (j < gridCols - 1) {
+                    builder.addRoad(lat, lng, lat, lng + spacingDegrees, random.nextDouble() * 0.7);
                 }
 
                 // Connect to bottom neighbor
-                if (i < GRID_SIZE - 1) {
-                    double latB = topLeftLat - (i + 1) * step;
-                    double lngB = topLeftLng + j * step;
-                    Road road = new Road(lat, lng, latB, lngB, Math.random() * 0.7);
-                    roads.add(road);
+                if (i < gridRows - 1) {
+                    builder.addRoad(lat, lng, lat - spacingDegrees, lng, random.nextDouble() * 0.7);
                 }
             }
         }
 
-        // Save roads to database
-        roads = roadRepository.saveAll(roads);
-
-        return buildSwarmResponse(intersections, roads);
+        SwarmState.Grid grid;
+        synchronized (loadLock) {
+            grid = swarmState.create(builder);
+        }
+        return buildSwarmResponse(grid, null, null);
     }
 
     /**
-     * Build the response map from entities
+     * Build the response map for the given rows of a grid, or for all of them when the sets are null
      */
-    private Map<String, Object> buildSwarmResponse(List<Intersection> intersections, List<Road> roads) {
+    private Map<String, Object> buildSwarmResponse(SwarmState.Grid grid, BitSet intersections, BitSet roads) {
         Map<String, Object> result = new HashMap<>();
+        long now = System.currentTimeMillis();
 
         List<Map<String, Object>> intersectionList = new ArrayList<>();
-        for (Intersection inter : intersections) {
-            Map<String, Object> interMap = new HashMap<>();
-            interMap.put("lat", inter.getLat());
-            interMap.put("lng", inter.getLng());
-            interMap.put("gridX", inter.getGridX());
-            interMap.put("gridY", inter.getGridY());
-            interMap.put("name", inter.getName());
-            interMap.put("congestion", inter.getCongestion());
-            interMap.put("cycleDuration", inter.getCycleDuration());
-            interMap.put("timeRemaining", inter.getTimeRemaining());
-            intersectionList.add(interMap);
+        for (int i = next(intersections, 0, grid.intersectionCount()); i >= 0; i = next(intersections, i + 1, grid.intersectionCount())) {
+            intersectionList.add(intersectionMap(grid, i, now));
         }
 
         List<Map<String, Object>> roadList = new ArrayList<>();
-        for (Road road : roads) {
-            Map<String, Object> roadMap = new HashMap<>();
-            roadMap.put("start", new double[]{road.getStartLat(), road.getStartLng()});
-            roadMap.put("end", new double[]{road.getEndLat(), road.getEndLng()});
-            roadMap.put("congestion", road.getCongestion());
-            roadList.add(roadMap);
+        for (int r = next(roads, 0, grid.roadCount()); r >= 0; r = next(roads, r + 1, grid.roadCount())) {
+            roadList.add(roadMap(grid, r));
         }
 
         result.put("intersections", intersectionList);
         result.put("roads", roadList);
-        result.put("timestamp", System.currentTimeMillis());
+        result.put("version", grid.version());
+        result.put("timestamp", now);
 
         return result;
     }
 
+    private static int next(BitSet rows, int from, int count) {
+        if (rows != null) return rows.nextSetBit(from);
+        return from < count ? from : -1;
+    }
+
+    private static Map<String, Object> intersectionMap(SwarmState.Grid grid, int i, long now) {
+        Map<String, Object> interMap = new HashMap<>();
+        interMap.put("id", grid.intersectionId(i));
+        interMap.put("lat", grid.lat(i));
+        interMap.put("lng", grid.lng(i));
+        interMap.put("gridX", grid.gridX(i));
+        interMap.put("gridY", grid.gridY(i));
+        interMap.put("name", grid.name(i));
+        interMap.put("congestion", grid.congestion(i));
+        interMap.put("cycleDuration", grid.cycleDuration(i));
+        interMap.put("cycleStart", grid.cycleStart(i));
+        interMap.put("timeRemaining", grid.timeRemaining(i, now));
+        interMap.put("phase", phase(grid, i, now));
+        return interMap;
+    }
+
+    private static Map<String, Object> roadMap(SwarmState.Grid grid, int r) {
+        Map<String, Object> roadMap = new HashMap<>();
+        roadMap.put("id", grid.roadId(r));
+        roadMap.put("start", new double[]{grid.startLat(r), grid.startLng(r)});
+        roadMap.put("end", new double[]{grid.endLat(r), grid.endLng(r)});
+        roadMap.put("congestion", grid.roadCongestion(r));
+        return roadMap;
+    }
+
     /**
-     * Update congestion levels (can be called periodically or by external triggers)
+     * The same document as {@link #buildSwarmResponse}, streamed from the columns without
+     * building a map per row
      */
-    @Transactional
-    public void updateCongestion() {
-        List<Intersection> intersections = intersectionRepository.findAll();
-        for (Intersection inter : intersections) {
-            // Simulate congestion changes
-            inter.setCongestion(Math.random() * 0.8);
-            inter.setTimeRemaining((int) (Math.random() * inter.getCycleDuration()));
+    private void writeSnapshot(SwarmState.Grid grid, OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            long now = System.currentTimeMillis();
+            json.writeStartObject();
+            json.writeNumberField("version", grid.version());
+            json.writeNumberField("timestamp", now);
+            json.writeArrayFieldStart("intersections");
+            for (int i = 0; i < grid.intersectionCount(); i++) {
+                writeIntersection(json, grid, i, now);
+            }
+            json.writeEndArray();
+            json.writeArrayFieldStart("roads");
+            for (int r = 0; r < grid.roadCount(); r++) {
+                writeRoad(json, grid, r);
+            }
+            json.writeEndArray();
+            json.writeEndObject();
         }
-        intersectionRepository.saveAll(intersections);
+    }
+
+    static void writeIntersection(JsonGenerator json, SwarmState.Grid grid, int i, long now) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", grid.intersectionId(i));
+        json.writeNumberField("lat", grid.lat(i));
+        json.writeNumberField("lng", grid.lng(i));
+        json.writeNumberField("gridX", grid.gridX(i));
+        json.writeNumberField("gridY", grid.gridY(i));
+        json.writeStringField("name", grid.name(i));
+        json.writeNumberField("congestion", grid.congestion(i));
+        json.writeNumberField("cycleDuration", grid.cycleDuration(i));
+        json.writeNumberField("cycleStart", grid.cycleStart(i));
+        json.writeNumberField("timeRemaining", grid.timeRemaining(i, now));
+        json.writeStringField("phase", phase(grid, i, now));
+        json.writeEndObject();
+    }
 
-        List<Road> roads = roadRepository.findAll();
-        for (Road road : roads) {
-            road.setCongestion(Math.random() * 0.7);
+    private static String phase(SwarmState.Grid grid, int i, long now) {
+        return grid.northSouthGreen(i, now) ? "north-south" : "east-west";
+    }
+
+    static void writeRoad(JsonGenerator json, SwarmState.Grid grid, int r) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", grid.roadId(r));
+        json.writeArrayFieldStart("start");
+        json.writeNumber(grid.startLat(r));
+        json.writeNumber(grid.startLng(r));
+        json.writeEndArray();
+        json.writeArrayFieldStart("end");
+        json.writeNumber(grid.endLat(r));
+        json.writeNumber(grid.endLng(r));
+        json.writeEndArray();
+        json.writeNumberField("congestion", grid.roadCongestion(r));
+        json.writeEndObject();
+    }
+
+    /**
+     * Push a commit's changed rows to stream subscribers
+     */
+    void publish(SwarmState.Commit commit) {
+        if (!liveUpdateHub.hasSubscribers() || (commit.intersections().isEmpty() && commit.roads().isEmpty())) return;
+        SwarmState.Grid grid = commit.grid();
+        long now = System.currentTimeMillis();
+        List<LiveUpdateHub.Item> pushed = new ArrayList<>(commit.intersections().cardinality() + commit.roads().cardinality());
+        BitSet intersections = commit.intersections();
+        for (int i = intersections.nextSetBit(0); i >= 0; i = intersections.nextSetBit(i + 1)) {
+            pushed.add(new LiveUpdateHub.Item("intersections", grid.lat(i), grid.lng(i), intersectionMap(grid, i, now)));
+        }
+        BitSet roads = commit.roads();
+        for (int r = roads.nextSetBit(0); r >= 0; r = roads.nextSetBit(r + 1)) {
+            pushed.add(new LiveUpdateHub.Item("roads", grid.startLat(r), grid.startLng(r), roadMap(grid, r)));
         }
-        roadRepository.saveAll(roads);
+        liveUpdateHub.publish("swarm", Map.of("version", grid.version(), "timestamp", now), pushed);
     }
 
     /**
-     * Clear all data from database
+     * Clear all data from memory and database
      */
-    @Transactional
     public void clearAllData() {
-        roadRepository.deleteAll();
-        intersectionRepository.deleteAll();
+        synchronized (loadLock) {
+            swarmState.deleteAll();
+        }
+    }
+
+    public long getVersion() {
+        return swarmState.getVersion();
+    }
+
+    /**
+     * A snapshot's encoded bodies. The ETag names the identity body; the gzip body, being a
+     * different representation, is tagged with a -gz suffix.
+     */
+    public record EncodedSnapshot(SwarmState.Grid source, String etag, byte[] json, byte[] gzip) {
+
+        public String gzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gz\"";
+        }
     }
 }
@@ -0,0 +1,596 @@
+package com.traffictrack.backend.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Authoritative in-memory swarm state. The swarm is held column-wise in primitive arrays
+ * indexed by position (a node's index), so a city-sized network costs a few flat arrays
+ * rather than an object per row. Readers take the current {@link Grid}, which is never
+ * modified; an update copies only the columns it writes into the next grid and swaps it in,
+ * so readers see a change as soon as it is committed and never see half of one.
+ * Every committed grid gets a new version, and the rows each version touched are kept in a
+ * change log of max-versions entries for delta reads.
+ * The grid is bulk loaded from and inserted into intersections and roads over plain JDBC.
+ * Changed rows are written back by a periodic flush in JDBC batches; a row changed several
+ * times between flushes is written once, with its latest values.
+ * Signal countdowns are not stored as they run: each signal keeps the epoch millisecond its
+ * cycle started, and the countdown and phase are worked out from the clock when read.
+ */
+@Component
+public class SwarmState {
+
+    private static final Logger LOGGER = Logger.getLogger(SwarmState.class.getName());
+
+    private static final String INTERSECTION_UPDATE =
+            "UPDATE intersections SET congestion = ?, cycle_duration = ?, cycle_start_epoch = ?, updated_at = ? WHERE id = ?";
+    private static final String ROAD_UPDATE = "UPDATE roads SET congestion = ?, updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxChangeVersions;
+    private final int batchSize;
+
+    private final Object lock = new Object();
+    private volatile Grid grid;
+    private volatile long version;
+    // Oldest version a delta can still be computed from
+    private long baseVersion;
+    private final Deque<ChangeSet> changeLog = new ArrayDeque<>();
+    private BitSet dirtyIntersections = new BitSet();
+    private BitSet dirtyRoads = new BitSet();
+
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    public SwarmState(DataSource dataSource, PlatformTransactionManager transactionManager,
+                      @Value("${swarm.changes.max-versions:64}") int maxChangeVersions,
+                      @Value("${swarm.persist.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(10_000);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxChangeVersions = maxChangeVersions;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The current grid, or null before one has been loaded
+     */
+    public Grid current() {
+        return grid;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Load the grid from intersections and roads, in id order.
+     *
+     * @return the loaded grid, or null when both tables are empty
+     */
+    public Grid load() {
+        Builder builder = new Builder();
+        LongColumn intersectionIds = new LongColumn();
+        LongColumn roadIds = new LongColumn();
+        // Inside a transaction so the driver can stream rows in fetch-size chunks
+        transactionTemplate.executeWithoutResult(status -> {
+            long now = System.currentTimeMillis();
+            jdbcTemplate.query("SELECT id, lat, lng, gridx, gridy, name, congestion, cycle_duration, cycle_start_epoch, "
+                    + "time_remaining, updated_at FROM intersections ORDER BY id", rs -> {
+                intersectionIds.add(rs.getLong(1));
+                long cycleStart = rs.getLong(9);
+                if (rs.wasNull()) {
+                    // Rows from before cycle starts were stored: the countdown was current when last written
+                    Timestamp written = rs.getTimestamp(11);
+                    long at = written != null ? written.getTime() : now;
+                    cycleStart = at - (long) (rs.getInt(8) - rs.getInt(10)) * 1000;
+                }
+                builder.addIntersection(rs.getDouble(2), rs.getDouble(3), rs.getInt(4), rs.getInt(5), rs.getString(6),
+                        rs.getDouble(7), rs.getInt(8), cycleStart);
+            });
+            jdbcTemplate.query("SELECT id, start_lat, start_lng, end_lat, end_lng, congestion FROM roads ORDER BY id", rs -> {
+                roadIds.add(rs.getLong(1));
+                builder.addRoad(rs.getDouble(2), rs.getDouble(3), rs.getDouble(4), rs.getDouble(5), rs.getDouble(6));
+            });
+        });
+        if (builder.intersections == 0 && builder.roads == 0) return null;
+
+        synchronized (lock) {
+            resetVersions();
+            grid = builder.build(version, intersectionIds.toArray(), roadIds.toArray());
+            LOGGER.info("Swarm loaded: " + grid.intersectionCount() + " intersections, " + grid.roadCount() + " roads");
+            return grid;
+        }
+    }
+
+    /**
+     * Insert a new network in one transaction with batched INSERTs, then load it back so the
+     * served grid carries the generated ids
+     */
+    public Grid create(Builder builder) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Object[]> rows = new ArrayList<>(Math.min(builder.intersections, batchSize));
+            for (int i = 0; i < builder.intersections; i++) {
+                rows.add(new Object[]{builder.lat.get(i), builder.lng.get(i), builder.gridX.get(i), builder.gridY.get(i),
+                        builder.names.get(i), builder.congestion.get(i), builder.cycleDuration.get(i),
+                        builder.cycleStart.get(i), timeRemaining(builder.cycleDuration.get(i), builder.cycleStart.get(i),
+                        now.getTime()), now, now});
+                if (rows.size() == batchSize || i == builder.intersections - 1) {
+                    jdbcTemplate.batchUpdate("INSERT INTO intersections (lat, lng, gridx, gridy, name, congestion, "
+                            + "cycle_duration, cycle_start_epoch, time_remaining, created_at, updated_at) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+                    rows.clear();
+                }
+            }
+            for (int r = 0; r < builder.roads; r++) {
+                rows.add(new Object[]{builder.startLat.get(r), builder.startLng.get(r), builder.endLat.get(r),
+                        builder.endLng.get(r), builder.roadCongestion.get(r), now, now});
+                if (rows.size() == batchSize || r == builder.roads - 1) {
+                    jdbcTemplate.batchUpdate("INSERT INTO roads (start_lat, start_lng, end_lat, end_lng, congestion, "
+                            + "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+                    rows.clear();
+                }
+            }
+        });
+        return load();
+    }
+
+    /**
+     * Forget the grid, along with any changes not yet written, and delete the stored rows
+     */
+    public void deleteAll() {
+        synchronized (lock) {
+            resetVersions();
+            grid = null;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM roads");
+            jdbcTemplate.update("DELETE FROM intersections");
+        });
+    }
+
+    /**
+     * Apply one set of changes as a new version. Writers are serialized; the changes see the
+     * grid they are applied to and nothing else commits in between.
+     *
+     * @return the rows changed and the grid they were committed in, or null when there is no grid
+     */
+    public Commit update(Consumer<Update> changes) {
+        synchronized (lock) {
+            Grid base = grid;
+            if (base == null) return null;
+            Update update = new Update(base);
+            changes.accept(update);
+            if (update.changedIntersections.isEmpty() && update.changedRoads.isEmpty()) {
+                return new Commit(base, update.changedIntersections, update.changedRoads);
+            }
+
+            version++;
+            changeLog.addLast(new ChangeSet(version, (BitSet) update.changedIntersections.clone(),
+                    (BitSet) update.changedRoads.clone()));
+            while (changeLog.size() > maxChangeVersions) {
+                baseVersion = changeLog.removeFirst().version();
+            }
+            dirtyIntersections.or(update.changedIntersections);
+            dirtyRoads.or(update.changedRoads);
+            commits.increment();
+
+            grid = update.build(version);
+            return new Commit(grid, update.changedIntersections, update.changedRoads);
+        }
+    }
+
+    /**
+     * Rows changed after the given version, with the grid to read them from.
+     * Returns null when the version is no longer covered by the change log.
+     */
+    public Commit changesSince(long since) {
+        synchronized (lock) {
+            Grid current = grid;
+            if (current == null || since > version || since < baseVersion) return null;
+            BitSet intersections = new BitSet();
+            BitSet roads = new BitSet();
+            for (ChangeSet change : changeLog) {
+                if (change.version() > since) {
+                    intersections.or(change.intersections());
+                    roads.or(change.roads());
+                }
+            }
+            return new Commit(current, intersections, roads);
+        }
+    }
+
+    /**
+     * Write rows changed since the last flush. Rows that fail to write stay dirty and are
+     * retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${swarm.persist.flush-interval:PT2S}")
+    public void flush() {
+        Grid snapshot;
+        BitSet intersections;
+        BitSet roads;
+        synchronized (lock) {
+            if (dirtyIntersections.isEmpty() && dirtyRoads.isEmpty()) return;
+            snapshot = grid;
+            intersections = dirtyIntersections;
+            roads = dirtyRoads;
+            dirtyIntersections = new BitSet();
+            dirtyRoads = new BitSet();
+        }
+        if (snapshot == null) return;
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            List<Object[]> rows = new ArrayList<>(batchSize);
+            for (int i = intersections.nextSetBit(0); i >= 0; i = intersections.nextSetBit(i + 1)) {
+                rows.add(new Object[]{snapshot.congestion[i], snapshot.cycleDuration[i], snapshot.cycleStart[i], now,
+                        snapshot.intersectionIds[i]});
+                if (rows.size() == batchSize) writeBatch(INTERSECTION_UPDATE, rows);
+            }
+            writeBatch(INTERSECTION_UPDATE, rows);
+            for (int r = roads.nextSetBit(0); r >= 0; r = roads.nextSetBit(r + 1)) {
+                rows.add(new Object[]{snapshot.roadCongestion[r], now, snapshot.roadIds[r]});
+                if (rows.size() == batchSize) writeBatch(ROAD_UPDATE, rows);
+            }
+            writeBatch(ROAD_UPDATE, rows);
+            flushes.increment();
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            LOGGER.log(Level.WARNING, "Failed to write back " + (intersections.cardinality() + roads.cardinality())
+                    + " swarm rows; will retry", e);
+            synchronized (lock) {
+                // Only while the grid they came from is still the one being served
+                if (grid != null && grid.intersectionIds == snapshot.intersectionIds) {
+                    dirtyIntersections.or(intersections);
+                    dirtyRoads.or(roads);
+                }
+            }
+        }
+    }
+
+    private void writeBatch(String sql, List<Object[]> rows) {
+        if (rows.isEmpty()) return;
+        jdbcTemplate.batchUpdate(sql, rows);
+        rowsWritten.add(rows.size());
+        rows.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (lock) {
+            stats.put("version", version);
+            stats.put("intersections", grid != null ? grid.intersectionCount() : 0);
+            stats.put("roads", grid != null ? grid.roadCount() : 0);
+            stats.put("dirtyIntersections", dirtyIntersections.cardinality());
+            stats.put("dirtyRoads", dirtyRoads.cardinality());
+        }
+        stats.put("commits", commits.sum());
+        stats.put("flushes", flushes.sum());
+        stats.put("rowsWritten", rowsWritten.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        return stats;
+    }
+
+    // Callers hold the lock
+    private void resetVersions() {
+        version++;
+        changeLog.clear();
+        baseVersion = version;
+        dirtyIntersections = new BitSet();
+        dirtyRoads = new BitSet();
+    }
+
+    static int timeRemaining(int cycleDuration, long cycleStart, long nowMillis) {
+        long cycleMillis = cycleDuration * 1000L;
+        return (int) ((cycleMillis - Math.floorMod(nowMillis - cycleStart, cycleMillis) + 999) / 1000);
+    }
+
+    /**
+     * One committed version of the swarm. Columns are indexed by intersection or road index;
+     * ids are ascending, so an id is found by binary search. The arrays are never written
+     * after construction, and columns an update did not touch are shared with the previous
+     * version.
+     */
+    public static final class Grid {
+        private final long version;
+        private final long[] intersectionIds;
+        private final double[] lat;
+        private final double[] lng;
+        private final int[] gridX;
+        private final int[] gridY;
+        private final String[] names;
+        private final double[] congestion;
+        private final int[] cycleDuration;
+        private final long[] cycleStart;
+        private final long[] roadIds;
+        private final double[] startLat;
+        private final double[] startLng;
+        private final double[] endLat;
+        private final double[] endLng;
+        private final double[] roadCongestion;
+
+        private Grid(long version, long[] intersectionIds, double[] lat, double[] lng, int[] gridX, int[] gridY,
+                     String[] names, double[] congestion, int[] cycleDuration, long[] cycleStart,
+                     long[] roadIds, double[] startLat, double[] startLng, double[] endLat, double[] endLng,
+                     double[] roadCongestion) {
+            this.version = version;
+            this.intersectionIds = intersectionIds;
+            this.lat = lat;
+            this.lng = lng;
+            this.gridX = gridX;
+            this.gridY = gridY;
+            this.names = names;
+            this.congestion = congestion;
+            this.cycleDuration = cycleDuration;
+            this.cycleStart = cycleStart;
+            this.roadIds = roadIds;
+            this.startLat = startLat;
+            this.startLng = startLng;
+            this.endLat = endLat;
+            this.endLng = endLng;
+            this.roadCongestion = roadCongestion;
+        }
+
+        public long version() { return version; }
+        public int intersectionCount() { return intersectionIds.length; }
+        public int roadCount() { return roadIds.length; }
+
+        public long intersectionId(int i) { return intersectionIds[i]; }
+        public double lat(int i) { return lat[i]; }
+        public double lng(int i) { return lng[i]; }
+        public int gridX(int i) { return gridX[i]; }
+        public int gridY(int i) { return gridY[i]; }
+        public String name(int i) { return names[i]; }
+        public double congestion(int i) { return congestion[i]; }
+        public int cycleDuration(int i) { return cycleDuration[i]; }
+        public long cycleStart(int i) { return cycleStart[i]; }
+
+        /**
+         * Whole seconds left in the signal's cycle at the given time, from 1 to the cycle length
+         */
+        public int timeRemaining(int i, long nowMillis) {
+            return SwarmState.timeRemaining(cycleDuration[i], cycleStart[i], nowMillis);
+        }
+
+        /**
+         * Whether north-south traffic has green at the given time: the first half of each cycle
+         */
+        public boolean northSouthGreen(int i, long nowMillis) {
+            return Math.floorMod(nowMillis - cycleStart[i], cycleDuration[i] * 1000L) < cycleDuration[i] * 500L;
+        }
+
+        public long roadId(int r) { return roadIds[r]; }
+        public double startLat(int r) { return startLat[r]; }
+        public double startLng(int r) { return startLng[r]; }
+        public double endLat(int r) { return endLat[r]; }
+        public double endLng(int r) { return endLng[r]; }
+        public double roadCongestion(int r) { return roadCongestion[r]; }
+
+        /**
+         * Index of an intersection id, or a negative number when absent
+         */
+        public int indexOfIntersection(long id) {
+            return Arrays.binarySearch(intersectionIds, id);
+        }
+
+        public int indexOfRoad(long id) {
+            return Arrays.binarySearch(roadIds, id);
+        }
+
+        /**
+         * Whether both are versions of the same loaded network, so positions and
+         * coordinates agree and only congestion or timing can differ
+         */
+        public boolean sameNetwork(Grid other) {
+            return other != null && intersectionIds == other.intersectionIds && roadIds == other.roadIds;
+        }
+    }
+
+    /**
+     * Writable view of the next version. A column is copied the first time it is written,
+     * so an update costs one array copy per touched column plus the writes themselves.
+     */
+    public static final class Update {
+        private final Grid base;
+        private double[] congestion;
+        private int[] cycleDuration;
+        private long[] cycleStart;
+        private double[] roadCongestion;
+        private final BitSet changedIntersections = new BitSet();
+        private final BitSet changedRoads = new BitSet();
+
+        private Update(Grid base) {
+            this.base = base;
+            this.congestion = base.congestion;
+            this.cycleDuration = base.cycleDuration;
+            this.cycleStart = base.cycleStart;
+            this.roadCongestion = base.roadCongestion;
+        }
+
+        public Grid base() {
+            return base;
+        }
+
+        public void setCongestion(int i, double newCongestion) {
+            if (congestion[i] == newCongestion) return;
+            if (congestion == base.congestion) congestion = base.congestion.clone();
+            congestion[i] = newCongestion;
+            changedIntersections.set(i);
+        }
+
+        /**
+         * Retime a signal: its cycle (re)starts at the given epoch millisecond
+         */
+        public void setCycleStart(int i, long newCycleStart) {
+            if (cycleStart[i] == newCycleStart) return;
+            if (cycleStart == base.cycleStart) cycleStart = base.cycleStart.clone();
+            cycleStart[i] = newCycleStart;
+            changedIntersections.set(i);
+        }
+
+        public void setCycleDuration(int i, int newCycleDuration) {
+            if (cycleDuration[i] == newCycleDuration) return;
+            if (cycleDuration == base.cycleDuration) cycleDuration = base.cycleDuration.clone();
+            cycleDuration[i] = newCycleDuration;
+            changedIntersections.set(i);
+        }
+
+        public void setRoadCongestion(int r, double newCongestion) {
+            if (roadCongestion[r] == newCongestion) return;
+            if (roadCongestion == base.roadCongestion) roadCongestion = base.roadCongestion.clone();
+            roadCongestion[r] = newCongestion;
+            changedRoads.set(r);
+        }
+
+        private Grid build(long version) {
+            return new Grid(version, base.intersectionIds, base.lat, base.lng, base.gridX, base.gridY, base.names,
+                    congestion, cycleDuration, cycleStart,
+                    base.roadIds, base.startLat, base.startLng, base.endLat, base.endLng, roadCongestion);
+        }
+    }
+
+    /**
+     * Rows of a new network, appended in the order they should be stored
+     */
+    public static final class Builder {
+        private int intersections;
+        private int roads;
+        private final DoubleColumn lat = new DoubleColumn();
+        private final DoubleColumn lng = new DoubleColumn();
+        private final IntColumn gridX = new IntColumn();
+        private final IntColumn gridY = new IntColumn();
+        private final List<String> names = new ArrayList<>();
+        private final DoubleColumn congestion = new DoubleColumn();
+        private final IntColumn cycleDuration = new IntColumn();
+        private final LongColumn cycleStart = new LongColumn();
+        private final DoubleColumn startLat = new DoubleColumn();
+        private final DoubleColumn startLng = new DoubleColumn();
+        private final DoubleColumn endLat = new DoubleColumn();
+        private final DoubleColumn endLng = new DoubleColumn();
+        private final DoubleColumn roadCongestion = new DoubleColumn();
+
+        public void addIntersection(double lat, double lng, int gridX, int gridY, String name,
+                                    double congestion, int cycleDuration, long cycleStart) {
+            this.lat.add(lat);
+            this.lng.add(lng);
+            this.gridX.add(gridX);
+            this.gridY.add(gridY);
+            this.names.add(name);
+            this.congestion.add(congestion);
+            this.cycleDuration.add(cycleDuration);
+            this.cycleStart.add(cycleStart);
+            intersections++;
+        }
+
+        public void addRoad(double startLat, double startLng, double endLat, double endLng, double congestion) {
+            this.startLat.add(startLat);
+            this.startLng.add(startLng);
+            this.endLat.add(endLat);
+            this.endLng.add(endLng);
+            this.roadCongestion.add(congestion);
+            roads++;
+        }
+
+        private Grid build(long version, long[] intersectionIds, long[] roadIds) {
+            return new Grid(version, intersectionIds, lat.toArray(), lng.toArray(), gridX.toArray(), gridY.toArray(),
+                    names.toArray(new String[0]), congestion.toArray(), cycleDuration.toArray(), cycleStart.toArray(),
+                    roadIds, startLat.toArray(), startLng.toArray(), endLat.toArray(), endLng.toArray(),
+                    roadCongestion.toArray());
+        }
+    }
+
+    /**
+     * The grid a set of changes was committed in, and which rows they touched
+     */
+    public record Commit(Grid grid, BitSet intersections, BitSet roads) {
+    }
+
+    private record ChangeSet(long version, BitSet intersections, BitSet roads) {
+    }
+
+    private static final class DoubleColumn {
+        private double[] values = new double[64];
+        private int size;
+
+        void add(double value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        double get(int i) {
+            return values[i];
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class IntColumn {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class LongColumn {
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        long get(int i) {
+            return values[i];
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
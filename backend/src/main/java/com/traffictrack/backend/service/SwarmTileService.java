@@ -0,0 +1,330 @@
+package com.traffictrack.backend.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.traffictrack.backend.geo.BoundingBox;
+
+/**
+ * Swarm features cut into web map tiles, so a client only downloads and draws what is in
+ * its viewport. From detail-zoom in, a tile lists the intersections inside it and the roads
+ * crossing it; further out, or when a tile would hold more than max-features intersections,
+ * it holds cells-per-side x cells-per-side congestion cells instead, so no tile grows with
+ * the size of the network.
+ * <p>
+ * Encoded tiles are cached with the swarm version they were last checked at. When the version
+ * moves on, a tile is kept, ETag and all, unless the change log shows an intersection inside it
+ * or a road crossing it changed since then, so clients revalidating quiet tiles get a 304. A
+ * kept tile still reports the version it was cut from.
+ */
+@Service
+public class SwarmTileService {
+
+    private final SwarmService swarmService;
+    private final SwarmState swarmState;
+    private final ObjectMapper objectMapper;
+    private final int detailZoom;
+    private final int maxFeatures;
+    private final int cellsPerSide;
+    private final int maxCachedTiles;
+
+    private volatile TileCache cache;
+    private volatile NetworkIndex index;
+    private volatile ChangeMemo changes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder built = new LongAdder();
+
+    public SwarmTileService(SwarmService swarmService, SwarmState swarmState, ObjectMapper objectMapper,
+                            @Value("${swarm.tiles.detail-zoom:14}") int detailZoom,
+                            @Value("${swarm.tiles.max-features:2000}") int maxFeatures,
+                            @Value("${swarm.tiles.cells-per-side:16}") int cellsPerSide,
+                            @Value("${swarm.tiles.max-cached:4096}") int maxCachedTiles) {
+        this.swarmService = swarmService;
+        this.swarmState = swarmState;
+        this.objectMapper = objectMapper;
+        this.detailZoom = detailZoom;
+        this.maxFeatures = maxFeatures;
+        this.cellsPerSide = cellsPerSide;
+        this.maxCachedTiles = maxCachedTiles;
+    }
+
+    /**
+     * The encoded tile, current as of the current swarm version; null when z/x/y is not a valid tile
+     */
+    public Tile getTile(int z, int x, int y) {
+        BoundingBox bounds = BoundingBox.ofTile(z, x, y);
+        if (bounds == null) return null;
+
+        SwarmState.Grid grid = swarmService.currentGrid();
+        TileCache tiles = cache;
+        if (tiles == null || !tiles.network().sameNetwork(grid)) {
+            tiles = new TileCache(grid, new ConcurrentHashMap<>());
+            cache = tiles;
+        }
+        String key = z + "/" + x + "/" + y;
+        CachedTile cached = tiles.tiles().get(key);
+        if (cached != null) {
+            if (cached.version() == grid.version()) {
+                hits.increment();
+                return cached.tile();
+            }
+            if (unchangedSince(cached.version(), grid, bounds)) {
+                tiles.tiles().put(key, new CachedTile(cached.tile(), grid.version()));
+                reused.increment();
+                return cached.tile();
+            }
+        }
+
+        Tile tile = new Tile(swarmService.etag(grid, "-" + z + "-" + x + "-" + y), encode(grid, indexFor(grid), bounds, z, x, y));
+        built.increment();
+        // Bounded by dropping the lot; tiles are cheap to cut again
+        if (tiles.tiles().size() >= maxCachedTiles) tiles.tiles().clear();
+        tiles.tiles().put(key, new CachedTile(tile, grid.version()));
+        return tile;
+    }
+
+    /**
+     * Whether no intersection inside the bounds and no road crossing them changed after the
+     * given version. False when the change log no longer reaches back that far.
+     */
+    private boolean unchangedSince(long version, SwarmState.Grid grid, BoundingBox bounds) {
+        ChangeMemo memo = changes;
+        if (memo == null || memo.version() != grid.version()) {
+            memo = new ChangeMemo(grid.version(), new ConcurrentHashMap<>());
+            changes = memo;
+        }
+        // Shared by every tile checked at the same version; a null commit is not cached
+        SwarmState.Commit commit = memo.since().computeIfAbsent(version, swarmState::changesSince);
+        if (commit == null || !commit.grid().sameNetwork(grid)) return false;
+
+        NetworkIndex network = indexFor(grid);
+        BitSet intersections = commit.intersections();
+        if (!intersections.isEmpty()) {
+            for (int i : network.intersectionsIn(grid, bounds)) {
+                if (intersections.get(i)) return false;
+            }
+        }
+        BitSet roads = commit.roads();
+        if (!roads.isEmpty()) {
+            for (int r : network.roadsCrossing(grid, bounds)) {
+                if (roads.get(r)) return false;
+            }
+        }
+        return true;
+    }
+
+    private NetworkIndex indexFor(SwarmState.Grid grid) {
+        NetworkIndex current = index;
+        if (current == null || !current.network().sameNetwork(grid)) {
+            current = NetworkIndex.of(grid);
+            index = current;
+        }
+        return current;
+    }
+
+    private byte[] encode(SwarmState.Grid grid, NetworkIndex network, BoundingBox bounds, int z, int x, int y) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeNumberField("z", z);
+            json.writeNumberField("x", x);
+            json.writeNumberField("y", y);
+            long now = System.currentTimeMillis();
+            json.writeNumberField("version", grid.version());
+            json.writeNumberField("timestamp", now);
+            json.writeArrayFieldStart("bounds");
+            json.writeNumber(bounds.minLng());
+            json.writeNumber(bounds.minLat());
+            json.writeNumber(bounds.maxLng());
+            json.writeNumber(bounds.maxLat());
+            json.writeEndArray();
+
+            int[] nodes = network.intersectionsIn(grid, bounds);
+            if (z >= detailZoom && nodes.length <= maxFeatures) {
+                json.writeStringField("lod", "features");
+                json.writeArrayFieldStart("intersections");
+                for (int i : nodes) {
+                    SwarmService.writeIntersection(json, grid, i, now);
+                }
+                json.writeEndArray();
+                json.writeArrayFieldStart("roads");
+                for (int r : network.roadsCrossing(grid, bounds)) {
+                    SwarmService.writeRoad(json, grid, r);
+                }
+                json.writeEndArray();
+            } else {
+                json.writeStringField("lod", "cells");
+                writeCells(json, grid, network, bounds, nodes);
+            }
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode swarm tile " + z + "/" + x + "/" + y, e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Mean and peak intersection congestion, and mean road congestion by road midpoint, per
+     * cell of an even split of the tile; empty cells are left out
+     */
+    private void writeCells(JsonGenerator json, SwarmState.Grid grid, NetworkIndex network, BoundingBox bounds,
+                            int[] nodes) throws IOException {
+        int cells = cellsPerSide * cellsPerSide;
+        double cellLat = (bounds.maxLat() - bounds.minLat()) / cellsPerSide;
+        double cellLng = (bounds.maxLng() - bounds.minLng()) / cellsPerSide;
+        int[] count = new int[cells];
+        double[] sum = new double[cells];
+        double[] max = new double[cells];
+        int[] roadCount = new int[cells];
+        double[] roadSum = new double[cells];
+
+        for (int i : nodes) {
+            int cell = cellOf(grid.lat(i), grid.lng(i), bounds, cellLat, cellLng);
+            count[cell]++;
+            sum[cell] += grid.congestion(i);
+            max[cell] = Math.max(max[cell], grid.congestion(i));
+        }
+        for (int r : network.roadsCrossing(grid, bounds)) {
+            double midLat = (grid.startLat(r) + grid.endLat(r)) / 2;
+            double midLng = (grid.startLng(r) + grid.endLng(r)) / 2;
+            if (!bounds.contains(midLat, midLng)) continue;
+            int cell = cellOf(midLat, midLng, bounds, cellLat, cellLng);
+            roadCount[cell]++;
+            roadSum[cell] += grid.roadCongestion(r);
+        }
+
+        json.writeArrayFieldStart("cells");
+        for (int cell = 0; cell < cells; cell++) {
+            if (count[cell] == 0 && roadCount[cell] == 0) continue;
+            int row = cell / cellsPerSide, col = cell % cellsPerSide;
+            json.writeStartObject();
+            json.writeArrayFieldStart("bounds");
+            json.writeNumber(bounds.minLng() + col * cellLng);
+            json.writeNumber(bounds.minLat() + row * cellLat);
+            json.writeNumber(bounds.minLng() + (col + 1) * cellLng);
+            json.writeNumber(bounds.minLat() + (row + 1) * cellLat);
+            json.writeEndArray();
+            json.writeNumberField("intersections", count[cell]);
+            if (count[cell] > 0) {
+                json.writeNumberField("congestion", sum[cell] / count[cell]);
+                json.writeNumberField("maxCongestion", max[cell]);
+            }
+            json.writeNumberField("roads", roadCount[cell]);
+            if (roadCount[cell] > 0) json.writeNumberField("roadCongestion", roadSum[cell] / roadCount[cell]);
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    private int cellOf(double lat, double lng, BoundingBox bounds, double cellLat, double cellLng) {
+        int row = Math.min(cellsPerSide - 1, (int) ((lat - bounds.minLat()) / cellLat));
+        int col = Math.min(cellsPerSide - 1, (int) ((lng - bounds.minLng()) / cellLng));
+        return row * cellsPerSide + col;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        TileCache tiles = cache;
+        stats.put("cached", tiles != null ? tiles.tiles().size() : 0);
+        stats.put("hits", hits.sum());
+        stats.put("reused", reused.sum());
+        stats.put("built", built.sum());
+        stats.put("detailZoom", detailZoom);
+        return stats;
+    }
+
+    public record Tile(String etag, byte[] json) {
+    }
+
+    private record CachedTile(Tile tile, long version) {
+    }
+
+    private record TileCache(SwarmState.Grid network, Map<String, CachedTile> tiles) {
+    }
+
+    private record ChangeMemo(long version, Map<Long, SwarmState.Commit> since) {
+    }
+
+    /**
+     * Intersections sorted by latitude, and roads by their southern end, so a tile reads a
+     * latitude band by binary search instead of scanning the network. Positions never change
+     * within a network, so the index is built once per load.
+     */
+    private record NetworkIndex(SwarmState.Grid network, int[] intersectionsByLat, double[] sortedLat,
+                                int[] roadsByMinLat, double[] sortedRoadMinLat, double maxRoadLatSpan) {
+
+        static NetworkIndex of(SwarmState.Grid grid) {
+            int[] nodes = sortedBy(grid.intersectionCount(), grid::lat);
+            double[] lats = new double[nodes.length];
+            for (int k = 0; k < nodes.length; k++) lats[k] = grid.lat(nodes[k]);
+
+            int[] roads = sortedBy(grid.roadCount(), r -> Math.min(grid.startLat(r), grid.endLat(r)));
+            double[] roadLats = new double[roads.length];
+            double span = 0;
+            for (int k = 0; k < roads.length; k++) {
+                int r = roads[k];
+                roadLats[k] = Math.min(grid.startLat(r), grid.endLat(r));
+                span = Math.max(span, Math.abs(grid.startLat(r) - grid.endLat(r)));
+            }
+            return new NetworkIndex(grid, nodes, lats, roads, roadLats, span);
+        }
+
+        private static int[] sortedBy(int count, IntToDoubleFunction key) {
+            return IntStream.range(0, count).boxed()
+                    .sorted((a, b) -> Double.compare(key.applyAsDouble(a), key.applyAsDouble(b)))
+                    .mapToInt(Integer::intValue).toArray();
+        }
+
+        int[] intersectionsIn(SwarmState.Grid grid, BoundingBox bounds) {
+            int[] found = new int[16];
+            int size = 0;
+            for (int k = lowerBound(sortedLat, bounds.minLat()); k < sortedLat.length && sortedLat[k] <= bounds.maxLat(); k++) {
+                int i = intersectionsByLat[k];
+                if (grid.lng(i) < bounds.minLng() || grid.lng(i) > bounds.maxLng()) continue;
+                if (size == found.length) found = Arrays.copyOf(found, size * 2);
+                found[size++] = i;
+            }
+            return Arrays.copyOf(found, size);
+        }
+
+        int[] roadsCrossing(SwarmState.Grid grid, BoundingBox bounds) {
+            int[] found = new int[16];
+            int size = 0;
+            int from = lowerBound(sortedRoadMinLat, bounds.minLat() - maxRoadLatSpan);
+            for (int k = from; k < sortedRoadMinLat.length && sortedRoadMinLat[k] <= bounds.maxLat(); k++) {
+                int r = roadsByMinLat[k];
+                if (!bounds.intersects(Math.min(grid.startLat(r), grid.endLat(r)), Math.min(grid.startLng(r), grid.endLng(r)),
+                        Math.max(grid.startLat(r), grid.endLat(r)), Math.max(grid.startLng(r), grid.endLng(r)))) continue;
+                if (size == found.length) found = Arrays.copyOf(found, size * 2);
+                found[size++] = r;
+            }
+            return Arrays.copyOf(found, size);
+        }
+
+        private static int lowerBound(double[] sorted, double value) {
+            int low = 0, high = sorted.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sorted[mid] < value) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+}
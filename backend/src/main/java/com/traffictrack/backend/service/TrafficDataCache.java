@@ -0,0 +1,186 @@
+package com.traffictrack.backend.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.traffictrack.backend.geo.Geohash;
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.repository.TrafficDataRepository;
+
+/**
+ * Two-tier cache for live traffic readings keyed on (provider, geohash tile, radius bucket).
+ * The first tier is a size-bounded LRU map in memory, the second tier is the most recent
+ * matching row in traffic_data that is still within the provider TTL.
+ */
+@Component
+public class TrafficDataCache {
+
+    private static final Logger LOGGER = Logger.getLogger(TrafficDataCache.class.getName());
+
+    private final TrafficDataRepository trafficDataRepository;
+    private final TransactionTemplate readOnlyTx;
+    private final Environment environment;
+    private final int geohashPrecision;
+    private final Duration defaultTtl;
+    private final Map<Key, TrafficData> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder warmHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TrafficDataCache(TrafficDataRepository trafficDataRepository,
+                            PlatformTransactionManager transactionManager,
+                            Environment environment,
+                            @Value("${traffic.cache.max-entries:10000}") int maxEntries,
+                            @Value("${traffic.cache.geohash-precision:7}") int geohashPrecision,
+                            @Value("${traffic.cache.ttl.default:60s}") Duration defaultTtl) {
+        this.trafficDataRepository = trafficDataRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.environment = environment;
+        this.geohashPrecision = geohashPrecision;
+        this.defaultTtl = defaultTtl;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, TrafficData> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Build the cache key for a lookup against the given provider
+     */
+    public Key keyFor(String provider, double lat, double lng, double radius) {
+        return new Key(provider, Geohash.encode(lat, lng, geohashPrecision), Geohash.radiusBucket(radius));
+    }
+
+    /**
+     * Return a fresh reading from memory, or from the database when memory has nothing usable
+     */
+    public TrafficData get(Key key) {
+        TrafficData cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached != null && !isExpired(cached)) {
+            hits.increment();
+            return cached;
+        }
+
+        TrafficData warm = loadWarm(key);
+        if (warm != null) {
+            warmHits.increment();
+            put(key, warm);
+            return warm;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Return the last reading held in memory for the key even if its TTL has passed
+     */
+    public TrafficData getStale(Key key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    public void put(Key key, TrafficData data) {
+        if (data == null) return;
+        synchronized (entries) {
+            entries.put(key, data);
+        }
+    }
+
+    /**
+     * TTL for a data source, configured as traffic.cache.ttl.&lt;source&gt;
+     */
+    public Duration ttlFor(String source) {
+        if (source == null) return defaultTtl;
+        return environment.getProperty("traffic.cache.ttl." + source, Duration.class, defaultTtl);
+    }
+
+    private boolean isExpired(TrafficData data) {
+        LocalDateTime fetchedAt = data.getFetchedAt();
+        return fetchedAt == null || fetchedAt.plus(ttlFor(data.getDataSource())).isBefore(LocalDateTime.now());
+    }
+
+    private TrafficData loadWarm(Key key) {
+        try {
+            LocalDateTime since = LocalDateTime.now().minus(ttlFor(key.provider()));
+            return readOnlyTx.execute(status -> {
+                List<TrafficData> rows = findLatest(key, since);
+                if (rows.isEmpty()) return null;
+                TrafficData row = rows.get(0);
+                // Initialize incidents while the session is open so the cached entity stays usable
+                if (row.getIncidents() != null) {
+                    row.getIncidents().size();
+                }
+                return row;
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Warm cache lookup failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * Keys at the stored tile precision seek the tile index directly; any other precision
+     * falls back to a range scan over the tile's bounds
+     */
+    private List<TrafficData> findLatest(Key key, LocalDateTime since) {
+        if (key.tile().length() == Geohash.TILE_PRECISION) {
+            return trafficDataRepository.findLatestInTileFromSource(
+                    key.tile(), key.radiusBucket(), key.provider(), since, PageRequest.of(0, 1));
+        }
+        double[] box = Geohash.bounds(key.tile());
+        double[] radii = Geohash.radiusRange(key.radiusBucket());
+        return trafficDataRepository.findRecentInBounds(
+                box[0], box[2], box[1], box[3], radii[0], radii[1], key.provider(), since, PageRequest.of(0, 1));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long hitCount = hits.sum();
+        long warmCount = warmHits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + warmCount + missCount;
+        stats.put("hits", hitCount);
+        stats.put("warmHits", warmCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.sum());
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) (hitCount + warmCount) / total);
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        return stats;
+    }
+
+    /**
+     * Cache key: provider id, geohash tile and radius bucket
+     */
+    public record Key(String provider, String tile, int radiusBucket) {
+    }
+}
@@ -0,0 +1,383 @@
+package com.traffictrack.backend.service;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.traffictrack.backend.geo.Geohash;
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.provider.StaticTrafficProvider;
+import com.traffictrack.backend.timeseries.GorillaChunk;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Congestion history per geohash tile, held in memory as Gorilla-compressed chunks of up to
+ * chunk-points readings so a range read decodes a few kilobytes instead of scanning
+ * traffic_data. Full chunks, and open chunks older than max-chunk-age, are sealed and written
+ * to traffic_history_chunks on every flush; chunks past the retention window are dropped from
+ * memory and the table. Persisted chunks are loaded back on startup.
+ */
+@Service
+public class TrafficHistoryStore {
+
+    private static final Logger LOGGER = Logger.getLogger(TrafficHistoryStore.class.getName());
+    private static final int MAX_CHUNK_POINTS = 2048;
+    private static final String INSERT =
+            "INSERT INTO traffic_history_chunks (tile, start_epoch, end_epoch, points, data) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int precision;
+    private final int chunkPoints;
+    private final Duration retention;
+    private final Duration maxChunkAge;
+    private final int maxPoints;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder skippedStatic = new LongAdder();
+    private final LongAdder sealed = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder loaded = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+
+    public TrafficHistoryStore(DataSource dataSource,
+                               @Value("${history.tile-precision:7}") int precision,
+                               @Value("${history.chunk-points:120}") int chunkPoints,
+                               @Value("${history.retention:P7D}") Duration retention,
+                               @Value("${history.max-chunk-age:PT2H}") Duration maxChunkAge,
+                               @Value("${history.max-points:5000}") int maxPoints) {
+        if (chunkPoints < 2 || chunkPoints > MAX_CHUNK_POINTS) {
+            throw new IllegalArgumentException("history.chunk-points must be between 2 and " + MAX_CHUNK_POINTS);
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.precision = precision;
+        this.chunkPoints = chunkPoints;
+        this.retention = retention;
+        this.maxChunkAge = maxChunkAge;
+        this.maxPoints = maxPoints;
+    }
+
+    public String tileFor(double lat, double lng) {
+        return Geohash.encode(lat, lng, precision);
+    }
+
+    /**
+     * Most points, or step buckets, a single read may return
+     */
+    public int maxPoints() {
+        return maxPoints;
+    }
+
+    /**
+     * Add a fetched reading to its tile's series; readings older than the tile's latest are dropped,
+     * and so are static fallback readings, whose congestion is made up
+     */
+    public void record(TrafficData trafficData) {
+        if (StaticTrafficProvider.ID.equals(trafficData.getDataSource())) {
+            skippedStatic.increment();
+            return;
+        }
+        if (trafficData.getLatitude() == null || trafficData.getLongitude() == null
+                || trafficData.getCongestionLevel() == null || trafficData.getFetchedAt() == null) {
+            return;
+        }
+        long time = trafficData.getFetchedAt().atZone(ZoneId.systemDefault()).toEpochSecond();
+        record(tileFor(trafficData.getLatitude(), trafficData.getLongitude()), time, trafficData.getCongestionLevel());
+    }
+
+    public boolean record(String tile, long epochSecond, double congestion) {
+        while (true) {
+            Series s = series.computeIfAbsent(tile, t -> new Series());
+            synchronized (s) {
+                // A flush may have dropped the series after it emptied; start a new one
+                if (s.removed) continue;
+                if (epochSecond < s.lastTime) {
+                    rejected.increment();
+                    return false;
+                }
+                if (s.open == null) s.open = new GorillaChunk(chunkPoints);
+                s.open.append(epochSecond, congestion);
+                s.lastTime = epochSecond;
+                if (s.open.isFull()) sealOpen(s);
+            }
+            recorded.increment();
+            return true;
+        }
+    }
+
+    /**
+     * Readings of the tile containing lat/lng with from <= time <= to (epoch seconds). With a
+     * positive step the range is cut into step-second buckets starting at from, and each
+     * non-empty bucket is reduced to its mean, min and max. At most max-points are returned.
+     */
+    public History query(double lat, double lng, long from, long to, long step) {
+        long started = System.nanoTime();
+        String tile = tileFor(lat, lng);
+        List<Point> points = new ArrayList<>();
+        boolean[] truncated = new boolean[1];
+        Series s = series.get(tile);
+        if (s != null) {
+            Aggregator aggregator = new Aggregator(from, step, points, truncated);
+            synchronized (s) {
+                for (int k = firstChunkEndingAtOrAfter(s.chunks, from); k < s.chunks.size() && !truncated[0]; k++) {
+                    GorillaChunk chunk = s.chunks.get(k).chunk;
+                    if (chunk.firstTime() > to) break;
+                    chunk.read(from, to, aggregator);
+                }
+                if (s.open != null && !truncated[0]) s.open.read(from, to, aggregator);
+            }
+            aggregator.finish();
+        }
+        reads.increment();
+        readNanos.add(System.nanoTime() - started);
+        return new History(tile, points, truncated[0]);
+    }
+
+    private static int firstChunkEndingAtOrAfter(List<Stored> chunks, long time) {
+        int low = 0, high = chunks.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (chunks.get(mid).chunk.lastTime() < time) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Load persisted chunks still inside the retention window
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long cutoff = nowSeconds() - retention.toSeconds();
+        try {
+            int[] count = new int[1];
+            jdbcTemplate.query("SELECT tile, data FROM traffic_history_chunks WHERE end_epoch >= ? ORDER BY tile, start_epoch",
+                    rs -> {
+                        GorillaChunk chunk = GorillaChunk.fromBytes(rs.getBytes("data"), chunkPoints);
+                        Series s = series.computeIfAbsent(rs.getString("tile"), t -> new Series());
+                        synchronized (s) {
+                            Stored stored = new Stored(chunk);
+                            stored.persisted = true;
+                            s.chunks.add(stored);
+                            s.lastTime = Math.max(s.lastTime, chunk.lastTime());
+                        }
+                        count[0]++;
+                    },
+                    cutoff);
+            for (Series s : series.values()) {
+                synchronized (s) {
+                    s.chunks.sort(Comparator.comparingLong(stored -> stored.chunk.firstTime()));
+                }
+            }
+            loaded.add(count[0]);
+            LOGGER.info("Traffic history loaded " + count[0] + " chunks for " + series.size() + " tiles");
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not load traffic history", e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${history.flush-interval:PT1M}", fixedDelayString = "${history.flush-interval:PT1M}")
+    public void scheduledFlush() {
+        flush(false);
+    }
+
+    /**
+     * Write sealed chunks that are not in the table yet, sealing open chunks first when
+     * sealOpen is set or they are older than max-chunk-age, and expire chunks past retention.
+     * Chunks that fail to write are retried on the next flush.
+     */
+    public synchronized void flush(boolean sealOpen) {
+        long now = nowSeconds();
+        long cutoff = now - retention.toSeconds();
+        long ageLimit = now - maxChunkAge.toSeconds();
+        List<Object[]> rows = new ArrayList<>();
+        List<Stored> pending = new ArrayList<>();
+
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            Series s = entry.getValue();
+            synchronized (s) {
+                while (!s.chunks.isEmpty() && s.chunks.get(0).chunk.lastTime() < cutoff) {
+                    s.chunks.remove(0);
+                    expired.increment();
+                }
+                if (s.open != null && s.open.lastTime() < cutoff) s.open = null;
+                if (s.open != null && (sealOpen || s.open.firstTime() < ageLimit)) sealOpen(s);
+                if (s.chunks.isEmpty() && s.open == null) {
+                    s.removed = true;
+                    series.remove(entry.getKey(), s);
+                    continue;
+                }
+                for (Stored stored : s.chunks) {
+                    if (stored.persisted) continue;
+                    GorillaChunk chunk = stored.chunk;
+                    rows.add(new Object[]{entry.getKey(), chunk.firstTime(), chunk.lastTime(), chunk.count(), chunk.toBytes()});
+                    pending.add(stored);
+                }
+            }
+        }
+
+        try {
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT, rows);
+                pending.forEach(stored -> stored.persisted = true);
+                flushed.add(rows.size());
+            }
+            jdbcTemplate.update("DELETE FROM traffic_history_chunks WHERE end_epoch < ?", cutoff);
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            LOGGER.log(Level.WARNING, "Failed to write " + rows.size() + " traffic history chunks; will retry", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush(true);
+    }
+
+    private void sealOpen(Series s) {
+        s.open.seal();
+        s.chunks.add(new Stored(s.open));
+        s.open = null;
+        sealed.increment();
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    public Map<String, Object> getStats() {
+        long points = 0, bytes = 0, chunks = 0, pending = 0;
+        for (Series s : series.values()) {
+            synchronized (s) {
+                for (Stored stored : s.chunks) {
+                    points += stored.chunk.count();
+                    bytes += stored.chunk.sizeBytes();
+                    if (!stored.persisted) pending++;
+                }
+                chunks += s.chunks.size();
+                if (s.open != null) {
+                    points += s.open.count();
+                    bytes += s.open.sizeBytes();
+                }
+            }
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tiles", series.size());
+        stats.put("points", points);
+        stats.put("bytes", bytes);
+        stats.put("bytesPerPoint", points > 0 ? (double) bytes / points : 0.0);
+        stats.put("sealedChunks", chunks);
+        stats.put("pendingChunks", pending);
+        stats.put("recorded", recorded.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("skippedStatic", skippedStatic.sum());
+        stats.put("sealed", sealed.sum());
+        stats.put("flushed", flushed.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        stats.put("expired", expired.sum());
+        stats.put("loaded", loaded.sum());
+        long readCount = reads.sum();
+        stats.put("reads", readCount);
+        stats.put("meanReadMs", readCount > 0 ? readNanos.sum() / 1_000_000.0 / readCount : 0.0);
+        return stats;
+    }
+
+    /**
+     * A reading, or a step bucket starting at time; raw readings have samples = 1 and
+     * min = max = congestion
+     */
+    public record Point(long time, double congestion, double min, double max, int samples) {
+    }
+
+    public record History(String tile, List<Point> points, boolean truncated) {
+    }
+
+    private static final class Series {
+        final List<Stored> chunks = new ArrayList<>();
+        GorillaChunk open;
+        long lastTime = Long.MIN_VALUE;
+        boolean removed;
+    }
+
+    private static final class Stored {
+        final GorillaChunk chunk;
+        volatile boolean persisted;
+
+        Stored(GorillaChunk chunk) {
+            this.chunk = chunk;
+        }
+    }
+
+    private final class Aggregator implements GorillaChunk.PointConsumer {
+        private final long from;
+        private final long step;
+        private final List<Point> points;
+        private final boolean[] truncated;
+        private long bucket = Long.MIN_VALUE;
+        private double sum, min, max;
+        private int samples;
+
+        Aggregator(long from, long step, List<Point> points, boolean[] truncated) {
+            this.from = from;
+            this.step = step;
+            this.points = points;
+            this.truncated = truncated;
+        }
+
+        @Override
+        public void accept(long time, double value) {
+            if (truncated[0]) return;
+            if (step <= 0) {
+                add(new Point(time, value, value, value, 1));
+                return;
+            }
+            long start = from + (time - from) / step * step;
+            if (start != bucket) {
+                finish();
+                bucket = start;
+                sum = 0;
+                min = Double.POSITIVE_INFINITY;
+                max = Double.NEGATIVE_INFINITY;
+            }
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            samples++;
+        }
+
+        void finish() {
+            if (samples > 0) add(new Point(bucket, sum / samples, min, max, samples));
+            samples = 0;
+        }
+
+        private void add(Point point) {
+            if (points.size() == maxPoints) {
+                truncated[0] = true;
+                return;
+            }
+            points.add(point);
+        }
+    }
+}
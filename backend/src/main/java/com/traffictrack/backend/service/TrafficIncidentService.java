@@ -0,0 +1,245 @@
+package com.traffictrack.backend.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.traffictrack.backend.model.ApiCredential;
+import com.traffictrack.backend.model.TrafficIncident;
+import com.traffictrack.backend.provider.TrafficProvider;
+import com.traffictrack.backend.provider.TrafficProviderEngine;
+import com.traffictrack.backend.repository.TrafficIncidentRepository;
+
+/**
+ * Incidents are fetched per area rather than per point: one upstream call per bounding box,
+ * cached for the provider TTL and shared by concurrent callers. Each incident is stored once,
+ * keyed on its provider identity, however many grid cells or lookups it falls into.
+ */
+@Service
+public class TrafficIncidentService {
+
+    private static final Logger LOGGER = Logger.getLogger(TrafficIncidentService.class.getName());
+    private static final int EXISTING_ID_CHUNK = 500;
+
+    private final ApiCredentialService apiCredentialService;
+    private final TrafficProviderEngine providerEngine;
+    private final TrafficDataCache trafficDataCache;
+    private final TrafficIncidentRepository trafficIncidentRepository;
+    private final ActiveIncidentIndex activeIncidentIndex;
+    private final ExecutorService trafficExecutor;
+    private final SingleFlight<String, List<TrafficIncident>> inFlightAreas = new SingleFlight<>();
+    private final Map<String, CachedArea> areas;
+    private final double maxAreaKm2;
+
+    private final LongAdder upstreamCalls = new LongAdder();
+    private final LongAdder areaHits = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder duplicatesSkipped = new LongAdder();
+    private final LongAdder refreshed = new LongAdder();
+    private final LongAdder areasRejected = new LongAdder();
+
+    public TrafficIncidentService(ApiCredentialService apiCredentialService,
+                                  TrafficProviderEngine providerEngine,
+                                  TrafficDataCache trafficDataCache,
+                                  TrafficIncidentRepository trafficIncidentRepository,
+                                  ActiveIncidentIndex activeIncidentIndex,
+                                  @Qualifier("trafficExecutor") ExecutorService trafficExecutor,
+                                  @Value("${traffic.incidents.max-areas:256}") int maxAreas,
+                                  @Value("${traffic.incidents.max-area-km2:40000}") double maxAreaKm2) {
+        this.apiCredentialService = apiCredentialService;
+        this.providerEngine = providerEngine;
+        this.trafficDataCache = trafficDataCache;
+        this.trafficIncidentRepository = trafficIncidentRepository;
+        this.activeIncidentIndex = activeIncidentIndex;
+        this.trafficExecutor = trafficExecutor;
+        this.maxAreaKm2 = maxAreaKm2;
+        this.areas = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedArea> eldest) {
+                return size() > maxAreas;
+            }
+        };
+    }
+
+    /**
+     * Incidents around a point, using the same rough km-to-degree box the point lookups use
+     */
+    public CompletableFuture<List<TrafficIncident>> fetchAround(double lat, double lng, double radius) {
+        double latRadius = radius / 111.0; // ~111 km per degree
+        double lngRadius = radius / (111.0 * Math.cos(Math.toRadians(lat)));
+        return fetchArea(lat - latRadius, lng - lngRadius, lat + latRadius, lng + lngRadius);
+    }
+
+    /**
+     * Deduplicated incidents inside a bounding box. Never fails; upstream errors yield an empty list.
+     * The box is clamped to valid coordinates; boxes larger than max-area-km2 are not fetched.
+     */
+    public CompletableFuture<List<TrafficIncident>> fetchArea(double minLat, double minLng, double maxLat, double maxLng) {
+        double south = Math.max(-90, minLat), north = Math.min(90, maxLat);
+        double west = Math.max(-180, minLng), east = Math.min(180, maxLng);
+        if (south >= north || west >= east) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        double areaKm2 = (north - south) * 111.0 * (east - west) * 111.0 * Math.cos(Math.toRadians((south + north) / 2));
+        if (areaKm2 > maxAreaKm2) {
+            areasRejected.increment();
+            LOGGER.warning(String.format("Not fetching incidents for %.0f km2; the limit is %.0f km2", areaKm2, maxAreaKm2));
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return CompletableFuture.supplyAsync(apiCredentialService::getActiveCredential, trafficExecutor)
+                .thenCompose(credential -> {
+                    TrafficProvider provider = providerEngine.resolve(credential);
+                    if (credential == null || !provider.supportsAreaIncidents()) {
+                        return CompletableFuture.completedFuture(List.<TrafficIncident>of());
+                    }
+
+                    // ~100m snapping lets repeated requests for the same view share an entry
+                    String key = String.format("%s:%.3f,%.3f,%.3f,%.3f", provider.getId(), south, west, north, east);
+                    List<TrafficIncident> cached = getCached(key);
+                    if (cached != null) {
+                        areaHits.increment();
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    Duration ttl = trafficDataCache.ttlFor(provider.getId());
+                    return inFlightAreas.execute(key, () -> load(credential, key, ttl, south, west, north, east));
+                })
+                .exceptionally(e -> {
+                    LOGGER.log(Level.WARNING, "Error fetching area incidents", e);
+                    return List.of();
+                });
+    }
+
+    private CompletableFuture<List<TrafficIncident>> load(ApiCredential credential, String key, Duration ttl,
+                                                          double minLat, double minLng, double maxLat, double maxLng) {
+        upstreamCalls.increment();
+        return providerEngine.fetchIncidents(credential, minLat, minLng, maxLat, maxLng)
+                .thenApply(fetched -> {
+                    List<TrafficIncident> incidents = dedupe(fetched);
+                    synchronized (areas) {
+                        areas.put(key, new CachedArea(incidents, LocalDateTime.now().plus(ttl)));
+                    }
+                    // Persisting is off the response path and works on copies, so the cached
+                    // instances other requests are serialising never gain ids or refreshed fields
+                    CompletableFuture.runAsync(() -> storeNew(incidents), trafficExecutor);
+                    return incidents;
+                });
+    }
+
+    private List<TrafficIncident> getCached(String key) {
+        synchronized (areas) {
+            CachedArea area = areas.get(key);
+            return area != null && area.expiresAt().isAfter(LocalDateTime.now()) ? area.incidents() : null;
+        }
+    }
+
+    /**
+     * Collapse repeats of the same incident; ones without an identity are keyed on type and position
+     */
+    private static List<TrafficIncident> dedupe(List<TrafficIncident> incidents) {
+        Map<String, TrafficIncident> unique = new LinkedHashMap<>();
+        for (TrafficIncident incident : incidents) {
+            String identity = incident.getExternalId() != null ? incident.getExternalId()
+                    : String.format("%s@%.5f,%.5f", incident.getIncidentType(), incident.getLatitude(), incident.getLongitude());
+            unique.putIfAbsent(identity, incident);
+        }
+        return List.copyOf(unique.values());
+    }
+
+    /**
+     * Insert incidents whose provider identity is not stored yet, and refresh last-seen, severity
+     * and description of the ones that are, so retention keeps incidents that are still active.
+     * Serialised so overlapping areas arriving together cannot both insert the same incident.
+     * New incidents are saved as copies; the given instances are only read.
+     */
+    private synchronized void storeNew(List<TrafficIncident> incidents) {
+        try {
+            Map<String, TrafficIncident> reported = new HashMap<>();
+            for (TrafficIncident incident : incidents) {
+                if (incident.getExternalId() != null) reported.put(incident.getExternalId(), incident);
+            }
+            List<String> ids = new ArrayList<>(reported.keySet());
+            List<TrafficIncident> seenAgain = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i += EXISTING_ID_CHUNK) {
+                seenAgain.addAll(trafficIncidentRepository.findByExternalIdIn(
+                        ids.subList(i, Math.min(ids.size(), i + EXISTING_ID_CHUNK))));
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            Set<String> existing = new HashSet<>();
+            for (TrafficIncident known : seenAgain) {
+                TrafficIncident latest = reported.get(known.getExternalId());
+                existing.add(known.getExternalId());
+                known.setLastSeenAt(now);
+                known.setSeverity(latest.getSeverity());
+                known.setDescription(latest.getDescription());
+                known.setDelayMinutes(latest.getDelayMinutes());
+            }
+            if (!seenAgain.isEmpty()) {
+                trafficIncidentRepository.saveAll(seenAgain);
+                activeIncidentIndex.addAll(seenAgain);
+                refreshed.add(seenAgain.size());
+            }
+
+            List<TrafficIncident> fresh = new ArrayList<>();
+            for (TrafficIncident incident : incidents) {
+                if (!existing.contains(incident.getExternalId())) {
+                    fresh.add(unsaved(incident));
+                }
+            }
+            duplicatesSkipped.add(incidents.size() - fresh.size());
+            if (!fresh.isEmpty()) {
+                activeIncidentIndex.addAll(trafficIncidentRepository.saveAll(fresh));
+                stored.add(fresh.size());
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Error storing traffic incidents", e);
+        }
+    }
+
+    /**
+     * Copy of a reported incident for saving
+     */
+    private static TrafficIncident unsaved(TrafficIncident incident) {
+        TrafficIncident copy = new TrafficIncident(incident.getLatitude(), incident.getLongitude(),
+                incident.getIncidentType(), incident.getSeverity());
+        copy.setTrafficData(incident.getTrafficData());
+        copy.setDescription(incident.getDescription());
+        copy.setReportedAt(incident.getReportedAt());
+        copy.setLastSeenAt(incident.getLastSeenAt());
+        copy.setDelayMinutes(incident.getDelayMinutes());
+        copy.setExternalId(incident.getExternalId());
+        return copy;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("upstreamCalls", upstreamCalls.sum());
+        stats.put("areaHits", areaHits.sum());
+        stats.put("stored", stored.sum());
+        stats.put("duplicatesSkipped", duplicatesSkipped.sum());
+        stats.put("refreshed", refreshed.sum());
+        stats.put("areasRejected", areasRejected.sum());
+        synchronized (areas) {
+            stats.put("cachedAreas", areas.size());
+        }
+        return stats;
+    }
+
+    private record CachedArea(List<TrafficIncident> incidents, LocalDateTime expiresAt) {
+    }
+}
@@ -0,0 +1,122 @@
+package com.traffictrack.backend.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.traffictrack.backend.geo.Geohash;
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.model.TrafficIncident;
+import com.traffictrack.backend.repository.TrafficDataRepository;
+import com.traffictrack.backend.repository.TrafficIncidentRepository;
+
+/**
+ * Proximity lookups over stored readings and incidents using their persisted geohash tile.
+ * The latest reading for a point is one seek on its tile; k-nearest searches widen the ring of
+ * tiles around it, doubling each time up to max-distance-km, until enough candidates are found
+ * and then rank them by distance.
+ */
+@Service
+public class TrafficProximityService {
+
+    private final TrafficDataRepository trafficDataRepository;
+    private final TrafficIncidentRepository trafficIncidentRepository;
+    private final double maxDistanceKm;
+    private final int scanLimit;
+
+    public TrafficProximityService(TrafficDataRepository trafficDataRepository,
+                                   TrafficIncidentRepository trafficIncidentRepository,
+                                   @Value("${traffic.proximity.max-distance-km:1.0}") double maxDistanceKm,
+                                   @Value("${traffic.proximity.scan-limit:500}") int scanLimit) {
+        this.trafficDataRepository = trafficDataRepository;
+        this.trafficIncidentRepository = trafficIncidentRepository;
+        this.maxDistanceKm = maxDistanceKm;
+        this.scanLimit = scanLimit;
+    }
+
+    /**
+     * Latest reading for the point's tile and radius bucket, otherwise the nearest one in the
+     * adjacent tiles
+     */
+    public Optional<TrafficData> findLatest(double lat, double lng, double radius, Duration maxAge) {
+        String tile = Geohash.encode(lat, lng, Geohash.TILE_PRECISION);
+        int bucket = Geohash.radiusBucket(radius);
+        LocalDateTime since = LocalDateTime.now().minus(maxAge);
+
+        List<TrafficData> rows = trafficDataRepository.findLatestInTile(tile, bucket, since, PageRequest.of(0, 1));
+        if (!rows.isEmpty()) {
+            return Optional.of(rows.get(0));
+        }
+        return nearestReadings(lat, lng, tile, bucket, since, 1, 1).stream().findFirst();
+    }
+
+    /**
+     * Up to k readings in the same radius bucket nearest to the point, closest first.
+     * Each tile contributes only its latest reading.
+     */
+    public List<TrafficData> findNearest(double lat, double lng, double radius, int k, Duration maxAge) {
+        String tile = Geohash.encode(lat, lng, Geohash.TILE_PRECISION);
+        LocalDateTime since = LocalDateTime.now().minus(maxAge);
+        return nearestReadings(lat, lng, tile, Geohash.radiusBucket(radius), since, k, ringsFor(tile));
+    }
+
+    /**
+     * Up to k incidents reported within maxAge nearest to the point, closest first
+     */
+    public List<TrafficIncident> findNearestIncidents(double lat, double lng, int k, Duration maxAge) {
+        String tile = Geohash.encode(lat, lng, Geohash.TILE_PRECISION);
+        LocalDateTime since = LocalDateTime.now().minus(maxAge);
+        List<TrafficIncident> candidates = List.of();
+        int ringLimit = ringsFor(tile);
+        for (int rings = 1; ; rings = Math.min(rings * 2, ringLimit)) {
+            candidates = trafficIncidentRepository.findRecentInTiles(
+                    Geohash.around(tile, rings), since, PageRequest.of(0, scanLimit));
+            if (candidates.size() >= k || rings >= ringLimit) break;
+        }
+        return closest(candidates, k, i -> Geohash.distanceKm(lat, lng, i.getLatitude(), i.getLongitude()));
+    }
+
+    private List<TrafficData> nearestReadings(double lat, double lng, String tile, int bucket,
+                                              LocalDateTime since, int k, int ringLimit) {
+        List<TrafficData> candidates = List.of();
+        for (int rings = 1; ; rings = Math.min(rings * 2, ringLimit)) {
+            List<TrafficData> rows = trafficDataRepository.findRecentInTiles(
+                    Geohash.around(tile, rings), bucket, since, PageRequest.of(0, scanLimit));
+            // Rows come newest first, so the first row seen for a tile is its latest
+            Set<String> seen = new HashSet<>();
+            candidates = new ArrayList<>();
+            for (TrafficData row : rows) {
+                if (seen.add(row.getGeohash())) candidates.add(row);
+            }
+            if (candidates.size() >= k || rings >= ringLimit) break;
+        }
+        return closest(candidates, k, d -> Geohash.distanceKm(lat, lng, d.getLatitude(), d.getLongitude()));
+    }
+
+    /**
+     * Rings of tiles needed to reach max-distance-km in every direction from the tile
+     */
+    private int ringsFor(String tile) {
+        double[] box = Geohash.bounds(tile);
+        double midLat = (box[0] + box[2]) / 2;
+        double tileKm = Math.min(Geohash.distanceKm(box[0], box[1], box[2], box[1]),
+                Geohash.distanceKm(midLat, box[1], midLat, box[3]));
+        return Math.max(1, (int) Math.ceil(maxDistanceKm / tileKm));
+    }
+
+    private static <T> List<T> closest(List<T> candidates, int k, ToDoubleFunction<T> distance) {
+        List<T> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparingDouble(distance));
+        return sorted.size() > k ? List.copyOf(sorted.subList(0, k)) : sorted;
+    }
+}
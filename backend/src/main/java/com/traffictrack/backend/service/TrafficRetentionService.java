@@ -0,0 +1,283 @@
+package com.traffictrack.backend.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps traffic_data and traffic_incidents bounded under continuous ingestion.
+ * Expired rows are removed in id-bounded chunks, each in its own short transaction, so no
+ * delete holds row locks for long or loads entities into a persistence context. Incidents
+ * expire once they have not been reported for the retention window, and those belonging to an
+ * expiring reading are deleted with it, ahead of the reading itself.
+ * On Postgres, tables that were set up as daily range partitions on their timestamp column
+ * have whole expired partitions dropped, and the next days' partitions created in advance.
+ */
+@Service
+public class TrafficRetentionService {
+
+    private static final Logger LOGGER = Logger.getLogger(TrafficRetentionService.class.getName());
+    private static final Pattern PARTITION_UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DataSource dataSource;
+    private final ActiveIncidentIndex activeIncidentIndex;
+    private final Duration trafficDataRetention;
+    private final Duration incidentRetention;
+    private final int chunkSize;
+    private final long chunkPauseMillis;
+    private final boolean partitionsEnabled;
+    private final int precreateDays;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder trafficDataDeleted = new LongAdder();
+    private final LongAdder incidentsDeleted = new LongAdder();
+    private final LongAdder partitionsDropped = new LongAdder();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+    private volatile String lastError;
+
+    public TrafficRetentionService(DataSource dataSource,
+                                   ActiveIncidentIndex activeIncidentIndex,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${traffic.retention.traffic-data:24h}") Duration trafficDataRetention,
+                                   @Value("${traffic.retention.traffic-incidents:24h}") Duration incidentRetention,
+                                   @Value("${traffic.retention.chunk-size:5000}") int chunkSize,
+                                   @Value("${traffic.retention.chunk-pause-ms:50}") long chunkPauseMillis,
+                                   @Value("${traffic.retention.partitions.enabled:true}") boolean partitionsEnabled,
+                                   @Value("${traffic.retention.partitions.precreate-days:2}") int precreateDays) {
+        this.dataSource = dataSource;
+        this.activeIncidentIndex = activeIncidentIndex;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.trafficDataRetention = trafficDataRetention;
+        this.incidentRetention = incidentRetention;
+        this.chunkSize = chunkSize;
+        this.chunkPauseMillis = chunkPauseMillis;
+        this.partitionsEnabled = partitionsEnabled;
+        this.precreateDays = precreateDays;
+    }
+
+    @Scheduled(initialDelayString = "${traffic.retention.initial-delay:PT1M}",
+               fixedDelayString = "${traffic.retention.interval:PT10M}")
+    public void scheduledRun() {
+        run();
+    }
+
+    /**
+     * Run one retention pass now. Returns rows deleted per table, or an empty map when a pass
+     * is already in progress.
+     */
+    public Map<String, Long> run() {
+        if (!running.compareAndSet(false, true)) {
+            LOGGER.info("Retention pass already running, skipping");
+            return Map.of();
+        }
+        long start = System.nanoTime();
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime dataCutoff = now.minus(trafficDataRetention);
+            LocalDateTime incidentCutoff = now.minus(incidentRetention);
+
+            if (partitionsEnabled && isPostgres()) {
+                maintainPartitions("traffic_incidents", incidentCutoff, "last_seen_at");
+                maintainPartitions("traffic_data", dataCutoff, null);
+            }
+
+            long[] dataPass = deleteTrafficData(dataCutoff);
+            long incidentPass = deleteIncidents(incidentCutoff);
+            activeIncidentIndex.expire(incidentCutoff);
+
+            Map<String, Long> deleted = new HashMap<>();
+            deleted.put("trafficData", dataPass[0]);
+            deleted.put("trafficIncidents", dataPass[1] + incidentPass);
+            runs.increment();
+            lastError = null;
+            LOGGER.info("Retention pass removed " + dataPass[0] + " traffic_data and "
+                    + (dataPass[1] + incidentPass) + " traffic_incidents rows");
+            return deleted;
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            LOGGER.log(Level.WARNING, "Retention pass failed", e);
+            throw e;
+        } finally {
+            lastRunAt = LocalDateTime.now();
+            lastRunMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            running.set(false);
+        }
+    }
+
+    /**
+     * Delete expired readings chunk by chunk, taking their incidents with them.
+     * Returns {readings deleted, incidents deleted}.
+     */
+    private long[] deleteTrafficData(LocalDateTime cutoff) {
+        long readings = 0;
+        long incidents = 0;
+        while (true) {
+            long[] chunk = transactionTemplate.execute(status -> {
+                List<Long> ids = jdbcTemplate.queryForList(
+                        "SELECT id FROM traffic_data WHERE fetched_at < ? ORDER BY id LIMIT ?",
+                        Long.class, Timestamp.valueOf(cutoff), chunkSize);
+                if (ids.isEmpty()) return new long[] {0, 0};
+                MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+                int children = namedJdbcTemplate.update("DELETE FROM traffic_incidents WHERE traffic_data_id IN (:ids)", params);
+                int parents = namedJdbcTemplate.update("DELETE FROM traffic_data WHERE id IN (:ids)", params);
+                if (children > 0) {
+                    activeIncidentIndex.removeForReadings(ids);
+                }
+                return new long[] {parents, children};
+            });
+            if (chunk == null || chunk[0] == 0) break;
+            readings += chunk[0];
+            incidents += chunk[1];
+            trafficDataDeleted.add(chunk[0]);
+            incidentsDeleted.add(chunk[1]);
+            chunks.increment();
+            if (chunk[0] < chunkSize || !pause()) break;
+        }
+        return new long[] {readings, incidents};
+    }
+
+    private long deleteIncidents(LocalDateTime cutoff) {
+        long total = 0;
+        while (true) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<Long> ids = jdbcTemplate.queryForList(
+                        "SELECT id FROM traffic_incidents WHERE last_seen_at < ? "
+                                + "OR (last_seen_at IS NULL AND reported_at < ?) ORDER BY id LIMIT ?",
+                        Long.class, Timestamp.valueOf(cutoff), Timestamp.valueOf(cutoff), chunkSize);
+                if (ids.isEmpty()) return 0;
+                return namedJdbcTemplate.update("DELETE FROM traffic_incidents WHERE id IN (:ids)",
+                        new MapSqlParameterSource("ids", ids));
+            });
+            if (deleted == null || deleted == 0) break;
+            total += deleted;
+            incidentsDeleted.add(deleted);
+            chunks.increment();
+            if (deleted < chunkSize || !pause()) break;
+        }
+        return total;
+    }
+
+    /**
+     * Give concurrent writers room between chunks; false when interrupted
+     */
+    private boolean pause() {
+        if (chunkPauseMillis <= 0) return true;
+        try {
+            Thread.sleep(chunkPauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Drop daily partitions that end at or before the cutoff and create the coming days'.
+     * Does nothing unless the table is already range partitioned. When lastSeenColumn is given,
+     * a partition still holding rows seen since the cutoff is kept for the chunked delete.
+     */
+    private void maintainPartitions(String table, LocalDateTime cutoff, String lastSeenColumn) {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid "
+                        + "WHERE c.relname = ? AND pg_table_is_visible(c.oid))",
+                Boolean.class, table);
+        if (!Boolean.TRUE.equals(partitioned)) return;
+
+        List<Map<String, Object>> children = jdbcTemplate.queryForList(
+                "SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound FROM pg_inherits i "
+                        + "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent "
+                        + "WHERE p.relname = ? AND pg_table_is_visible(p.oid)", table);
+        for (Map<String, Object> child : children) {
+            Matcher bound = PARTITION_UPPER_BOUND.matcher(String.valueOf(child.get("bound")));
+            if (!bound.find()) continue; // default partition
+            LocalDateTime upper = LocalDateTime.parse(bound.group(1).replace(' ', 'T'));
+            if (!upper.isAfter(cutoff)) {
+                String name = (String) child.get("name");
+                if (lastSeenColumn != null && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                        "SELECT EXISTS (SELECT 1 FROM \"" + name + "\" WHERE " + lastSeenColumn + " >= ?)",
+                        Boolean.class, Timestamp.valueOf(cutoff)))) {
+                    continue;
+                }
+                try {
+                    jdbcTemplate.execute("DROP TABLE IF EXISTS \"" + name + "\"");
+                    partitionsDropped.increment();
+                    LOGGER.info("Dropped expired partition " + name);
+                } catch (RuntimeException e) {
+                    // e.g. still referenced by newer incidents; the chunked delete trims it instead
+                    LOGGER.log(Level.WARNING, "Could not drop partition " + name, e);
+                }
+            }
+        }
+
+        LocalDate today = LocalDate.now();
+        for (int day = 0; day <= precreateDays; day++) {
+            LocalDate from = today.plusDays(day);
+            try {
+                jdbcTemplate.execute(String.format(
+                        "CREATE TABLE IF NOT EXISTS %s_p%s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                        table, from.format(PARTITION_SUFFIX), table, from, from.plusDays(1)));
+            } catch (RuntimeException e) {
+                // Overlaps an existing partition or rows already in the default partition
+                LOGGER.log(Level.WARNING, "Could not create partition for " + table + " on " + from, e);
+            }
+        }
+    }
+
+    private boolean isPostgres() {
+        try (Connection connection = dataSource.getConnection()) {
+            return "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not determine database type", e);
+            return false;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("running", running.get());
+        stats.put("runs", runs.sum());
+        stats.put("chunks", chunks.sum());
+        stats.put("trafficDataDeleted", trafficDataDeleted.sum());
+        stats.put("incidentsDeleted", incidentsDeleted.sum());
+        stats.put("partitionsDropped", partitionsDropped.sum());
+        stats.put("lastRunAt", lastRunAt != null ? lastRunAt.toString() : null);
+        stats.put("lastRunMs", lastRunMillis);
+        stats.put("lastError", lastError);
+        stats.put("retention", Map.of("trafficData", trafficDataRetention.toString(),
+                "trafficIncidents", incidentRetention.toString()));
+        return stats;
+    }
+}
@@ -0,0 +1,367 @@
+package com.traffictrack.backend.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.traffictrack.backend.config.TrafficExecutorConfig;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Tick-based traffic flow over the swarm's road network, after the Cell Transmission Model.
+ * Each direction of a linked road is one cell holding a vehicle density. Every step, each
+ * intersection takes what its incoming cells can send (nothing on red), adds its own entry
+ * demand, lets exit-share of it leave the network and splits the rest evenly over the other
+ * roads, scaled down so no outgoing cell receives more than it has room for. Densities then
+ * move by what flowed in and out. Steps are short enough that no vehicle crosses a whole cell.
+ *
+ * Nodes are split into contiguous partitions run on a fork-join pool. Every cell is written
+ * only by the intersection it enters (its outflow) and the one it leaves (its inflow), so the
+ * partitions need no locking, only a join between the flow and density passes. Each tick's
+ * road and intersection congestion is committed to the swarm state and pushed to subscribers.
+ * Ticks run on a thread of their own rather than the shared @Scheduled one, so flushes and
+ * retention passes cannot hold them up.
+ */
+@Service
+public class TrafficSimulationService {
+
+    private static final Logger LOGGER = Logger.getLogger(TrafficSimulationService.class.getName());
+
+    private final SwarmService swarmService;
+    private final SwarmState swarmState;
+    private final RoadGraphService roadGraphService;
+    private final boolean enabled;
+    private final double tickSeconds;
+    private final double freeFlowKmh;
+    private final double capacityPerHour;
+    private final double jamDensity;
+    private final double waveSpeedKmh;
+    private final double entryPerHour;
+    private final double exitShare;
+    private final int partitionSize;
+    private final Duration tickInterval;
+    private final Duration initialDelay;
+    private final ForkJoinPool pool;
+    private final ScheduledExecutorService ticker;
+
+    private Network network;
+
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder overruns = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder tickNanos = new LongAdder();
+    private volatile long lastTickNanos;
+    private volatile long maxTickNanos;
+    private volatile double vehicles;
+
+    public TrafficSimulationService(SwarmService swarmService, SwarmState swarmState, RoadGraphService roadGraphService,
+                                    @Value("${simulation.enabled:true}") boolean enabled,
+                                    @Value("${simulation.tick-interval:PT1S}") Duration tickInterval,
+                                    @Value("${simulation.initial-delay:PT5S}") Duration initialDelay,
+                                    @Value("${simulation.time-scale:1}") double timeScale,
+                                    @Value("${simulation.free-flow-kmh:50}") double freeFlowKmh,
+                                    @Value("${simulation.capacity-per-hour:1800}") double capacityPerHour,
+                                    @Value("${simulation.jam-density-per-km:150}") double jamDensity,
+                                    @Value("${simulation.entry-per-hour:120}") double entryPerHour,
+                                    @Value("${simulation.exit-share:0.15}") double exitShare,
+                                    @Value("${simulation.parallelism:0}") int parallelism,
+                                    @Value("${simulation.partition-size:4096}") int partitionSize) {
+        this.swarmService = swarmService;
+        this.swarmState = swarmState;
+        this.roadGraphService = roadGraphService;
+        this.enabled = enabled;
+        this.tickSeconds = tickInterval.toMillis() / 1000.0 * timeScale;
+        this.freeFlowKmh = freeFlowKmh;
+        this.capacityPerHour = capacityPerHour;
+        this.jamDensity = jamDensity;
+        // Triangular fundamental diagram: congested branch falls from capacity to zero at jam density
+        this.waveSpeedKmh = capacityPerHour / (jamDensity - capacityPerHour / freeFlowKmh);
+        this.entryPerHour = entryPerHour;
+        this.exitShare = exitShare;
+        this.partitionSize = Math.max(1, partitionSize);
+        this.tickInterval = tickInterval;
+        this.initialDelay = initialDelay;
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ForkJoinPool(threads, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("simulation-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(TrafficExecutorConfig.namedThreadFactory("simulation-tick-"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+        ticker.scheduleAtFixedRate(this::scheduledTick, initialDelay.toMillis(), tickInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduledTick() {
+        // The swarm is loaded on first use; until then there is nothing to simulate
+        if (!enabled || swarmState.current() == null) return;
+        try {
+            long started = System.nanoTime();
+            tick();
+            if (System.nanoTime() - started > tickSeconds * 1e9) overruns.increment();
+        } catch (RuntimeException e) {
+            failures.increment();
+            LOGGER.log(Level.WARNING, "Simulation tick failed", e);
+        }
+    }
+
+    /**
+     * Advance the simulation by one tick and commit the result; null when there is no swarm
+     */
+    public synchronized SwarmState.Commit tick() {
+        long started = System.nanoTime();
+        SwarmState.Grid grid = swarmService.currentGrid();
+        if (grid == null) return null;
+        Network net = networkFor(grid);
+        RoadGraphService.Graph graph = net.graph;
+        long now = System.currentTimeMillis();
+
+        // Cells are at least as long as the distance covered at free flow in one step
+        int substeps = Math.max(1, (int) Math.ceil(freeFlowKmh * tickSeconds / 3600 / net.shortestKm));
+        double dt = tickSeconds / substeps;
+        int nodes = graph.nodeCount();
+        for (int s = 0; s < substeps; s++) {
+            // Signals run on the wall clock; a step sees them as they are part way through the tick
+            long at = now + Math.round(s * dt * 1000);
+            pool.invoke(new Partition(0, nodes, partitionSize, (from, to) -> flows(net, grid, from, to, at)));
+            pool.invoke(new Partition(0, nodes, partitionSize, (from, to) -> densities(net, from, to, dt / 3600)));
+        }
+        pool.invoke(new Partition(0, nodes, partitionSize, (from, to) -> congestion(net, grid, from, to)));
+
+        SwarmState.Commit commit = swarmState.update(update -> {
+            if (!update.base().sameNetwork(net.grid)) return;
+            for (int i = 0; i < nodes; i++) {
+                update.setCongestion(i, net.nodeCongestion[i]);
+            }
+            int[] roadEdges = graph.roadEdges();
+            for (int r = 0; r < roadEdges.length / 2; r++) {
+                int forward = roadEdges[2 * r];
+                if (forward < 0) continue;
+                double density = Math.max(net.density[forward], net.density[roadEdges[2 * r + 1]]);
+                update.setRoadCongestion(r, round(density / jamDensity));
+            }
+        });
+        if (commit != null) swarmService.publish(commit);
+
+        double total = 0;
+        for (int e = 0; e < net.density.length; e++) total += net.density[e] * graph.lengthKm()[e];
+        vehicles = total;
+        long took = System.nanoTime() - started;
+        ticks.increment();
+        steps.add(substeps);
+        tickNanos.add(took);
+        lastTickNanos = took;
+        if (took > maxTickNanos) maxTickNanos = took;
+        return commit;
+    }
+
+    private Network networkFor(SwarmState.Grid grid) {
+        Network net = network;
+        if (net == null || !net.grid.sameNetwork(grid)) {
+            net = new Network(roadGraphService.graph(), jamDensity);
+            network = net;
+        }
+        return net;
+    }
+
+    /**
+     * Node pass: what each incoming cell of intersections from..to sends and each outgoing cell receives
+     */
+    private void flows(Network net, SwarmState.Grid grid, int from, int to, long at) {
+        RoadGraphService.Graph graph = net.graph;
+        int[] offsets = graph.offsets();
+        for (int v = from; v < to; v++) {
+            int first = offsets[v], last = offsets[v + 1], degree = last - first;
+            if (degree == 0) continue;
+            boolean northSouthGreen = grid.northSouthGreen(v, at);
+
+            // Incoming cell of outgoing edge o is its reverse, the same road travelled towards v
+            double through = 0;
+            for (int o = first; o < last; o++) {
+                int in = net.reverse[o];
+                through += (1 - exitShare) * sending(net, in, northSouthGreen);
+            }
+            double entry = entryPerHour / degree;
+            double scale = 1;
+            for (int o = first; o < last; o++) {
+                double demand = demand(net, o, through, entry, degree, northSouthGreen);
+                if (demand > 0) scale = Math.min(scale, receiving(net, o) / demand);
+            }
+            for (int o = first; o < last; o++) {
+                int in = net.reverse[o];
+                net.outflow[in] = scale * sending(net, in, northSouthGreen);
+                net.inflow[o] = scale * demand(net, o, through, entry, degree, northSouthGreen);
+            }
+        }
+    }
+
+    private double demand(Network net, int o, double through, double entry, int degree, boolean northSouthGreen) {
+        // Through traffic spreads over every other road; no U-turns unless it is a dead end
+        if (degree == 1) return entry + through;
+        return entry + (through - (1 - exitShare) * sending(net, net.reverse[o], northSouthGreen)) / (degree - 1);
+    }
+
+    private double sending(Network net, int cell, boolean northSouthGreen) {
+        if (net.northSouth[cell] != northSouthGreen) return 0;
+        return Math.min(freeFlowKmh * net.density[cell], capacityPerHour);
+    }
+
+    private double receiving(Network net, int cell) {
+        return Math.min(capacityPerHour, waveSpeedKmh * (jamDensity - net.density[cell]));
+    }
+
+    /**
+     * Cell pass: move the density of the cells leaving intersections from..to by their net flow
+     */
+    private void densities(Network net, int from, int to, double hours) {
+        int[] offsets = net.graph.offsets();
+        double[] lengthKm = net.graph.lengthKm();
+        for (int e = offsets[from]; e < offsets[to]; e++) {
+            double density = net.density[e] + hours / lengthKm[e] * (net.inflow[e] - net.outflow[e]);
+            net.density[e] = Math.max(0, Math.min(jamDensity, density));
+        }
+    }
+
+    /**
+     * Intersection congestion is the mean fill of the cells queueing into it
+     */
+    private void congestion(Network net, SwarmState.Grid grid, int from, int to) {
+        int[] offsets = net.graph.offsets();
+        for (int v = from; v < to; v++) {
+            int degree = offsets[v + 1] - offsets[v];
+            if (degree == 0) {
+                net.nodeCongestion[v] = grid.congestion(v);
+                continue;
+            }
+            double sum = 0;
+            for (int o = offsets[v]; o < offsets[v + 1]; o++) sum += net.density[net.reverse[o]];
+            net.nodeCongestion[v] = round(sum / degree / jamDensity);
+        }
+    }
+
+    private static double round(double value) {
+        // Sub-0.01% moves are noise; leaving them out keeps change sets to roads that really moved
+        return Math.round(value * 10000) / 10000.0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long count = ticks.sum();
+        stats.put("enabled", enabled);
+        stats.put("ticks", count);
+        stats.put("steps", steps.sum());
+        stats.put("overruns", overruns.sum());
+        stats.put("failures", failures.sum());
+        stats.put("lastTickMs", lastTickNanos / 1e6);
+        stats.put("maxTickMs", maxTickNanos / 1e6);
+        stats.put("meanTickMs", count > 0 ? tickNanos.sum() / 1e6 / count : 0.0);
+        stats.put("tickSeconds", tickSeconds);
+        stats.put("vehicles", vehicles);
+        stats.put("parallelism", pool.getParallelism());
+        return stats;
+    }
+
+    /**
+     * Simulation state for one road network: a density per directed edge of its graph
+     */
+    private static final class Network {
+        private final SwarmState.Grid grid;
+        private final RoadGraphService.Graph graph;
+        private final int[] reverse;
+        private final boolean[] northSouth;
+        private final double[] density;
+        private final double[] inflow;
+        private final double[] outflow;
+        private final double[] nodeCongestion;
+        private final double shortestKm;
+
+        private Network(RoadGraphService.Graph graph, double jamDensity) {
+            this.graph = graph;
+            this.grid = graph.grid();
+            int edges = graph.targets().length;
+            reverse = new int[edges];
+            northSouth = new boolean[edges];
+            density = new double[edges];
+            inflow = new double[edges];
+            outflow = new double[edges];
+            int[] roadEdges = graph.roadEdges();
+            double shortest = Double.MAX_VALUE;
+            for (int r = 0; r < roadEdges.length / 2; r++) {
+                int forward = roadEdges[2 * r], backward = roadEdges[2 * r + 1];
+                if (forward < 0) continue;
+                reverse[forward] = backward;
+                reverse[backward] = forward;
+                boolean axis = Math.abs(grid.endLat(r) - grid.startLat(r)) >= Math.abs(grid.endLng(r) - grid.startLng(r));
+                northSouth[forward] = axis;
+                northSouth[backward] = axis;
+                // Start from what the swarm shows
+                density[forward] = grid.roadCongestion(r) * jamDensity;
+                density[backward] = grid.roadCongestion(r) * jamDensity;
+                if (graph.lengthKm()[forward] > 0) shortest = Math.min(shortest, graph.lengthKm()[forward]);
+            }
+            shortestKm = shortest == Double.MAX_VALUE ? 1 : shortest;
+            int nodes = graph.nodeCount();
+            nodeCongestion = new double[nodes];
+        }
+    }
+
+    private interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits a node range in halves until it is at most grain long
+     */
+    private static final class Partition extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final RangeBody body;
+
+        private Partition(int from, int to, int grain, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Partition(from, mid, grain, body), new Partition(mid, to, grain, body));
+        }
+    }
+}
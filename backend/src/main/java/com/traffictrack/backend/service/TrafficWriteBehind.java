@@ -0,0 +1,162 @@
+package com.traffictrack.backend.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.traffictrack.backend.config.TrafficExecutorConfig;
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.repository.TrafficDataRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind persistence for traffic readings. Readings are queued and written by a single
+ * flusher thread in batches of up to batch-size rows, or whatever has arrived when the flush
+ * interval elapses, so inserts (and their cascaded incidents) go out as JDBC batches.
+ * When the queue stays full past the offer timeout the caller writes the reading itself.
+ */
+@Service
+public class TrafficWriteBehind {
+
+    private static final Logger LOGGER = Logger.getLogger(TrafficWriteBehind.class.getName());
+
+    private final TrafficDataRepository trafficDataRepository;
+    private final ActiveIncidentIndex activeIncidentIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<TrafficData> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder inlineWrites = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public TrafficWriteBehind(TrafficDataRepository trafficDataRepository,
+                              ActiveIncidentIndex activeIncidentIndex,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${traffic.persist.queue-capacity:10000}") int queueCapacity,
+                              @Value("${traffic.persist.batch-size:50}") int batchSize,
+                              @Value("${traffic.persist.flush-interval-ms:200}") long flushIntervalMillis,
+                              @Value("${traffic.persist.offer-timeout-ms:50}") long offerTimeoutMillis) {
+        this.trafficDataRepository = trafficDataRepository;
+        this.activeIncidentIndex = activeIncidentIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.flusher = TrafficExecutorConfig.namedThreadFactory("traffic-write-behind-").newThread(this::run);
+        this.flusher.start();
+    }
+
+    /**
+     * Queue a reading for persistence. Blocks for at most the offer timeout; past that the
+     * reading is written on the calling thread so a slow database pushes back on producers.
+     */
+    public void enqueue(TrafficData trafficData) {
+        try {
+            if (running && queue.offer(trafficData, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                enqueued.increment();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        inlineWrites.increment();
+        write(List.of(trafficData));
+    }
+
+    private void run() {
+        List<TrafficData> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                TrafficData first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // Gather a full batch, but never hold the first reading longer than the flush interval
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) break;
+                    TrafficData next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty()) write(batch);
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Write-behind flusher error", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<TrafficData> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> trafficDataRepository.saveAll(batch));
+            for (TrafficData trafficData : batch) {
+                if (trafficData.getIncidents() != null) activeIncidentIndex.addAll(trafficData.getIncidents());
+            }
+            written.add(batch.size());
+            batches.increment();
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            LOGGER.log(Level.WARNING, "Failed to persist " + batch.size() + " traffic readings", e);
+        }
+    }
+
+    /**
+     * Write everything queued so far on the calling thread
+     */
+    public void flush() {
+        List<TrafficData> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // The flusher wakes at least once per flush interval, so let it finish its current batch
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+        flush();
+        LOGGER.info("Write-behind drained: " + written.sum() + " readings written in " + batches.sum() + " batches");
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("enqueued", enqueued.sum());
+        stats.put("written", written.sum());
+        stats.put("batches", batches.sum());
+        stats.put("inlineWrites", inlineWrites.sum());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
+}
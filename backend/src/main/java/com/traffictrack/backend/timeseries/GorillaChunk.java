@@ -0,0 +1,264 @@
+package com.traffictrack.backend.timeseries;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A fixed-capacity block of (epoch second, double) points compressed as in Facebook's Gorilla:
+ * timestamps are stored as the delta of their delta in a variable-width code, values as the XOR
+ * with the previous value, keeping only the meaningful bits. Regular sampling and slowly moving
+ * values cost a few bits per point instead of sixteen bytes.
+ * <p>
+ * Appends must be in non-decreasing time order. A chunk is not thread safe; callers guard it,
+ * and once sealed it no longer changes and can be read concurrently.
+ */
+public final class GorillaChunk {
+
+    private static final int INITIAL_WORDS = 8;
+
+    private final int capacity;
+    private long[] words;
+    private int bits;
+    private int count;
+    private boolean sealed;
+
+    private long firstTime;
+    private long lastTime;
+    private long lastDelta;
+    private long lastValue;
+    private int lastLeading;
+    private int lastTrailing;
+
+    public GorillaChunk(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.words = new long[INITIAL_WORDS];
+    }
+
+    /**
+     * Append a point; false when the chunk is full or sealed, or time is before the last point
+     */
+    public boolean append(long time, double value) {
+        if (sealed || count == capacity || (count > 0 && time < lastTime)) return false;
+        long valueBits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            writeBits(time, 64);
+            writeBits(valueBits, 64);
+            firstTime = time;
+            lastLeading = Integer.MAX_VALUE;
+        } else {
+            long delta = time - lastTime;
+            writeDeltaOfDelta(delta - lastDelta);
+            lastDelta = delta;
+            writeValue(valueBits ^ lastValue);
+        }
+        lastTime = time;
+        lastValue = valueBits;
+        count++;
+        return true;
+    }
+
+    /**
+     * Stop accepting points and drop the unused tail of the buffer
+     */
+    public void seal() {
+        if (sealed) return;
+        sealed = true;
+        words = Arrays.copyOf(words, Math.max(1, (bits + 63) >>> 6));
+    }
+
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    public boolean isFull() {
+        return count == capacity;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long firstTime() {
+        return firstTime;
+    }
+
+    public long lastTime() {
+        return lastTime;
+    }
+
+    /**
+     * Bytes held by the compressed points, excluding the object itself
+     */
+    public int sizeBytes() {
+        return words.length * Long.BYTES;
+    }
+
+    /**
+     * Decode the points with from <= time <= to, in time order
+     */
+    public void read(long from, long to, PointConsumer consumer) {
+        if (count == 0 || to < firstTime || from > lastTime) return;
+        Reader reader = new Reader(words);
+        long time = reader.readBits(64);
+        long valueBits = reader.readBits(64);
+        long delta = 0;
+        int leading = 0, trailing = 0;
+        for (int k = 0; ; ) {
+            if (time > to) return;
+            if (time >= from) consumer.accept(time, Double.longBitsToDouble(valueBits));
+            if (++k == count) return;
+
+            delta += reader.readDeltaOfDelta();
+            time += delta;
+            if (reader.readBit()) {
+                if (reader.readBit()) {
+                    leading = (int) reader.readBits(5);
+                    int significant = (int) reader.readBits(6) + 1;
+                    trailing = 64 - leading - significant;
+                }
+                valueBits ^= reader.readBits(64 - leading - trailing) << trailing;
+            }
+        }
+    }
+
+    /**
+     * Sealed chunk as bytes for persistence: point count, bit length, then the bit buffer
+     */
+    public byte[] toBytes() {
+        int used = (bits + 63) >>> 6;
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES + used * Long.BYTES);
+        buffer.putInt(count).putInt(bits);
+        for (int w = 0; w < used; w++) buffer.putLong(words[w]);
+        return buffer.array();
+    }
+
+    /**
+     * Rebuild a sealed chunk written by {@link #toBytes()}
+     */
+    public static GorillaChunk fromBytes(byte[] data, int capacity) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int count = buffer.getInt();
+        int bits = buffer.getInt();
+        long[] words = new long[Math.max(1, (bits + 63) >>> 6)];
+        for (int w = 0; w < (bits + 63) >>> 6; w++) words[w] = buffer.getLong();
+
+        GorillaChunk chunk = new GorillaChunk(Math.max(capacity, count));
+        chunk.words = words;
+        chunk.bits = bits;
+        chunk.count = count;
+        chunk.sealed = true;
+        if (count > 0) {
+            chunk.firstTime = words[0];
+            long[] last = new long[1];
+            chunk.read(Long.MIN_VALUE, Long.MAX_VALUE, (time, value) -> last[0] = time);
+            chunk.lastTime = last[0];
+        }
+        return chunk;
+    }
+
+    // Delta of delta: '0' when unchanged, otherwise a prefix naming a 7, 9, 12 or 64 bit field
+    private void writeDeltaOfDelta(long dod) {
+        if (dod == 0) {
+            writeBits(0b0, 1);
+        } else if (fits(dod, 7)) {
+            writeBits(0b10, 2);
+            writeBits(dod, 7);
+        } else if (fits(dod, 9)) {
+            writeBits(0b110, 3);
+            writeBits(dod, 9);
+        } else if (fits(dod, 12)) {
+            writeBits(0b1110, 4);
+            writeBits(dod, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(dod, 64);
+        }
+    }
+
+    // XOR with the previous value: '0' when equal, '10' when the meaningful bits fit the previous
+    // window, else '11' with 5 bits of leading zeros and 6 bits of meaningful length
+    private void writeValue(long xor) {
+        if (xor == 0) {
+            writeBits(0b0, 1);
+            return;
+        }
+        int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (lastLeading != Integer.MAX_VALUE && leading >= lastLeading && trailing >= lastTrailing) {
+            writeBits(0b10, 2);
+            writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+        } else {
+            int significant = 64 - leading - trailing;
+            writeBits(0b11, 2);
+            writeBits(leading, 5);
+            writeBits(significant - 1, 6);
+            writeBits(xor >>> trailing, significant);
+            lastLeading = leading;
+            lastTrailing = trailing;
+        }
+    }
+
+    private static boolean fits(long value, int width) {
+        return value >= -(1L << (width - 1)) && value < (1L << (width - 1));
+    }
+
+    private void writeBits(long value, int n) {
+        if (bits + n > (long) words.length * 64) words = Arrays.copyOf(words, words.length * 2);
+        if (n < 64) value &= (1L << n) - 1;
+        int word = bits >>> 6;
+        int free = 64 - (bits & 63);
+        if (n <= free) {
+            words[word] |= value << (free - n);
+        } else {
+            words[word] |= value >>> (n - free);
+            words[word + 1] |= value << (64 - (n - free));
+        }
+        bits += n;
+    }
+
+    @FunctionalInterface
+    public interface PointConsumer {
+        void accept(long time, double value);
+    }
+
+    private static final class Reader {
+        private final long[] words;
+        private int position;
+
+        Reader(long[] words) {
+            this.words = words;
+        }
+
+        boolean readBit() {
+            return readBits(1) != 0;
+        }
+
+        long readBits(int n) {
+            if (n == 0) return 0;
+            int word = position >>> 6;
+            int offset = position & 63;
+            int free = 64 - offset;
+            long value = (words[word] << offset) >>> (64 - n);
+            if (n > free) value |= words[word + 1] >>> (64 - (n - free));
+            position += n;
+            return value;
+        }
+
+        long readDeltaOfDelta() {
+            if (!readBit()) return 0;
+            if (!readBit()) return signed(readBits(7), 7);
+            if (!readBit()) return signed(readBits(9), 9);
+            if (!readBit()) return signed(readBits(12), 12);
+            return readBits(64);
+        }
+
+        private static long signed(long value, int width) {
+            return (value << (64 - width)) >> (64 - width);
+        }
+    }
+}
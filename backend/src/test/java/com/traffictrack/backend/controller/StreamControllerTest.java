@@ -0,0 +1,63 @@
+package com.traffictrack.backend.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.traffictrack.backend.service.SwarmService;
+import com.traffictrack.backend.service.TrafficSimulationService;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:stream;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","simulation.enabled=false"})
+public class StreamControllerTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SwarmService swarmService;
+
+    @Autowired
+    private TrafficSimulationService trafficSimulationService;
+
+    @Test
+    public void testSubscribersOnlyReceiveFramesForTheirViewport() throws Exception {
+        swarmService.getSwarmData();
+
+        // Whole default grid, and a box far away from it
+        MockHttpServletResponse inside = mockMvc.perform(get("/api/stream").param("bbox", "-0.15,51.45,-0.03,51.56"))
+                .andExpect(request().asyncStarted()).andReturn().getResponse();
+        MockHttpServletResponse outside = mockMvc.perform(get("/api/stream").param("bbox", "2.2,48.8,2.4,48.9"))
+                .andExpect(request().asyncStarted()).andReturn().getResponse();
+
+        trafficSimulationService.tick();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!inside.getContentAsString().contains("event:swarm") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        String received = inside.getContentAsString();
+        assertThat(received).startsWith("event:hello");
+        assertThat(received).contains("event:swarm");
+        assertThat(received).contains("\"version\":" + swarmService.getVersion());
+        assertThat(outside.getContentAsString()).contains("event:hello").doesNotContain("event:swarm");
+    }
+
+    @Test
+    public void testRejectsMalformedBbox() throws Exception {
+        mockMvc.perform(get("/api/stream").param("bbox", "1,2,3")).andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,76 @@
+package com.traffictrack.backend.controller;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.traffictrack.backend.service.SwarmService;
+import com.traffictrack.backend.service.TrafficSimulationService;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:swarmetag;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","simulation.enabled=false"})
+public class SwarmSnapshotCachingTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SwarmService swarmService;
+
+    @Autowired
+    private TrafficSimulationService trafficSimulationService;
+
+    @Test
+    public void testEtagRevalidationAndGzip() throws Exception {
+        MvcResult plain = mockMvc.perform(get("/api/swarm"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(jsonPath("$.intersections.length()").value(81))
+                .andReturn();
+        String etag = plain.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/swarm").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+
+        MvcResult gzip = mockMvc.perform(get("/api/swarm").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().stringValues("Vary", hasItem("Accept-Encoding")))
+                .andReturn();
+        String gzipEtag = gzip.getResponse().getHeader("ETag");
+        assertNotEquals(etag, gzipEtag);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.getResponse().getContentAsByteArray()))) {
+            assertArrayEquals(plain.getResponse().getContentAsByteArray(), in.readAllBytes());
+        }
+
+        // gzip;q=0 means not acceptable
+        mockMvc.perform(get("/api/swarm").header("Accept-Encoding", "gzip;q=0"))
+                .andExpect(header().doesNotExist("Content-Encoding"));
+
+        // A new version invalidates both tags
+        trafficSimulationService.tick();
+        mockMvc.perform(get("/api/swarm").header("If-None-Match", etag + ", W/" + gzipEtag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)));
+    }
+}
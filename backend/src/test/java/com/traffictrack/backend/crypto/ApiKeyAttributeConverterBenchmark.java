@@ -0,0 +1,83 @@
+package com.traffictrack.backend.crypto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Rough decrypt throughput comparison for the credential read path. Not run by the test suite;
+ * start it with the test classpath, e.g.
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.traffictrack.backend.crypto.ApiKeyAttributeConverterBenchmark
+ */
+public class ApiKeyAttributeConverterBenchmark {
+
+    private static final String PASSPHRASE = "benchmark-passphrase";
+    private static final int ROWS = 16;
+    private static final int ITERATIONS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("APP_ENC_KEY", PASSPHRASE);
+        ApiKeyAttributeConverter memoized = new ApiKeyAttributeConverter(null, 256);
+        ApiKeyAttributeConverter uncached = new ApiKeyAttributeConverter(null, 0);
+        SecretKeySpec key = new SecretKeySpec(
+                MessageDigest.getInstance("SHA-256").digest(PASSPHRASE.getBytes(StandardCharsets.UTF_8)), "AES");
+
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(uncached.convertToDatabaseColumn("sk_live_" + i + "_ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789"));
+        }
+
+        for (int round = 0; round < 3; round++) {
+            report("per-call Cipher.getInstance", () -> legacyDecrypt(rows, key));
+            report("thread-local cipher", () -> decryptAll(uncached, rows));
+            report("thread-local cipher + memo", () -> decryptAll(memoized, rows));
+            System.out.println();
+        }
+    }
+
+    private static void report(String name, Runnable body) {
+        long start = System.nanoTime();
+        body.run();
+        double nanosPerOp = (double) (System.nanoTime() - start) / ITERATIONS;
+        System.out.printf("%-30s %10.0f ns/op %12.0f ops/s%n", name, nanosPerOp, 1e9 / nanosPerOp);
+    }
+
+    private static void decryptAll(ApiKeyAttributeConverter converter, List<String> rows) {
+        int sink = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += converter.convertToEntityAttribute(rows.get(i % ROWS)).length();
+        }
+        if (sink == 42) System.out.println();
+    }
+
+    /**
+     * The decrypt path as it was before cipher reuse: fresh Cipher and buffer copies per call
+     */
+    private static void legacyDecrypt(List<String> rows, SecretKeySpec key) {
+        try {
+            int sink = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                byte[] all = Base64.getDecoder().decode(rows.get(i % ROWS));
+                ByteBuffer bb = ByteBuffer.wrap(all);
+                byte[] iv = new byte[12];
+                bb.get(iv);
+                byte[] cipherBytes = new byte[bb.remaining()];
+                bb.get(cipherBytes);
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, iv));
+                sink += new String(cipher.doFinal(cipherBytes), StandardCharsets.UTF_8).length();
+            }
+            if (sink == 42) System.out.println();
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
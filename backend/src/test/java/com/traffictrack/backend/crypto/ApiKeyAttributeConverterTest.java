@@ -3,6 +3,14 @@ package com.traffictrack.backend.crypto;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -24,4 +32,31 @@ public class ApiKeyAttributeConverterTest {
         String out = conv.convertToEntityAttribute(db);
         assertEquals(original, out);
     }
+
+    @Test
+    public void testConcurrentRoundTripsWithoutMemo() throws Exception {
+        ApiKeyAttributeConverter conv = new ApiKeyAttributeConverter(null, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String original = "sk_test_" + i;
+                results.add(pool.submit(() -> original.equals(conv.convertToEntityAttribute(conv.convertToDatabaseColumn(original)))));
+            }
+            for (Future<Boolean> result : results) {
+                assertEquals(Boolean.TRUE, result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTamperedCiphertextIsRejected() {
+        ApiKeyAttributeConverter conv = new ApiKeyAttributeConverter(null, 0);
+        byte[] raw = java.util.Base64.getDecoder().decode(conv.convertToDatabaseColumn("sk_test_tamper"));
+        raw[raw.length - 1] ^= 1;
+        String tampered = java.util.Base64.getEncoder().encodeToString(raw);
+        assertThrows(RuntimeException.class, () -> conv.convertToEntityAttribute(tampered));
+    }
 }
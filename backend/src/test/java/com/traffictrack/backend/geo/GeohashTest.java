@@ -0,0 +1,53 @@
+package com.traffictrack.backend.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class GeohashTest {
+
+    @Test
+    public void testEncodeKnownPoint() {
+        // Reference value from the original geohash.org examples
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+    }
+
+    @Test
+    public void testBoundsContainPoint() {
+        double lat = 51.505, lng = -0.09;
+        double[] box = Geohash.bounds(Geohash.encode(lat, lng, 7));
+        assertTrue(lat >= box[0] && lat <= box[2]);
+        assertTrue(lng >= box[1] && lng <= box[3]);
+    }
+
+    @Test
+    public void testRadiusBucket() {
+        assertEquals(Geohash.radiusBucket(5.0), Geohash.radiusBucket(5.2));
+        assertNotEquals(Geohash.radiusBucket(0.5), Geohash.radiusBucket(5.0));
+        double[] range = Geohash.radiusRange(Geohash.radiusBucket(0.55));
+        assertTrue(0.55 >= range[0] && 0.55 <= range[1]);
+    }
+
+    @Test
+    public void testAroundCoversNeighbourhood() {
+        String tile = Geohash.encode(51.505, -0.09, 7);
+        List<String> ring = Geohash.around(tile, 1);
+        assertEquals(9, ring.size());
+        assertEquals(tile, ring.get(0));
+        assertEquals(25, Geohash.around(tile, 2).size());
+
+        // A point just across the tile edge lands in one of the neighbours
+        double[] box = Geohash.bounds(tile);
+        assertTrue(ring.contains(Geohash.encode(box[2] + 1e-6, (box[1] + box[3]) / 2, 7)));
+        assertTrue(ring.contains(Geohash.encode((box[0] + box[2]) / 2, box[1] - 1e-6, 7)));
+    }
+
+    @Test
+    public void testDistanceKm() {
+        // London to Paris is roughly 344 km
+        assertEquals(344, Geohash.distanceKm(51.5074, -0.1278, 48.8566, 2.3522), 2);
+        assertEquals(0.0, Geohash.distanceKm(10, 10, 10, 10), 1e-9);
+    }
+}
@@ -0,0 +1,56 @@
+package com.traffictrack.backend.provider;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOnlyTheTrialDecidesHalfOpen() {
+        // Half-opens on the first call after opening
+        CircuitBreaker breaker = new CircuitBreaker(4, 2, 0.5, 0);
+        long first = breaker.tryAcquire();
+        long second = breaker.tryAcquire();
+        long slow = breaker.tryAcquire();
+        long slower = breaker.tryAcquire();
+        breaker.onFailure(first, false);
+        breaker.onFailure(second, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // A call permitted while CLOSED finishing now is not taken as the trial
+        breaker.onSuccess(slow);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        long trial = breaker.tryAcquire();
+        assertNotEquals(CircuitBreaker.NOT_PERMITTED, trial);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.NOT_PERMITTED, breaker.tryAcquire());
+
+        breaker.onFailure(slower, true);
+        breaker.onIgnored(slower);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.NOT_PERMITTED, breaker.tryAcquire());
+
+        breaker.onSuccess(trial);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // The trial's permit does not count again once CLOSED
+        breaker.onFailure(trial, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testIgnoredTrialLetsAnotherThrough() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 1, 0.5, 0);
+        breaker.onFailure(breaker.tryAcquire(), true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        long trial = breaker.tryAcquire();
+        breaker.onIgnored(trial);
+        long retry = breaker.tryAcquire();
+        assertNotEquals(CircuitBreaker.NOT_PERMITTED, retry);
+        breaker.onFailure(retry, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
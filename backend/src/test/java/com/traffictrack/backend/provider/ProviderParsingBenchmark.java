@@ -0,0 +1,105 @@
+package com.traffictrack.backend.provider;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.traffictrack.backend.model.TrafficIncident;
+
+/**
+ * Parse time and allocation of a large TomTom incidentDetails body: the previous
+ * String + org.json tree path against the streaming parser. Not run by the test suite;
+ * start it with the test classpath, e.g.
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.traffictrack.backend.provider.ProviderParsingBenchmark
+ */
+public class ProviderParsingBenchmark {
+
+    private static final int INCIDENTS = 2000;
+    private static final int ITERATIONS = 200;
+
+    public static void main(String[] args) throws Exception {
+        byte[] body = incidentBody(INCIDENTS);
+        TomTomTrafficProvider provider = new TomTomTrafficProvider(new MockEnvironment());
+        System.out.printf("incidentDetails body: %d incidents, %d KB%n%n", INCIDENTS, body.length / 1024);
+
+        try {
+            for (int round = 0; round < 3; round++) {
+                report("String + org.json tree", () -> legacyParse(body));
+                report("streaming JsonParser", () -> {
+                    try {
+                        return AbstractHttpTrafficProvider.parse(new ByteArrayInputStream(body), provider::parseIncidents).size();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                System.out.println();
+            }
+        } finally {
+            provider.destroy();
+        }
+    }
+
+    private static void report(String name, Supplier<Integer> parse) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += parse.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%-24s %8.2f ms/parse %10.1f KB allocated/parse (%d incidents)%n",
+                name, elapsed / 1e6 / ITERATIONS, allocated / 1024.0 / ITERATIONS, sink / ITERATIONS);
+    }
+
+    /**
+     * The pre-streaming path: decode the body to a String, build the tree, walk it
+     */
+    private static int legacyParse(byte[] body) {
+        JSONObject json = new JSONObject(new String(body, StandardCharsets.UTF_8));
+        List<TrafficIncident> incidents = new ArrayList<>();
+        JSONArray array = json.getJSONArray("incidents");
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject incident = array.getJSONObject(i);
+            JSONArray coordinates = incident.getJSONObject("geometry").getJSONArray("coordinates");
+            JSONArray first = coordinates.getJSONArray(0);
+            JSONObject properties = incident.getJSONObject("properties");
+            TrafficIncident trafficIncident = new TrafficIncident(first.getDouble(1), first.getDouble(0),
+                    properties.optString("iconCategory", "other"), "low");
+            trafficIncident.setDelayMinutes(properties.optInt("magnitudeOfDelay", 0));
+            JSONArray events = properties.optJSONArray("events");
+            if (events != null && events.length() > 0) {
+                trafficIncident.setDescription(events.getJSONObject(0).optString("description", ""));
+            }
+            incidents.add(trafficIncident);
+        }
+        return incidents.size();
+    }
+
+    private static byte[] incidentBody(int count) {
+        StringBuilder sb = new StringBuilder("{\"incidents\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[");
+            for (int v = 0; v < 12; v++) {
+                if (v > 0) sb.append(',');
+                sb.append('[').append(4.0 + i * 1e-4 + v * 1e-5).append(',').append(52.0 + i * 1e-4 + v * 1e-5).append(']');
+            }
+            sb.append("]},\"properties\":{\"iconCategory\":").append(i % 14)
+              .append(",\"magnitudeOfDelay\":").append(i % 5)
+              .append(",\"events\":[{\"description\":\"Queuing traffic near junction ").append(i)
+              .append("\",\"code\":108}]}}");
+        }
+        return sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
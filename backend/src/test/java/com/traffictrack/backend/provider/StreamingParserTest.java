@@ -0,0 +1,110 @@
+package com.traffictrack.backend.provider;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.model.TrafficIncident;
+
+public class StreamingParserTest {
+
+    private static TomTomTrafficProvider tomTom;
+    private static HereTrafficProvider here;
+
+    @BeforeAll
+    public static void setup() {
+        MockEnvironment environment = new MockEnvironment();
+        tomTom = new TomTomTrafficProvider(environment);
+        here = new HereTrafficProvider(environment);
+    }
+
+    @AfterAll
+    public static void teardown() {
+        tomTom.destroy();
+        here.destroy();
+    }
+
+    @Test
+    public void testTomTomFlow() throws IOException {
+        String body = "{\"flowSegmentData\":{\"frc\":\"FRC2\",\"currentSpeed\":30,\"freeFlowSpeed\":60,"
+                + "\"currentTravelTime\":120,\"freeFlowTravelTime\":60,\"confidence\":0.9,\"roadClosure\":false,"
+                + "\"coordinates\":{\"coordinate\":[{\"latitude\":52.1,\"longitude\":4.1}]}},\"@version\":\"4\"}";
+        TrafficData data = AbstractHttpTrafficProvider.parse(stream(body), p -> tomTom.parseFlow(p, 52.0, 4.0, 1.0));
+
+        assertEquals("tomtom", data.getDataSource());
+        assertEquals(30.0, data.getFlowSpeed());
+        assertEquals(60.0, data.getFreeFlowSpeed());
+        assertEquals(0.5, data.getCongestionLevel(), 1e-9);
+        assertEquals(120, data.getCurrentTravelTime());
+    }
+
+    @Test
+    public void testTomTomIncidentAreaIsBoundedBeforeAnyRequest() {
+        // radius=20000 around a point would otherwise be 400 x 400 sub-box requests
+        CompletableFuture<List<TrafficIncident>> huge = tomTom.fetchIncidents(null, -180, -360, 180, 360);
+        assertTrue(huge.isCompletedExceptionally());
+        ExecutionException error = assertThrows(ExecutionException.class, huge::get);
+        assertTrue(error.getCause() instanceof IllegalArgumentException);
+
+        // Entirely outside valid latitudes once clamped
+        assertTrue(tomTom.fetchIncidents(null, 95, 0, 99, 1).join().isEmpty());
+    }
+
+    @Test
+    public void testTomTomIncidentsPointAndLine() throws IOException {
+        String body = "{\"incidents\":["
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[4.5,52.5]},"
+                + "\"properties\":{\"id\":\"abc123\",\"iconCategory\":1,\"magnitudeOfDelay\":3,\"events\":[{\"description\":\"Crash\",\"code\":401}]}},"
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[4.6,52.6],[4.7,52.7]]},"
+                + "\"properties\":{\"iconCategory\":9,\"magnitudeOfDelay\":0}},"
+                + "{\"type\":\"Feature\",\"properties\":{\"iconCategory\":6}}"
+                + "]}";
+        List<TrafficIncident> incidents = AbstractHttpTrafficProvider.parse(stream(body), tomTom::parseIncidents);
+
+        assertEquals(2, incidents.size());
+        TrafficIncident crash = incidents.get(0);
+        assertEquals(52.5, crash.getLatitude());
+        assertEquals(4.5, crash.getLongitude());
+        assertEquals("accident", crash.getIncidentType());
+        assertEquals("high", crash.getSeverity());
+        assertEquals("Crash", crash.getDescription());
+        assertEquals("tomtom:abc123", crash.getExternalId());
+
+        TrafficIncident roadwork = incidents.get(1);
+        assertEquals(52.6, roadwork.getLatitude());
+        assertEquals(4.6, roadwork.getLongitude());
+        assertEquals("roadwork", roadwork.getIncidentType());
+        assertEquals("low", roadwork.getSeverity());
+        assertEquals("tomtom:roadwork@52.60000,4.60000", roadwork.getExternalId());
+    }
+
+    @Test
+    public void testHereFlowAveragesSegments() throws IOException {
+        String body = "{\"sourceUpdated\":\"2024-01-01T00:00:00Z\",\"results\":["
+                + "{\"location\":{\"shape\":{\"links\":[{\"points\":[{\"lat\":1,\"lng\":2}]}]}},\"currentFlow\":{\"speed\":10,\"freeFlow\":20,\"jamFactor\":5}},"
+                + "{\"location\":{},\"currentFlow\":{\"speed\":20,\"freeFlow\":20}}"
+                + "]}";
+        TrafficData data = AbstractHttpTrafficProvider.parse(stream(body), p -> here.parseFlow(p, 1.0, 2.0, 1.0));
+
+        assertEquals(15.0, data.getFlowSpeed());
+        assertEquals(0.25, data.getCongestionLevel(), 1e-9);
+        assertTrue(data.getFreeFlowSpeed() > 0);
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,336 @@
+package com.traffictrack.backend.provider;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.core.env.Environment;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.sun.net.httpserver.HttpServer;
+import com.traffictrack.backend.model.ApiCredential;
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.service.ApiCredentialService;
+
+public class TrafficProviderEngineTest {
+
+    private static ExecutorService executor;
+    private final StaticTrafficProvider staticProvider = new StaticTrafficProvider();
+
+    @BeforeAll
+    public static void setup() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterAll
+    public static void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testHedgeWaitsHalfTheTimeoutUntilLatencyIsKnown() throws Exception {
+        StubProvider slow = new StubProvider("slow", 4, Duration.ofMillis(600));
+        StubProvider fast = new StubProvider("fast", 4, Duration.ofSeconds(5));
+        TrafficProviderEngine engine = engine(hedging(1000, 10).withProperty("traffic.provider.slow.hedge-with", "fast"), slow, fast);
+
+        slow.behaviour = CompletableFuture::new;
+        long start = System.nanoTime();
+        TrafficData data = engine.fetch(credential(slow), 1, 2, 1).get(5, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("fast", data.getDataSource());
+        // Hedged at timeout / 2, before the primary itself would have timed out
+        assertTrue(elapsedMillis >= 250 && elapsedMillis < 600, "hedged after " + elapsedMillis + "ms");
+        eventually(() -> Long.valueOf(1).equals(hedge(engine, "slow").get("wins")));
+    }
+
+    @Test
+    public void testHedgeDelayFollowsPrimaryLatencyAndLoserIsCancelled() throws Exception {
+        StubProvider slow = new StubProvider("slow", 4, Duration.ofSeconds(10));
+        StubProvider fast = new StubProvider("fast", 4, Duration.ofSeconds(10));
+        TrafficProviderEngine engine = engine(hedging(5, 20).withProperty("traffic.provider.slow.hedge-with", "fast"), slow, fast);
+
+        // Five quick answers put the primary's p95 near zero, so the hedge goes at the 20ms floor
+        for (int i = 0; i < 5; i++) {
+            assertEquals("slow", engine.fetch(credential(slow), 1, 2, 1).get(1, TimeUnit.SECONDS).getDataSource());
+        }
+        slow.behaviour = CompletableFuture::new;
+        long start = System.nanoTime();
+        TrafficData data = engine.fetch(credential(slow), 1, 2, 1).get(2, TimeUnit.SECONDS);
+
+        assertEquals("fast", data.getDataSource());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        CompletableFuture<TrafficData> loser = slow.calls.get(slow.calls.size() - 1);
+        eventually(loser::isCancelled);
+        // The cancelled call gave back its slot and did not count against the primary
+        Map<String, Object> slowStats = guard(engine, "slow");
+        assertEquals(0, stat(slowStats, "bulkhead", "active"));
+        assertEquals(1, stat(slowStats, "bulkhead", "cancelled"));
+        assertEquals("CLOSED", ((Map<?, ?>) slowStats.get("breaker")).get("state"));
+        assertEquals(0.0, ((Map<?, ?>) slowStats.get("breaker")).get("failureRate"));
+    }
+
+    @Test
+    public void testHedgeFiresAtOnceWhenPrimaryFails() throws Exception {
+        StubProvider slow = new StubProvider("slow", 4, Duration.ofSeconds(30));
+        StubProvider fast = new StubProvider("fast", 4, Duration.ofSeconds(30));
+        TrafficProviderEngine engine = engine(hedging(1000, 10).withProperty("traffic.provider.slow.hedge-with", "fast"), slow, fast);
+
+        slow.behaviour = () -> CompletableFuture.failedFuture(new TrafficProviderException("slow", 503, "down"));
+        long start = System.nanoTime();
+        TrafficData data = engine.fetch(credential(slow), 1, 2, 1).get(5, TimeUnit.SECONDS);
+
+        assertEquals("fast", data.getDataSource());
+        // Not the 15s timeout / 2 delay
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        assertEquals(1L, hedge(engine, "slow").get("launched"));
+    }
+
+    @Test
+    public void testPrimaryWinCancelsTheHedge() throws Exception {
+        StubProvider slow = new StubProvider("slow", 4, Duration.ofMillis(400));
+        StubProvider fast = new StubProvider("fast", 4, Duration.ofSeconds(10));
+        TrafficProviderEngine engine = engine(hedging(1000, 10).withProperty("traffic.provider.slow.hedge-with", "fast"), slow, fast);
+
+        // Answers after the 200ms hedge delay but within its timeout; the hedge never answers
+        slow.behaviour = () -> CompletableFuture.supplyAsync(() -> reading("slow"),
+                CompletableFuture.delayedExecutor(300, TimeUnit.MILLISECONDS, executor));
+        fast.behaviour = CompletableFuture::new;
+        TrafficData data = engine.fetch(credential(slow), 1, 2, 1).get(5, TimeUnit.SECONDS);
+
+        assertEquals("slow", data.getDataSource());
+        assertEquals(1, fast.calls.size());
+        eventually(fast.calls.get(0)::isCancelled);
+        assertEquals(0L, hedge(engine, "slow").get("wins"));
+        assertEquals(0, stat(guard(engine, "fast"), "bulkhead", "active"));
+    }
+
+    @Test
+    public void testBothFailingFallsBackToStatic() throws Exception {
+        StubProvider slow = new StubProvider("slow", 4, Duration.ofSeconds(5));
+        StubProvider fast = new StubProvider("fast", 4, Duration.ofSeconds(5));
+        TrafficProviderEngine engine = engine(hedging(1000, 10).withProperty("traffic.provider.slow.hedge-with", "fast"), slow, fast);
+
+        slow.behaviour = () -> CompletableFuture.failedFuture(new TrafficProviderException("slow", 500, "down"));
+        fast.behaviour = () -> CompletableFuture.failedFuture(new TrafficProviderException("fast", 500, "down"));
+        assertEquals(StaticTrafficProvider.ID, engine.fetch(credential(slow), 1, 2, 1).get(5, TimeUnit.SECONDS).getDataSource());
+    }
+
+    @Test
+    public void testSaturatedBulkheadRejectsWithoutBlockingOtherProviders() throws Exception {
+        StubProvider busy = new StubProvider("busy", 2, Duration.ofSeconds(30));
+        StubProvider other = new StubProvider("other", 1, Duration.ofSeconds(30));
+        TrafficProviderEngine engine = engine(new MockEnvironment().withProperty("traffic.provider.busy.max-queue", "0"), busy, other);
+
+        busy.behaviour = CompletableFuture::new;
+        CompletableFuture<TrafficData> first = engine.fetch(credential(busy), 1, 2, 1);
+        CompletableFuture<TrafficData> second = engine.fetch(credential(busy), 1, 2, 1);
+        // Over max-concurrency with no queue: rejected on the calling thread, served static
+        CompletableFuture<TrafficData> third = engine.fetch(credential(busy), 1, 2, 1);
+        assertTrue(third.isDone());
+        assertEquals(StaticTrafficProvider.ID, third.get().getDataSource());
+        assertTrue(!first.isDone() && !second.isDone());
+        assertEquals(2, busy.calls.size());
+
+        Map<String, Object> busyStats = guard(engine, "busy");
+        assertEquals(1, stat(busyStats, "bulkhead", "rejected"));
+        assertEquals(2, stat(busyStats, "bulkhead", "maxConcurrent"));
+        assertEquals("CLOSED", ((Map<?, ?>) busyStats.get("breaker")).get("state"));
+
+        // Another provider's limit is its own
+        assertEquals("other", engine.fetch(credential(other), 1, 2, 1).get(1, TimeUnit.SECONDS).getDataSource());
+        assertEquals(0, stat(guard(engine, "other"), "bulkhead", "rejected"));
+    }
+
+    @Test
+    public void testHttpProviderReadsLimitsAndParsesOnItsOwnThreads() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/flow", exchange -> {
+            byte[] body = "{\"congestion\":0.5}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        MockEnvironment environment = new MockEnvironment();
+        environment.setConversionService(new ApplicationConversionService());
+        LocalHttpProvider provider = new LocalHttpProvider(environment
+                .withProperty("traffic.provider.local.threads", "2")
+                .withProperty("traffic.provider.local.max-concurrency", "5")
+                .withProperty("traffic.provider.local.timeout", "3s"),
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/flow");
+        try {
+            assertEquals(5, provider.getMaxConcurrency());
+            assertEquals(Duration.ofSeconds(3), provider.getTimeout());
+
+            List<CompletableFuture<TrafficData>> calls = new ArrayList<>();
+            for (int i = 0; i < 6; i++) calls.add(provider.fetch(null, 1, 2, 1));
+            for (CompletableFuture<TrafficData> call : calls) {
+                assertEquals(0.5, call.get(5, TimeUnit.SECONDS).getCongestionLevel());
+            }
+            assertTrue(provider.parsingThreads.size() <= 2);
+            for (String thread : provider.parsingThreads) {
+                assertTrue(thread.startsWith("provider-local-"), thread);
+            }
+        } finally {
+            provider.destroy();
+            server.stop(0);
+        }
+    }
+
+    private TrafficProviderEngine engine(Environment environment, StubProvider... stubs) {
+        List<TrafficProvider> providers = new ArrayList<>(List.of(stubs));
+        providers.add(staticProvider);
+        List<ApiCredential> credentials = new ArrayList<>();
+        for (StubProvider stub : stubs) credentials.add(credential(stub));
+        ApiCredentialService credentialService = new ApiCredentialService(null, 60) {
+            @Override
+            public List<ApiCredential> findUsable() {
+                return credentials;
+            }
+        };
+        return new TrafficProviderEngine(providers, staticProvider, credentialService, environment, executor);
+    }
+
+    /**
+     * Losers are cancelled and stats updated just after the winner's result is handed back
+     */
+    private static void eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private static MockEnvironment hedging(int minSamples, long minDelayMillis) {
+        return new MockEnvironment()
+                .withProperty("traffic.hedge.enabled", "true")
+                .withProperty("traffic.hedge.min-samples", String.valueOf(minSamples))
+                .withProperty("traffic.hedge.min-delay-ms", String.valueOf(minDelayMillis));
+    }
+
+    private static ApiCredential credential(StubProvider provider) {
+        return new ApiCredential(provider.getId(), "key-" + provider.getId());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> guard(TrafficProviderEngine engine, String id) {
+        return (Map<String, Object>) engine.getStats().get(id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> hedge(TrafficProviderEngine engine, String id) {
+        return (Map<String, Object>) guard(engine, id).get("hedge");
+    }
+
+    private static int stat(Map<String, Object> guard, String section, String name) {
+        return ((Number) ((Map<?, ?>) guard.get(section)).get(name)).intValue();
+    }
+
+    private static TrafficData reading(String source) {
+        TrafficData data = new TrafficData(1.0, 2.0, 1.0);
+        data.setDataSource(source);
+        return data;
+    }
+
+    /**
+     * Provider whose calls are whatever the test's behaviour hands out, answering at once by default
+     */
+    private static final class StubProvider implements TrafficProvider {
+        private final String id;
+        private final int maxConcurrency;
+        private final Duration timeout;
+        private final List<CompletableFuture<TrafficData>> calls = new CopyOnWriteArrayList<>();
+        private volatile Supplier<CompletableFuture<TrafficData>> behaviour;
+
+        StubProvider(String id, int maxConcurrency, Duration timeout) {
+            this.id = id;
+            this.maxConcurrency = maxConcurrency;
+            this.timeout = timeout;
+            this.behaviour = () -> CompletableFuture.completedFuture(reading(id));
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public boolean supports(String providerName) {
+            return id.equals(providerName);
+        }
+
+        @Override
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        @Override
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        @Override
+        public int getMaxBatchSize() {
+            return 1;
+        }
+
+        @Override
+        public CompletableFuture<TrafficData> fetch(ApiCredential credential, double lat, double lng, double radius) {
+            CompletableFuture<TrafficData> call = behaviour.get();
+            calls.add(call);
+            return call;
+        }
+    }
+
+    private static final class LocalHttpProvider extends AbstractHttpTrafficProvider {
+        private final String url;
+        private final Set<String> parsingThreads = ConcurrentHashMap.newKeySet();
+
+        LocalHttpProvider(Environment environment, String url) {
+            super("local", environment, 1);
+            this.url = url;
+        }
+
+        @Override
+        public boolean supports(String providerName) {
+            return "local".equals(providerName);
+        }
+
+        @Override
+        public CompletableFuture<TrafficData> fetch(ApiCredential credential, double lat, double lng, double radius) {
+            return getJson(url, parser -> {
+                parsingThreads.add(Thread.currentThread().getName());
+                TrafficData data = new TrafficData(lat, lng, radius);
+                while (parser.nextToken() != null) {
+                    if ("congestion".equals(parser.currentName()) && parser.currentToken().isNumeric()) {
+                        data.setCongestionLevel(parser.getDoubleValue());
+                    }
+                }
+                return data;
+            });
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.model.TrafficIncident;
+import com.traffictrack.backend.repository.TrafficDataRepository;
+import com.traffictrack.backend.repository.TrafficIncidentRepository;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:incidentindex;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","traffic.persist.flush-interval-ms=50","traffic.retention.chunk-pause-ms=0"})
+public class ActiveIncidentIndexTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private ActiveIncidentIndex index;
+
+    @Autowired
+    private TrafficIncidentRepository trafficIncidentRepository;
+
+    @Autowired
+    private TrafficDataRepository trafficDataRepository;
+
+    @Autowired
+    private TrafficWriteBehind writeBehind;
+
+    @Autowired
+    private TrafficRetentionService retentionService;
+
+    @Test
+    public void testBoundingBoxSeverityAndPaging() {
+        List<TrafficIncident> incidents = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            // Spread over several grid cells around (10, 20)
+            TrafficIncident incident = new TrafficIncident(10.0 + i * 0.01, 20.0 + i * 0.01, "accident", i % 3 == 0 ? "high" : "low");
+            incident.setReportedAt(LocalDateTime.now().minusMinutes(i));
+            incidents.add(incident);
+        }
+        incidents.add(new TrafficIncident(11.0, 21.0, "closure", "high")); // outside the box
+        index.addAll(trafficIncidentRepository.saveAll(incidents));
+
+        ActiveIncidentIndex.Page all = index.query(9.99, 19.99, 10.30, 20.30, Set.of(), 0, 100);
+        assertEquals(30, all.total());
+
+        ActiveIncidentIndex.Page high = index.query(9.99, 19.99, 10.30, 20.30, Set.of("high"), 0, 4);
+        assertEquals(10, high.total());
+        assertEquals(4, high.incidents().size());
+        // Newest first, and pages do not overlap
+        assertEquals(10.0, high.incidents().get(0).latitude(), 1e-9);
+        ActiveIncidentIndex.Page last = index.query(9.99, 19.99, 10.30, 20.30, Set.of("high"), 2, 4);
+        assertEquals(2, last.incidents().size());
+        assertEquals(10.27, last.incidents().get(1).latitude(), 1e-9);
+
+        assertEquals(0, index.query(9.99, 19.99, 10.30, 20.30, Set.of("high"), 5, 4).incidents().size());
+    }
+
+    @Test
+    public void testPersistedAndExpiredIncidentsKeepIndexCurrent() throws InterruptedException {
+        TrafficData expired = new TrafficData(-30.0, 150.0, 1.0);
+        expired.setDataSource("tomtom");
+        TrafficIncident incident = new TrafficIncident(-30.0, 150.0, "roadwork", "medium");
+        incident.setTrafficData(expired);
+        expired.setIncidents(new ArrayList<>(List.of(incident)));
+        writeBehind.enqueue(expired);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (index.query(-30.1, 149.9, -29.9, 150.1, Set.of(), 0, 10).total() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, index.query(-30.1, 149.9, -29.9, 150.1, Set.of(), 0, 10).total());
+
+        // The reading expires; its incident goes with it although the incident itself is recent
+        expired.setFetchedAt(LocalDateTime.now().minusDays(2));
+        trafficDataRepository.save(expired);
+        TrafficIncident stale = new TrafficIncident(-30.05, 150.05, "accident", "high");
+        stale.setReportedAt(LocalDateTime.now().minusDays(2));
+        index.addAll(List.of(trafficIncidentRepository.save(stale)));
+        assertEquals(2, index.query(-30.1, 149.9, -29.9, 150.1, Set.of(), 0, 10).total());
+
+        retentionService.run();
+        assertEquals(0, index.query(-30.1, 149.9, -29.9, 150.1, Set.of(), 0, 10).total());
+    }
+
+    @Test
+    public void testIncidentStillReportedOutlivesRetention() {
+        TrafficIncident ongoing = new TrafficIncident(60.0, 10.0, "roadwork", "low");
+        ongoing.setReportedAt(LocalDateTime.now().minusDays(2));
+        ongoing.setLastSeenAt(LocalDateTime.now());
+        index.addAll(List.of(trafficIncidentRepository.save(ongoing)));
+
+        retentionService.run();
+        assertTrue(trafficIncidentRepository.existsById(ongoing.getId()));
+        assertEquals(1, index.query(59.9, 9.9, 60.1, 10.1, Set.of(), 0, 10).total());
+
+        index.load();
+        assertEquals(1, index.query(59.9, 9.9, 60.1, 10.1, Set.of(), 0, 10).total());
+    }
+
+    @Test
+    public void testLoadPicksUpStoredIncidents() {
+        TrafficIncident active = new TrafficIncident(45.0, -70.0, "closure", "critical");
+        TrafficIncident old = new TrafficIncident(45.01, -70.01, "closure", "critical");
+        old.setReportedAt(LocalDateTime.now().minusDays(3));
+        trafficIncidentRepository.saveAll(List.of(active, old));
+        assertEquals(0, index.query(44.9, -70.1, 45.1, -69.9, Set.of(), 0, 10).total());
+
+        index.load();
+        ActiveIncidentIndex.Page page = index.query(44.9, -70.1, 45.1, -69.9, Set.of("critical"), 0, 10);
+        assertEquals(1, page.total());
+        assertEquals(active.getId().longValue(), page.incidents().get(0).id());
+        assertTrue(page.incidents().get(0).reportedAt() != null);
+    }
+}
@@ -0,0 +1,84 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.traffictrack.backend.model.ApiCredential;
+import com.traffictrack.backend.repository.ApiCredentialRepository;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:credentials;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","simulation.enabled=false","app.credentials.refresh-seconds=3600"})
+public class ApiCredentialServiceTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private ApiCredentialService apiCredentialService;
+
+    @Autowired
+    private ApiCredentialRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void clear() {
+        apiCredentialService.deleteAll();
+    }
+
+    @Test
+    public void testChangesThroughTheServiceAreSeenAtOnce() {
+        // The refresh interval is an hour, so only invalidation can make these visible
+        assertNull(apiCredentialService.getActiveCredential());
+
+        apiCredentialService.save("tomtom", "key-1");
+        assertEquals("tomtom", apiCredentialService.getActiveCredential().getProvider());
+
+        apiCredentialService.save("here", "key-2");
+        apiCredentialService.save("google", "");
+        assertEquals(2, apiCredentialService.findUsable().size());
+        assertEquals("tomtom", apiCredentialService.getActiveCredential().getProvider());
+        assertEquals("key-1", apiCredentialService.getActiveCredential().getApiKey());
+
+        apiCredentialService.deleteAll();
+        assertNull(apiCredentialService.getActiveCredential());
+        assertEquals(0, apiCredentialService.findUsable().size());
+    }
+
+    @Test
+    public void testSnapshotIsDroppedOnlyAfterCommit() {
+        apiCredentialService.save("tomtom", "key-1");
+        assertEquals(1, apiCredentialService.findUsable().size());
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            apiCredentialService.deleteAll();
+            // Uncommitted: lookups keep the snapshot instead of reloading rows that may roll back
+            assertEquals("tomtom", apiCredentialService.getActiveCredential().getProvider());
+        });
+        assertNull(apiCredentialService.getActiveCredential());
+    }
+
+    @Test
+    public void testOtherWritersAreSeenAfterTheRefreshInterval() {
+        apiCredentialService.save("tomtom", "key-1");
+        assertEquals(1, apiCredentialService.findUsable().size());
+
+        // A row written behind this node's back, as another node would
+        repository.save(new ApiCredential("here", "key-2"));
+        assertEquals(1, apiCredentialService.findUsable().size());
+
+        ApiCredentialService expiring = new ApiCredentialService(repository, 0);
+        assertEquals(2, expiring.findUsable().size());
+        repository.save(new ApiCredential("google", "key-3"));
+        assertEquals(3, expiring.findUsable().size());
+    }
+}
@@ -0,0 +1,115 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.model.TrafficIncident;
+
+public class GridTrafficServiceTest {
+
+    @Test
+    public void testIncidentsGoToNearestCell() {
+        double centerLat = 52.0;
+        double centerLng = 4.0;
+        double radius = 5.0;
+        int gridSize = 3;
+        List<GridTrafficService.GridCell> cells = GridTrafficService.buildCells(centerLat, centerLng, radius, gridSize);
+
+        TrafficIncident nearCenter = new TrafficIncident(52.001, 4.002, "accident", "high");
+        GridTrafficService.GridCell topLeft = cells.get(0);
+        TrafficIncident nearTopLeft = new TrafficIncident(topLeft.getLat() - 0.002, topLeft.getLng() + 0.003, "roadwork", "low");
+        // Just outside the grid: clamped onto the bottom-right cell
+        GridTrafficService.GridCell bottomRight = cells.get(8);
+        TrafficIncident outside = new TrafficIncident(bottomRight.getLat() - 0.01, bottomRight.getLng() + 0.01, "closure", "medium");
+
+        GridTrafficService.assignIncidents(cells, List.of(nearCenter, nearTopLeft, outside), centerLat, centerLng, radius, gridSize);
+
+        assertEquals(List.of(nearCenter), cells.get(4).getIncidents());
+        assertEquals(List.of(nearTopLeft), topLeft.getIncidents());
+        assertEquals(List.of(outside), bottomRight.getIncidents());
+        int total = 0;
+        for (GridTrafficService.GridCell cell : cells) {
+            total += cell.getIncidents().size();
+        }
+        assertEquals(3, total);
+    }
+
+    @Test
+    public void testGridSizeAndRadiusAreBoundedBeforeFanOut() {
+        GridTrafficService service = new GridTrafficService(null, null, null);
+        ReflectionTestUtils.setField(service, "maxGridSize", 10);
+
+        // Rejected before any cell or lookup is built, so the null collaborators are never touched
+        assertThrows(IllegalArgumentException.class, () -> service.fetchGridAsync(52.0, 4.0, 5.0, 0));
+        assertThrows(IllegalArgumentException.class, () -> service.fetchGridAsync(52.0, 4.0, 5.0, 1000));
+        assertThrows(IllegalArgumentException.class, () -> service.fetchGridAsync(52.0, 4.0, 0.0, 3));
+        assertThrows(IllegalArgumentException.class, () -> service.fetchGridAsync(52.0, 4.0, Double.NaN, 3));
+    }
+
+    @Test
+    public void testCellsMissingTheDeadlineAreStaleOrPending() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        TrafficData cached = new TrafficData(52.0, 4.0, 5.0 / 3);
+        // Only the top row answers; every other cell hangs past the deadline
+        TrafficApiService trafficApiService = new TrafficApiService(null, null, null, null, null, null, null, executor) {
+            @Override
+            public CompletableFuture<TrafficData> fetchLiveTrafficDataAsync(Double latitude, Double longitude, Double radius) {
+                return latitude > 52.0 + 1e-9
+                        ? CompletableFuture.completedFuture(new TrafficData(latitude, longitude, radius))
+                        : new CompletableFuture<>();
+            }
+
+            @Override
+            public TrafficData findStaleTrafficData(Double latitude, Double longitude, Double radius) {
+                return isCenter(latitude, longitude) ? cached : null;
+            }
+        };
+        TrafficIncidentService trafficIncidentService = new TrafficIncidentService(null, null, null, null, null, executor, 0, 0) {
+            @Override
+            public CompletableFuture<List<TrafficIncident>> fetchArea(double minLat, double minLng, double maxLat, double maxLng) {
+                return new CompletableFuture<>();
+            }
+        };
+        GridTrafficService service = new GridTrafficService(trafficApiService, trafficIncidentService, executor);
+        ReflectionTestUtils.setField(service, "deadlineMillis", 200L);
+        ReflectionTestUtils.setField(service, "maxGridSize", 10);
+
+        try {
+            long start = System.nanoTime();
+            GridTrafficService.GridResult result = service.fetchGridAsync(52.0, 4.0, 5.0, 3).get(5, TimeUnit.SECONDS);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis < 2000, "answered after " + elapsedMillis + "ms");
+
+            assertEquals(6, result.getPending());
+            for (GridTrafficService.GridCell cell : result.getCells()) {
+                if (cell.getLat() > 52.0 + 1e-9) {
+                    assertEquals(GridTrafficService.STATUS_OK, cell.getStatus());
+                } else if (isCenter(cell.getLat(), cell.getLng())) {
+                    // Missed the deadline, but a cached reading exists
+                    assertEquals(GridTrafficService.STATUS_STALE, cell.getStatus());
+                    assertSame(cached, cell.getData());
+                } else {
+                    assertEquals(GridTrafficService.STATUS_PENDING, cell.getStatus());
+                    assertNull(cell.getData());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean isCenter(double lat, double lng) {
+        return Math.abs(lat - 52.0) < 1e-9 && Math.abs(lng - 4.0) < 1e-9;
+    }
+}
@@ -0,0 +1,77 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:roadgraph;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","swarm.persist.flush-interval=PT1H","simulation.enabled=false"})
+public class RoadGraphServiceTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private RoadGraphService roadGraphService;
+
+    @Autowired
+    private SwarmService swarmService;
+
+    @Autowired
+    private SwarmState swarmState;
+
+    @Test
+    public void testRoutesFollowCongestion() {
+        swarmService.currentGrid();
+        // Even congestion everywhere: corner to corner takes 16 blocks on the 9x9 grid
+        swarmState.update(update -> {
+            for (int r = 0; r < update.base().roadCount(); r++) update.setRoadCongestion(r, 0.2);
+        });
+        RoadGraphService.Graph graph = roadGraphService.graph();
+        assertEquals(81, graph.nodeCount());
+        assertEquals(144, graph.linkedRoads());
+        int corner = graph.grid().indexOfIntersection(graph.grid().intersectionId(0));
+        int opposite = graph.nodeCount() - 1;
+        RoadGraphService.Route route = roadGraphService.route(graph, corner, opposite);
+        assertEquals(17, route.intersections().length);
+        assertEquals(16, route.roads().length);
+        double blockSeconds = route.travelSeconds() / 16;
+        assertTrue(blockSeconds > 0);
+        assertEquals(route.travelSeconds(), roadGraphService.matrix(graph, new int[]{corner}, new int[]{opposite})[0][0], 1e-6);
+
+        // Jam the first road of that route; the graph is reweighed, not rebuilt, and the route changes
+        int jammed = route.roads()[0];
+        long reweights = (Long) roadGraphService.getStats().get("reweights");
+        swarmState.update(update -> update.setRoadCongestion(jammed, 0.99));
+        RoadGraphService.Graph reweighed = roadGraphService.graph();
+        assertSame(graph.targets(), reweighed.targets());
+        assertEquals(reweights + 1, roadGraphService.getStats().get("reweights"));
+        RoadGraphService.Route around = roadGraphService.route(reweighed, corner, opposite);
+        assertFalse(Arrays.stream(around.roads()).anyMatch(r -> r == jammed));
+        // Another 16-block path; east-west blocks differ slightly in length between rows
+        assertEquals(16, around.roads().length);
+        assertEquals(route.travelSeconds(), around.travelSeconds(), route.travelSeconds() * 1e-3);
+    }
+
+    @Test
+    public void testMatrixMatchesRoutes() {
+        RoadGraphService.Graph graph = roadGraphService.graph();
+        int[] nodes = {0, 4, 40, 80, 8};
+        double[][] matrix = roadGraphService.matrix(graph, nodes, nodes);
+        for (int s = 0; s < nodes.length; s++) {
+            assertEquals(0.0, matrix[s][s], 0.0);
+            for (int t = 0; t < nodes.length; t++) {
+                // Roads are travelled both ways at the same cost
+                assertEquals(matrix[s][t], matrix[t][s], 1e-6);
+                if (s != t) assertEquals(roadGraphService.route(graph, nodes[s], nodes[t]).travelSeconds(), matrix[s][t], 1e-6);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:optimizer;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","swarm.persist.flush-interval=PT1H","simulation.enabled=false","optimizer.block-size=30"})
+public class SignalOptimizerServiceTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private SignalOptimizerService signalOptimizerService;
+
+    @Autowired
+    private SwarmService swarmService;
+
+    @Autowired
+    private SwarmState swarmState;
+
+    @Test
+    public void testOptimizationLowersModelledDelayAndAppliesTimings() {
+        swarmService.currentGrid();
+        SignalOptimizerService.Progress progress = new SignalOptimizerService.Progress(20, 60, true);
+        signalOptimizerService.optimize(progress);
+
+        assertEquals("done", progress.state());
+        assertTrue(progress.bestDelay() < progress.initialDelay(), progress.bestDelay() + " vs " + progress.initialDelay());
+        // 81 intersections in blocks of 30
+        assertEquals(3, progress.toMap().get("blocks"));
+        assertNotNull(progress.appliedVersion());
+
+        SwarmState.Grid grid = swarmState.current();
+        assertEquals(progress.appliedVersion().longValue(), grid.version());
+        for (int i = 0; i < grid.intersectionCount(); i++) {
+            assertTrue(grid.cycleDuration(i) >= 30 && grid.cycleDuration(i) <= 120);
+            int remaining = grid.timeRemaining(i, System.currentTimeMillis());
+            assertTrue(remaining >= 1 && remaining <= grid.cycleDuration(i));
+        }
+    }
+}
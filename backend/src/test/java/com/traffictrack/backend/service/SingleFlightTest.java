@@ -0,0 +1,38 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsShareOneExecution() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<Integer> upstream = new CompletableFuture<>();
+
+        CompletableFuture<Integer> first = flight.execute("k", () -> { calls.incrementAndGet(); return upstream; });
+        CompletableFuture<Integer> second = flight.execute("k", () -> { calls.incrementAndGet(); return upstream; });
+
+        assertSame(first, second);
+        upstream.complete(42);
+        assertEquals(42, second.join());
+        assertEquals(1, calls.get());
+        assertEquals(1L, flight.getStats().get("collapsed"));
+        assertEquals(0, flight.getStats().get("inFlight"));
+    }
+
+    @Test
+    public void testFailedCallIsNotReused() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        CompletableFuture<Integer> failed = flight.execute("k", () -> { throw new IllegalStateException("boom"); });
+        assertTrue(failed.isCompletedExceptionally());
+
+        CompletableFuture<Integer> retry = flight.execute("k", () -> CompletableFuture.completedFuture(7));
+        assertEquals(7, retry.join());
+    }
+}
@@ -0,0 +1,118 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import com.traffictrack.backend.model.Intersection;
+import com.traffictrack.backend.model.Road;
+import com.traffictrack.backend.repository.IntersectionRepository;
+import com.traffictrack.backend.repository.RoadRepository;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:swarm;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","swarm.changes.max-versions=2","swarm.persist.flush-interval=PT1H","simulation.enabled=false"})
+public class SwarmServiceTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private SwarmService swarmService;
+
+    @Autowired
+    private TrafficSimulationService trafficSimulationService;
+
+    @Autowired
+    private SwarmState swarmState;
+
+    @Autowired
+    private IntersectionRepository intersectionRepository;
+
+    @Autowired
+    private RoadRepository roadRepository;
+
+    @Test
+    public void testChangesSinceVersion() {
+        swarmService.getSwarmData();
+        Map<String, Object> snapshot = swarmService.getSwarmData();
+        long version = (Long) snapshot.get("version");
+        assertEquals(swarmService.getVersion(), version);
+
+        Map<String, Object> none = swarmService.getChanges(version);
+        assertEquals(false, none.get("full"));
+        assertEquals(0, ((List<?>) none.get("intersections")).size());
+
+        SwarmState.Grid before = swarmState.current();
+        trafficSimulationService.tick();
+        SwarmState.Grid after = swarmState.current();
+        Map<String, Object> delta = swarmService.getChanges(version);
+        assertEquals(false, delta.get("full"));
+        assertEquals(version + 1, delta.get("version"));
+        // Rows are listed exactly when the tick moved their congestion; countdowns run without commits
+        long movedIntersections = IntStream.range(0, after.intersectionCount())
+                .filter(i -> before.congestion(i) != after.congestion(i)).count();
+        assertEquals(movedIntersections, ((List<?>) delta.get("intersections")).size());
+        long movedRoads = IntStream.range(0, after.roadCount())
+                .filter(r -> before.roadCongestion(r) != after.roadCongestion(r)).count();
+        assertTrue(movedRoads > 0);
+        assertEquals(movedRoads, ((List<?>) delta.get("roads")).size());
+
+        // The cached snapshot is not served once a change has been committed
+        assertEquals(version + 1, swarmService.getSwarmData().get("version"));
+
+        // Unknown or evicted versions fall back to a full snapshot
+        assertEquals(true, swarmService.getChanges(-1).get("full"));
+        assertEquals(true, swarmService.getChanges(version + 100).get("full"));
+        trafficSimulationService.tick();
+        trafficSimulationService.tick();
+        Map<String, Object> behind = swarmService.getChanges(version);
+        assertEquals(true, behind.get("full"));
+        assertEquals(81, ((List<?>) behind.get("intersections")).size());
+        assertEquals(false, swarmService.getChanges(version + 1).get("full"));
+    }
+
+    @Test
+    public void testUpdatesAreServedFromMemoryAndWrittenBehind() {
+        swarmService.getSwarmData();
+        SwarmState.Grid before = swarmState.current();
+
+        trafficSimulationService.tick();
+        SwarmState.Grid after = swarmState.current();
+        int moved = IntStream.range(0, after.intersectionCount())
+                .filter(i -> before.congestion(i) != after.congestion(i)).findFirst().orElseThrow();
+        Map<String, Object> data = swarmService.getSwarmData();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> served = ((List<Map<String, Object>>) data.get("intersections")).stream()
+                .filter(i -> i.get("id").equals(after.intersectionId(moved))).findFirst().orElseThrow();
+        assertEquals(after.congestion(moved), served.get("congestion"));
+        assertEquals(after.cycleStart(moved), served.get("cycleStart"));
+        // The countdown is as of the response's timestamp
+        assertEquals(after.timeRemaining(moved, (Long) data.get("timestamp")), served.get("timeRemaining"));
+
+        // The database still has the old values until the flush
+        Intersection stored = intersectionRepository.findById(after.intersectionId(moved)).orElseThrow();
+        assertEquals(before.congestion(moved), stored.getCongestion(), 1e-12);
+
+        trafficSimulationService.tick();
+        swarmState.flush();
+        SwarmState.Grid latest = swarmState.current();
+        stored = intersectionRepository.findById(latest.intersectionId(0)).orElseThrow();
+        assertEquals(latest.congestion(0), stored.getCongestion(), 1e-12);
+        assertEquals(latest.cycleStart(0), stored.getCycleStartEpoch());
+        Road road = roadRepository.findById(latest.roadId(0)).orElseThrow();
+        assertEquals(latest.roadCongestion(0), road.getCongestion(), 1e-12);
+        assertEquals(0, swarmState.getStats().get("dirtyIntersections"));
+
+        // A reload from the tables sees what was flushed
+        swarmState.load();
+        assertEquals(latest.congestion(0), swarmState.current().congestion(0), 1e-12);
+        assertEquals(latest.roadCount(), swarmState.current().roadCount());
+    }
+}
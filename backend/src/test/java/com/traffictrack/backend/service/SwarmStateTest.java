@@ -0,0 +1,109 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.BitSet;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import com.traffictrack.backend.model.Intersection;
+import com.traffictrack.backend.repository.IntersectionRepository;
+import com.traffictrack.backend.repository.RoadRepository;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:swarmstate;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","swarm.persist.flush-interval=PT1H","swarm.grid.rows=120","swarm.grid.cols=100","swarm.grid.center-lat=40.0","swarm.grid.center-lng=-74.0","simulation.enabled=false"})
+public class SwarmStateTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private SwarmService swarmService;
+
+    @Autowired
+    private SwarmState swarmState;
+
+    @Autowired
+    private IntersectionRepository intersectionRepository;
+
+    @Autowired
+    private RoadRepository roadRepository;
+
+    @Test
+    public void testConfiguredGridIsBulkLoadedAndFlushed() {
+        swarmService.clearAllData();
+        swarmService.getSwarmData();
+        SwarmState.Grid grid = swarmState.current();
+        assertEquals(12_000, grid.intersectionCount());
+        // 120 rows of 99 horizontal roads plus 119 rows of 100 vertical ones
+        assertEquals(120 * 99 + 119 * 100, grid.roadCount());
+        assertEquals(12_000, intersectionRepository.count());
+        assertEquals(grid.roadCount(), roadRepository.count());
+
+        // Centered on the configured point
+        double midLat = (grid.lat(0) + grid.lat(grid.intersectionCount() - 1)) / 2;
+        double midLng = (grid.lng(0) + grid.lng(grid.intersectionCount() - 1)) / 2;
+        assertEquals(40.0, midLat, 1e-9);
+        assertEquals(-74.0, midLng, 1e-9);
+
+        // Ids are ascending, so lookups by id work on the primitive columns
+        long id = grid.intersectionId(5_000);
+        assertEquals(5_000, grid.indexOfIntersection(id));
+        assertTrue(grid.indexOfIntersection(-1) < 0);
+
+        // Only written rows are versioned and flushed
+        SwarmState.Commit commit = swarmState.update(update -> {
+            update.setCongestion(7, 0.123);
+            update.setCycleStart(7, 1_000_000L);
+            update.setCycleDuration(7, 45);
+            update.setRoadCongestion(9, 0.456);
+            update.setRoadCongestion(10, update.base().roadCongestion(10));
+        });
+        assertEquals(BitSet.valueOf(new long[]{1L << 7}), commit.intersections());
+        assertEquals(1, commit.roads().cardinality());
+        assertEquals(grid.congestion(8), commit.grid().congestion(8), 0.0);
+        assertEquals(0.123, commit.grid().congestion(7), 0.0);
+        assertTrue(grid.congestion(7) != 0.123 || grid.cycleStart(7) != 1_000_000L);
+
+        swarmState.flush();
+        assertEquals(2L, swarmState.getStats().get("rowsWritten"));
+        assertEquals(45, intersectionRepository.findById(grid.intersectionId(7)).orElseThrow().getCycleDuration());
+        assertEquals(1_000_000L, intersectionRepository.findById(grid.intersectionId(7)).orElseThrow().getCycleStartEpoch());
+        assertEquals(0.456, roadRepository.findById(grid.roadId(9)).orElseThrow().getCongestion(), 0.0);
+    }
+
+    @Test
+    public void testCountdownsAreDerivedFromTheCycleStart() {
+        swarmService.getSwarmData();
+        swarmState.update(update -> {
+            update.setCycleDuration(3, 60);
+            update.setCycleStart(3, 1_000_000L);
+        });
+        SwarmState.Grid grid = swarmState.current();
+
+        // North-south green for the first 30 seconds of every 60, counting down from 60
+        assertEquals(60, grid.timeRemaining(3, 1_000_000L));
+        assertTrue(grid.northSouthGreen(3, 1_000_000L));
+        assertEquals(31, grid.timeRemaining(3, 1_029_500L));
+        assertTrue(grid.northSouthGreen(3, 1_029_999L));
+        assertEquals(30, grid.timeRemaining(3, 1_030_000L));
+        assertTrue(!grid.northSouthGreen(3, 1_030_000L));
+        assertEquals(1, grid.timeRemaining(3, 1_059_999L));
+        assertEquals(60, grid.timeRemaining(3, 1_060_000L + 60_000L * 1_000));
+        // Before the stored start the cycle runs backwards in time just the same
+        assertEquals(50, grid.timeRemaining(3, 1_000_000L - 50_000L));
+
+        // Rows stored before cycle starts were: the countdown was current when the row was written
+        Intersection legacy = intersectionRepository.findById(grid.intersectionId(4)).orElseThrow();
+        legacy.setCycleDuration(60);
+        legacy.setTimeRemaining(20);
+        legacy.setCycleStartEpoch(null);
+        intersectionRepository.save(legacy);
+        long reloaded = System.currentTimeMillis();
+        int remaining = swarmState.load().timeRemaining(4, reloaded);
+        assertTrue(remaining <= 20 && remaining >= 18, "countdown " + remaining);
+    }
+}
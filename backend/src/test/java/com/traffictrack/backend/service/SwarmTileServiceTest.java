@@ -0,0 +1,123 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.traffictrack.backend.geo.BoundingBox;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:swarmtiles;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","swarm.tiles.detail-zoom=14","swarm.tiles.cells-per-side=4","simulation.enabled=false"})
+public class SwarmTileServiceTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private SwarmTileService swarmTileService;
+
+    @Autowired
+    private SwarmService swarmService;
+
+    @Autowired
+    private SwarmState swarmState;
+
+    @Autowired
+    private TrafficSimulationService trafficSimulationService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void testTileBounds() {
+        BoundingBox world = BoundingBox.ofTile(0, 0, 0);
+        assertEquals(-180, world.minLng(), 1e-9);
+        assertEquals(85.0511, world.maxLat(), 1e-4);
+        BoundingBox london = BoundingBox.ofTile(15, tileX(-0.09, 15), tileY(51.505, 15));
+        assertTrue(london.contains(51.505, -0.09));
+        assertNull(BoundingBox.ofTile(2, 4, 0));
+        assertNull(swarmTileService.getTile(3, -1, 0));
+    }
+
+    @Test
+    public void testDetailAndAggregatedTiles() throws Exception {
+        SwarmState.Grid grid = swarmService.currentGrid();
+
+        // The whole 9x9 grid sits in one zoom-10 tile: cells, together counting every intersection
+        JsonNode overview = read(swarmTileService.getTile(10, tileX(-0.09, 10), tileY(51.505, 10)));
+        assertEquals("cells", overview.get("lod").asText());
+        int counted = 0, roads = 0;
+        for (JsonNode cell : overview.get("cells")) {
+            counted += cell.get("intersections").asInt();
+            roads += cell.get("roads").asInt();
+            assertTrue(cell.get("bounds").size() == 4);
+        }
+        assertEquals(grid.intersectionCount(), counted);
+        assertEquals(grid.roadCount(), roads);
+        assertTrue(overview.get("cells").size() <= 16);
+
+        // Zoomed in, a tile lists only the intersections inside it
+        int z = 16, x = tileX(-0.09, z), y = tileY(51.505, z);
+        BoundingBox bounds = BoundingBox.ofTile(z, x, y);
+        JsonNode detail = read(swarmTileService.getTile(z, x, y));
+        assertEquals("features", detail.get("lod").asText());
+        int inside = 0;
+        for (int i = 0; i < grid.intersectionCount(); i++) {
+            if (bounds.contains(grid.lat(i), grid.lng(i))) inside++;
+        }
+        assertEquals(inside, detail.get("intersections").size());
+        assertTrue(inside > 0 && inside < grid.intersectionCount());
+        for (JsonNode road : detail.get("roads")) {
+            double minLat = Math.min(road.get("start").get(0).asDouble(), road.get("end").get(0).asDouble());
+            double maxLat = Math.max(road.get("start").get(0).asDouble(), road.get("end").get(0).asDouble());
+            assertTrue(minLat <= bounds.maxLat() && maxLat >= bounds.minLat());
+        }
+
+        SwarmTileService.Tile cached = swarmTileService.getTile(z, x, y);
+        assertSame(cached, swarmTileService.getTile(z, x, y));
+    }
+
+    @Test
+    public void testOnlyTilesWithChangedRowsAreCutAgain() throws Exception {
+        trafficSimulationService.tick();
+        SwarmState.Grid grid = swarmService.currentGrid();
+        int z = 16, last = grid.intersectionCount() - 1;
+        int changedX = tileX(grid.lng(0), z), changedY = tileY(grid.lat(0), z);
+        int quietX = tileX(grid.lng(last), z), quietY = tileY(grid.lat(last), z);
+        assertTrue(changedX != quietX || changedY != quietY);
+
+        SwarmTileService.Tile changed = swarmTileService.getTile(z, changedX, changedY);
+        SwarmTileService.Tile quiet = swarmTileService.getTile(z, quietX, quietY);
+        swarmState.update(update -> update.setCongestion(0, grid.congestion(0) > 0.5 ? 0.1 : 0.9));
+
+        SwarmTileService.Tile rebuilt = swarmTileService.getTile(z, changedX, changedY);
+        assertNotSame(changed, rebuilt);
+        assertNotEquals(changed.etag(), rebuilt.etag());
+        assertEquals(swarmService.getVersion(), read(rebuilt).get("version").asLong());
+        // Nothing inside the other tile changed, so it keeps its ETag and revalidates as a 304
+        assertSame(quiet, swarmTileService.getTile(z, quietX, quietY));
+    }
+
+    private JsonNode read(SwarmTileService.Tile tile) throws Exception {
+        return objectMapper.readTree(tile.json());
+    }
+
+    private static int tileX(double lng, int z) {
+        return (int) Math.floor((lng + 180) / 360 * (1 << z));
+    }
+
+    private static int tileY(double lat, int z) {
+        double rad = Math.toRadians(lat);
+        return (int) Math.floor((1 - Math.log(Math.tan(rad) + 1 / Math.cos(rad)) / Math.PI) / 2 * (1 << z));
+    }
+}
@@ -0,0 +1,137 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.TestPropertySource;
+
+import com.traffictrack.backend.model.ApiCredential;
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.provider.StaticTrafficProvider;
+import com.traffictrack.backend.provider.TrafficProvider;
+import com.traffictrack.backend.provider.TrafficProviderEngine;
+import com.traffictrack.backend.provider.TrafficProviderException;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:trafficapi;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","simulation.enabled=false"})
+public class TrafficApiServiceTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private TrafficDataCache trafficDataCache;
+
+    @Autowired
+    private TrafficWriteBehind trafficWriteBehind;
+
+    @Autowired
+    private TrafficHistoryStore trafficHistoryStore;
+
+    @Autowired
+    private LiveUpdateHub liveUpdateHub;
+
+    @Autowired
+    private StaticTrafficProvider staticProvider;
+
+    @Autowired
+    @Qualifier("trafficExecutor")
+    private ExecutorService trafficExecutor;
+
+    @Test
+    public void testReadingIsFetchedOnceThenServedFromCache() throws Exception {
+        StubEngine engine = new StubEngine(() -> CompletableFuture.completedFuture(reading(40.0, -74.0)));
+        TrafficApiService service = service(engine, new ApiCredential("stub", "key-1"));
+
+        TrafficData first = service.fetchLiveTrafficDataAsync(40.0, -74.0, 1.0).get(5, TimeUnit.SECONDS);
+        assertEquals("stub", first.getDataSource());
+        assertSame(first, service.fetchLiveTrafficDataAsync(40.0, -74.0, 1.0).get(5, TimeUnit.SECONDS));
+        assertEquals(1, engine.fetches.get());
+        assertSame(first, service.findStaleTrafficData(40.0, -74.0, 1.0));
+    }
+
+    @Test
+    public void testFailedFetchFallsBackToStatic() throws Exception {
+        StubEngine engine = new StubEngine(() -> CompletableFuture.failedFuture(new TrafficProviderException("stub", 500, "down")));
+        TrafficApiService service = service(engine, new ApiCredential("stub", "key-1"));
+
+        TrafficData data = service.fetchLiveTrafficDataAsync(41.0, -73.0, 1.0).get(5, TimeUnit.SECONDS);
+        assertEquals(StaticTrafficProvider.ID, data.getDataSource());
+        assertEquals(41.0, data.getLatitude());
+        assertEquals(1, engine.fetches.get());
+        // A failure is not cached, so the next lookup asks the provider again
+        service.fetchLiveTrafficDataAsync(41.0, -73.0, 1.0).get(5, TimeUnit.SECONDS);
+        assertEquals(2, engine.fetches.get());
+    }
+
+    @Test
+    public void testMissingCredentialServesStaticWithoutCallingProvider() throws Exception {
+        StubEngine engine = new StubEngine(() -> CompletableFuture.completedFuture(reading(42.0, -72.0)));
+        TrafficApiService service = service(engine, null);
+
+        TrafficData data = service.fetchLiveTrafficDataAsync(42.0, -72.0, 1.0).get(5, TimeUnit.SECONDS);
+        assertNotNull(data);
+        assertEquals(StaticTrafficProvider.ID, data.getDataSource());
+        assertEquals(0, engine.fetches.get());
+    }
+
+    private TrafficApiService service(TrafficProviderEngine engine, ApiCredential active) {
+        ApiCredentialService credentialService = new ApiCredentialService(null, 60) {
+            @Override
+            public ApiCredential getActiveCredential() {
+                return active;
+            }
+        };
+        return new TrafficApiService(credentialService, trafficDataCache, trafficWriteBehind, trafficHistoryStore,
+                liveUpdateHub, engine, staticProvider, trafficExecutor);
+    }
+
+    private static TrafficData reading(double lat, double lng) {
+        TrafficData data = new TrafficData(lat, lng, 1.0);
+        data.setDataSource("stub");
+        data.setCongestionLevel(0.3);
+        return data;
+    }
+
+    /**
+     * Engine whose provider calls are whatever the test hands out, counting them
+     */
+    private final class StubEngine extends TrafficProviderEngine {
+        private final Supplier<CompletableFuture<TrafficData>> behaviour;
+        private final AtomicInteger fetches = new AtomicInteger();
+        private final TrafficProvider stub = new StaticTrafficProvider() {
+            @Override
+            public String getId() {
+                return "stub";
+            }
+        };
+
+        StubEngine(Supplier<CompletableFuture<TrafficData>> behaviour) {
+            super(List.of(staticProvider), staticProvider, null, new MockEnvironment(), trafficExecutor);
+            this.behaviour = behaviour;
+        }
+
+        @Override
+        public TrafficProvider resolve(ApiCredential credential) {
+            return credential == null ? staticProvider : stub;
+        }
+
+        @Override
+        public CompletableFuture<TrafficData> fetch(ApiCredential credential, double lat, double lng, double radius) {
+            fetches.incrementAndGet();
+            return behaviour.get();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.repository.TrafficDataRepository;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:datacache;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","simulation.enabled=false","traffic.cache.max-entries=3","traffic.cache.ttl.default=60s","traffic.cache.ttl.tomtom=60s","traffic.cache.ttl.here=10m"})
+public class TrafficDataCacheTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private TrafficDataCache cache;
+
+    @Autowired
+    private TrafficDataRepository trafficDataRepository;
+
+    @Test
+    public void testTtlIsPerProvider() {
+        assertEquals(Duration.ofSeconds(60), cache.ttlFor("tomtom"));
+        assertEquals(Duration.ofMinutes(10), cache.ttlFor("here"));
+        assertEquals(Duration.ofSeconds(60), cache.ttlFor("unknown"));
+        assertEquals(Duration.ofSeconds(60), cache.ttlFor(null));
+
+        // Two minutes old: still fresh for a 10 minute TTL, expired for a 60 second one
+        TrafficData here = reading("here", 10.0, 10.0, LocalDateTime.now().minusMinutes(2));
+        TrafficDataCache.Key hereKey = cache.keyFor("here", 10.0, 10.0, 1.0);
+        cache.put(hereKey, here);
+        long hits = stat("hits");
+        assertSame(here, cache.get(hereKey));
+        assertEquals(hits + 1, stat("hits"));
+
+        TrafficData tomTom = reading("tomtom", 11.0, 11.0, LocalDateTime.now().minusMinutes(2));
+        TrafficDataCache.Key tomTomKey = cache.keyFor("tomtom", 11.0, 11.0, 1.0);
+        cache.put(tomTomKey, tomTom);
+        long misses = stat("misses");
+        assertNull(cache.get(tomTomKey));
+        assertEquals(misses + 1, stat("misses"));
+        // The expired reading is still there as a fallback
+        assertSame(tomTom, cache.getStale(tomTomKey));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        TrafficDataCache.Key first = cache.keyFor("tomtom", 20.0, 20.0, 1.0);
+        TrafficDataCache.Key second = cache.keyFor("tomtom", 21.0, 21.0, 1.0);
+        TrafficDataCache.Key third = cache.keyFor("tomtom", 22.0, 22.0, 1.0);
+        TrafficDataCache.Key fourth = cache.keyFor("tomtom", 23.0, 23.0, 1.0);
+        cache.put(first, reading("tomtom", 20.0, 20.0, LocalDateTime.now()));
+        cache.put(second, reading("tomtom", 21.0, 21.0, LocalDateTime.now()));
+        cache.put(third, reading("tomtom", 22.0, 22.0, LocalDateTime.now()));
+        // Touching the first makes the second the least recently used
+        assertNotNull(cache.getStale(first));
+
+        long evictions = stat("evictions");
+        cache.put(fourth, reading("tomtom", 23.0, 23.0, LocalDateTime.now()));
+        assertEquals(evictions + 1, stat("evictions"));
+        assertNull(cache.getStale(second));
+        assertNotNull(cache.getStale(first));
+        assertNotNull(cache.getStale(third));
+        assertNotNull(cache.getStale(fourth));
+        assertEquals(3, ((Number) cache.getStats().get("size")).intValue());
+    }
+
+    @Test
+    public void testStoredReadingWarmsTheCache() {
+        TrafficData stored = trafficDataRepository.save(reading("tomtom", 30.0, 30.0, LocalDateTime.now()));
+        trafficDataRepository.save(reading("tomtom", 31.0, 31.0, LocalDateTime.now().minusMinutes(5)));
+        TrafficDataCache.Key key = cache.keyFor("tomtom", 30.0, 30.0, 1.0);
+
+        long warmHits = stat("warmHits");
+        TrafficData warm = cache.get(key);
+        assertNotNull(warm);
+        assertEquals(stored.getId(), warm.getId());
+        assertEquals(warmHits + 1, stat("warmHits"));
+
+        // Now held in memory
+        long hits = stat("hits");
+        assertSame(warm, cache.get(key));
+        assertEquals(hits + 1, stat("hits"));
+
+        // A stored row older than the provider TTL is not used, nor one from another provider
+        assertNull(cache.get(cache.keyFor("tomtom", 31.0, 31.0, 1.0)));
+        assertNull(cache.get(cache.keyFor("here", 30.0, 30.0, 1.0)));
+    }
+
+    private long stat(String name) {
+        return ((Number) cache.getStats().get(name)).longValue();
+    }
+
+    private static TrafficData reading(String source, double lat, double lng, LocalDateTime fetchedAt) {
+        TrafficData data = new TrafficData(lat, lng, 1.0);
+        data.setDataSource(source);
+        data.setCongestionLevel(0.4);
+        data.setFetchedAt(fetchedAt);
+        return data;
+    }
+}
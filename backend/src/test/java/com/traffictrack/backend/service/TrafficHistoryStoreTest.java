@@ -0,0 +1,105 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.provider.StaticTrafficProvider;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:history;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","simulation.enabled=false","history.chunk-points=16"})
+public class TrafficHistoryStoreTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private TrafficHistoryStore store;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void testRangeAndStepReads() {
+        double lat = 40.7128, lng = -74.0060;
+        long start = System.currentTimeMillis() / 1000 - 3600;
+        for (int i = 0; i < 60; i++) {
+            assertTrue(store.record(store.tileFor(lat, lng), start + i * 60L, i % 2 == 0 ? 0.2 : 0.4));
+        }
+        assertFalse(store.record(store.tileFor(lat, lng), start, 0.9)); // older than the tile's latest reading
+
+        // A point elsewhere in the same ~150m tile reads the same series
+        TrafficHistoryStore.History raw = store.query(lat + 0.0001, lng, start + 600, start + 1199, 0);
+        assertEquals(store.tileFor(lat, lng), raw.tile());
+        assertEquals(10, raw.points().size());
+        assertEquals(start + 600, raw.points().get(0).time());
+        assertEquals(0.2, raw.points().get(0).congestion());
+
+        TrafficHistoryStore.History buckets = store.query(lat, lng, start, start + 3599, 600);
+        assertEquals(6, buckets.points().size());
+        for (TrafficHistoryStore.Point bucket : buckets.points()) {
+            assertEquals(10, bucket.samples());
+            assertEquals(0.3, bucket.congestion(), 1e-9);
+            assertEquals(0.2, bucket.min());
+            assertEquals(0.4, bucket.max());
+        }
+        assertTrue(store.query(0, 0, start, start + 3599, 0).points().isEmpty());
+    }
+
+    @Test
+    public void testStaticFallbackReadingsAreNotRecorded() {
+        double lat = -33.8688, lng = 151.2093;
+        TrafficData fallback = new TrafficData(lat, lng, 5.0);
+        fallback.setDataSource(StaticTrafficProvider.ID);
+        fallback.setCongestionLevel(0.6);
+        fallback.setFetchedAt(LocalDateTime.now());
+        store.record(fallback);
+
+        long now = System.currentTimeMillis() / 1000;
+        assertTrue(store.query(lat, lng, now - 60, now + 60, 0).points().isEmpty());
+
+        TrafficData live = new TrafficData(lat, lng, 5.0);
+        live.setDataSource("tomtom");
+        live.setCongestionLevel(0.3);
+        live.setFetchedAt(LocalDateTime.now());
+        store.record(live);
+        List<TrafficHistoryStore.Point> points = store.query(lat, lng, now - 60, now + 60, 0).points();
+        assertEquals(1, points.size());
+        assertEquals(0.3, points.get(0).congestion());
+    }
+
+    @Test
+    public void testFetchedReadingsArePersistedAndReloaded() {
+        double lat = 51.505, lng = -0.09;
+        LocalDateTime first = LocalDateTime.now().minusMinutes(40);
+        for (int i = 0; i < 40; i++) {
+            TrafficData data = new TrafficData(lat, lng, 5.0);
+            data.setCongestionLevel(i / 40.0);
+            data.setFetchedAt(first.plusMinutes(i));
+            store.record(data);
+        }
+        store.flush(true);
+
+        // A fresh store over the same table sees everything that was flushed
+        TrafficHistoryStore reloaded = new TrafficHistoryStore(dataSource, 7, 16, Duration.ofDays(7), Duration.ofHours(2), 25);
+        reloaded.load();
+        long from = System.currentTimeMillis() / 1000 - 3600;
+        long to = from + 7200;
+        List<TrafficHistoryStore.Point> points = store.query(lat, lng, from, to, 0).points();
+        assertEquals(40, points.size());
+        TrafficHistoryStore.History restored = reloaded.query(lat, lng, from, to, 0);
+        assertEquals(points.subList(0, 25), restored.points());
+        assertTrue(restored.truncated());
+        assertEquals(0L, ((Number) store.getStats().get("pendingChunks")).longValue());
+    }
+}
@@ -0,0 +1,134 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.TestPropertySource;
+
+import com.traffictrack.backend.model.ApiCredential;
+import com.traffictrack.backend.model.TrafficIncident;
+import com.traffictrack.backend.provider.StaticTrafficProvider;
+import com.traffictrack.backend.provider.TrafficProvider;
+import com.traffictrack.backend.provider.TrafficProviderEngine;
+import com.traffictrack.backend.repository.TrafficIncidentRepository;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:incidents;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","simulation.enabled=false"})
+public class TrafficIncidentServiceTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private TrafficDataCache trafficDataCache;
+
+    @Autowired
+    private TrafficIncidentRepository trafficIncidentRepository;
+
+    @Autowired
+    private ActiveIncidentIndex activeIncidentIndex;
+
+    @Autowired
+    private StaticTrafficProvider staticProvider;
+
+    @Autowired
+    @Qualifier("trafficExecutor")
+    private ExecutorService trafficExecutor;
+
+    @Test
+    public void testCachedIncidentsAreNotTheOnesPersisted() throws Exception {
+        TrafficIncidentService service = service();
+        List<String> ids = List.of("stub:1", "stub:2");
+
+        List<TrafficIncident> served = service.fetchArea(50.0, 5.0, 50.1, 5.1).get(5, TimeUnit.SECONDS);
+        assertEquals(2, served.size());
+        eventually(() -> trafficIncidentRepository.findByExternalIdIn(ids).size() == 2);
+
+        // The stored rows are copies; the served and cached instances are left as they were
+        for (TrafficIncident incident : served) {
+            assertNull(incident.getId());
+            assertNull(incident.getGeohash());
+        }
+        for (TrafficIncident row : trafficIncidentRepository.findByExternalIdIn(ids)) {
+            assertNotNull(row.getId());
+            assertNotNull(row.getGeohash());
+        }
+        assertSame(served, service.fetchArea(50.0, 5.0, 50.1, 5.1).get(5, TimeUnit.SECONDS));
+        assertEquals(2, activeIncidentIndex.query(49.9, 4.9, 50.2, 5.2, Set.of(), 0, 10).total());
+
+        // Reported again for an overlapping area: refreshed, not inserted twice
+        service.fetchArea(50.0, 5.0, 50.2, 5.2).get(5, TimeUnit.SECONDS);
+        eventually(() -> ((Number) service.getStats().get("refreshed")).longValue() == 2);
+        assertEquals(2, trafficIncidentRepository.findByExternalIdIn(ids).size());
+        assertEquals(2L, service.getStats().get("stored"));
+    }
+
+    private TrafficIncidentService service() {
+        ApiCredentialService credentialService = new ApiCredentialService(null, 60) {
+            @Override
+            public ApiCredential getActiveCredential() {
+                return new ApiCredential("stub", "key-1");
+            }
+        };
+        TrafficProvider areaProvider = new StaticTrafficProvider() {
+            @Override
+            public String getId() {
+                return "stub";
+            }
+
+            @Override
+            public boolean supportsAreaIncidents() {
+                return true;
+            }
+        };
+        TrafficProviderEngine engine = new TrafficProviderEngine(List.of(staticProvider), staticProvider, credentialService,
+                new MockEnvironment(), trafficExecutor) {
+            @Override
+            public TrafficProvider resolve(ApiCredential credential) {
+                return areaProvider;
+            }
+
+            @Override
+            public CompletableFuture<List<TrafficIncident>> fetchIncidents(ApiCredential credential,
+                                                                          double minLat, double minLng,
+                                                                          double maxLat, double maxLng) {
+                return CompletableFuture.completedFuture(List.of(
+                        incident("stub:1", 50.05, 5.05, "accident"),
+                        incident("stub:2", 50.06, 5.06, "roadwork")));
+            }
+        };
+        return new TrafficIncidentService(credentialService, engine, trafficDataCache, trafficIncidentRepository,
+                activeIncidentIndex, trafficExecutor, 256, 40000);
+    }
+
+    private static TrafficIncident incident(String externalId, double lat, double lng, String type) {
+        TrafficIncident incident = new TrafficIncident(lat, lng, type, "medium");
+        incident.setExternalId(externalId);
+        return incident;
+    }
+
+    /**
+     * Incidents are stored on a pool thread after the lookup has answered
+     */
+    private static void eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,118 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import com.traffictrack.backend.geo.Geohash;
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.model.TrafficIncident;
+import com.traffictrack.backend.repository.TrafficDataRepository;
+import com.traffictrack.backend.repository.TrafficIncidentRepository;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:proximity;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop"})
+public class TrafficProximityServiceTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private TrafficProximityService proximityService;
+
+    @Autowired
+    private TrafficDataRepository trafficDataRepository;
+
+    @Autowired
+    private TrafficIncidentRepository trafficIncidentRepository;
+
+    @BeforeEach
+    public void clear() {
+        trafficIncidentRepository.deleteAll();
+        trafficDataRepository.deleteAll();
+    }
+
+    @Test
+    public void testTileAndBucketAreAssignedOnSave() {
+        TrafficData saved = trafficDataRepository.save(reading(52.37, 4.89, 5.0, 0));
+        assertEquals(Geohash.encode(52.37, 4.89, Geohash.TILE_PRECISION), saved.getGeohash());
+        assertEquals(Geohash.radiusBucket(5.0), saved.getRadiusBucket());
+    }
+
+    @Test
+    public void testLatestMatchesNearbyPointsNotOnlyIdenticalOnes() {
+        trafficDataRepository.save(reading(52.37000, 4.89000, 5.0, 10));
+        TrafficData newest = trafficDataRepository.save(reading(52.37001, 4.89001, 5.0, 1));
+        trafficDataRepository.save(reading(52.37000, 4.89000, 0.5, 0)); // other radius bucket
+
+        Optional<TrafficData> latest = proximityService.findLatest(52.370005, 4.890005, 5.2, Duration.ofHours(1));
+        assertTrue(latest.isPresent());
+        assertEquals(newest.getId(), latest.get().getId());
+
+        assertTrue(proximityService.findLatest(10.0, 10.0, 5.0, Duration.ofHours(1)).isEmpty());
+        assertTrue(proximityService.findLatest(52.37, 4.89, 5.0, Duration.ofSeconds(30)).isEmpty());
+    }
+
+    @Test
+    public void testLatestFallsBackToAdjacentTile() {
+        String tile = Geohash.encode(52.37, 4.89, Geohash.TILE_PRECISION);
+        double[] box = Geohash.bounds(tile);
+        double lng = (box[1] + box[3]) / 2;
+        // Stored just across the northern edge of the query tile
+        TrafficData neighbour = trafficDataRepository.save(reading(box[2] + 0.0002, lng, 5.0, 0));
+
+        Optional<TrafficData> latest = proximityService.findLatest(box[2] - 0.0002, lng, 5.0, Duration.ofHours(1));
+        assertTrue(latest.isPresent());
+        assertEquals(neighbour.getId(), latest.get().getId());
+    }
+
+    @Test
+    public void testNearestRanksByDistanceWithOneReadingPerTile() {
+        double lat = 52.37, lng = 4.89;
+        // Roughly 0.1, 0.3, 0.5 and 0.7 km east of the query point
+        for (int i = 0; i < 4; i++) {
+            double offset = (0.1 + 0.2 * i) / (111.0 * Math.cos(Math.toRadians(lat)));
+            trafficDataRepository.save(reading(lat, lng + offset, 5.0, 5));
+            trafficDataRepository.save(reading(lat, lng + offset, 5.0, 1));
+        }
+
+        List<TrafficData> nearest = proximityService.findNearest(lat, lng, 5.0, 3, Duration.ofHours(1));
+        assertEquals(3, nearest.size());
+        double previous = -1;
+        for (TrafficData data : nearest) {
+            double distance = Geohash.distanceKm(lat, lng, data.getLatitude(), data.getLongitude());
+            assertTrue(distance >= previous);
+            previous = distance;
+            assertTrue(data.getFetchedAt().isAfter(LocalDateTime.now().minusMinutes(3)));
+        }
+    }
+
+    @Test
+    public void testNearestIncidents() {
+        trafficIncidentRepository.save(new TrafficIncident(52.3710, 4.8900, "accident", "high"));
+        trafficIncidentRepository.save(new TrafficIncident(52.3701, 4.8900, "roadwork", "low"));
+        TrafficIncident old = new TrafficIncident(52.3700, 4.8900, "closure", "high");
+        old.setReportedAt(LocalDateTime.now().minusHours(3));
+        trafficIncidentRepository.save(old);
+
+        List<TrafficIncident> nearest = proximityService.findNearestIncidents(52.37, 4.89, 5, Duration.ofHours(1));
+        assertEquals(2, nearest.size());
+        assertEquals("roadwork", nearest.get(0).getIncidentType());
+    }
+
+    private static TrafficData reading(double lat, double lng, double radius, int minutesAgo) {
+        TrafficData data = new TrafficData(lat, lng, radius);
+        data.setDataSource("tomtom");
+        data.setFetchedAt(LocalDateTime.now().minusMinutes(minutesAgo));
+        return data;
+    }
+}
@@ -0,0 +1,68 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.model.TrafficIncident;
+import com.traffictrack.backend.repository.TrafficDataRepository;
+import com.traffictrack.backend.repository.TrafficIncidentRepository;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:retention;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","traffic.retention.chunk-size=7","traffic.retention.chunk-pause-ms=0"})
+public class TrafficRetentionServiceTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private TrafficRetentionService retentionService;
+
+    @Autowired
+    private TrafficDataRepository trafficDataRepository;
+
+    @Autowired
+    private TrafficIncidentRepository trafficIncidentRepository;
+
+    @Test
+    public void testExpiredRowsAreDeletedInChunks() {
+        LocalDateTime old = LocalDateTime.now().minusDays(2);
+        List<TrafficData> readings = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            boolean expired = i < 30;
+            TrafficData data = new TrafficData(52.0, 4.0, 1.0);
+            data.setDataSource("tomtom");
+            if (expired) data.setFetchedAt(old);
+            // Recent incident on an expired reading goes with its reading
+            TrafficIncident incident = new TrafficIncident(52.0, 4.0, "accident", "high");
+            incident.setTrafficData(data);
+            data.setIncidents(new ArrayList<>(List.of(incident)));
+            readings.add(data);
+        }
+        trafficDataRepository.saveAll(readings);
+
+        List<TrafficIncident> standalone = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            TrafficIncident incident = new TrafficIncident(52.0, 4.0, "roadwork", "low");
+            if (i < 15) incident.setReportedAt(old);
+            standalone.add(incident);
+        }
+        trafficIncidentRepository.saveAll(standalone);
+
+        Map<String, Long> deleted = retentionService.run();
+
+        assertEquals(30L, deleted.get("trafficData"));
+        assertEquals(45L, deleted.get("trafficIncidents"));
+        assertEquals(10, trafficDataRepository.count());
+        assertEquals(15, trafficIncidentRepository.count());
+        assertEquals(0L, retentionService.run().get("trafficData"));
+    }
+}
@@ -0,0 +1,54 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:simulation;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","swarm.persist.flush-interval=PT1H","simulation.enabled=false","simulation.time-scale=30","simulation.entry-per-hour=0","simulation.exit-share=0","simulation.parallelism=4","simulation.partition-size=8"})
+public class TrafficSimulationServiceTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private TrafficSimulationService trafficSimulationService;
+
+    @Autowired
+    private SwarmState swarmState;
+
+    @Test
+    public void testTicksMoveTrafficWithoutLosingVehicles() {
+        // A closed network: nothing enters or leaves, so vehicles only move between roads
+        SwarmState.Commit first = trafficSimulationService.tick();
+        assertNotNull(first);
+        double vehicles = (Double) trafficSimulationService.getStats().get("vehicles");
+        assertTrue(vehicles > 0);
+
+        for (int k = 0; k < 20; k++) {
+            SwarmState.Grid before = swarmState.current();
+            SwarmState.Commit commit = trafficSimulationService.tick();
+            assertEquals(before.version() + 1, commit.grid().version());
+            assertFalse(commit.roads().isEmpty());
+            for (int r = 0; r < commit.grid().roadCount(); r++) {
+                double congestion = commit.grid().roadCongestion(r);
+                assertTrue(congestion >= 0 && congestion <= 1);
+            }
+        }
+        assertEquals(vehicles, (Double) trafficSimulationService.getStats().get("vehicles"), vehicles * 1e-9);
+
+        Map<String, Object> stats = trafficSimulationService.getStats();
+        assertEquals(21L, stats.get("ticks"));
+        // 30 simulated seconds at 50 km/h cover 0.42 km, inside one 1.4 km road: one step per tick
+        assertEquals(21L, stats.get("steps"));
+        assertTrue((Double) stats.get("meanTickMs") > 0);
+        assertEquals(4, stats.get("parallelism"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.traffictrack.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import com.traffictrack.backend.model.TrafficData;
+import com.traffictrack.backend.model.TrafficIncident;
+import com.traffictrack.backend.repository.TrafficDataRepository;
+import com.traffictrack.backend.repository.TrafficIncidentRepository;
+
+@SpringBootTest
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:writebehind;DB_CLOSE_DELAY=-1","spring.datasource.driverClassName=org.h2.Driver","spring.jpa.hibernate.ddl-auto=create-drop","traffic.persist.flush-interval-ms=50"})
+public class TrafficWriteBehindTest {
+
+    static {
+        System.setProperty("APP_ENC_KEY", "test-passphrase-12345");
+    }
+
+    @Autowired
+    private TrafficWriteBehind writeBehind;
+
+    @Autowired
+    private TrafficDataRepository trafficDataRepository;
+
+    @Autowired
+    private TrafficIncidentRepository trafficIncidentRepository;
+
+    @Test
+    public void testQueuedReadingsAreWrittenWithIncidents() throws InterruptedException {
+        long writtenBefore = (Long) writeBehind.getStats().get("written");
+        long dataBefore = trafficDataRepository.count();
+        long incidentsBefore = trafficIncidentRepository.count();
+
+        List<TrafficData> readings = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            TrafficData data = new TrafficData(52.0 + i * 0.001, 4.0, 1.0);
+            data.setDataSource("tomtom");
+            TrafficIncident incident = new TrafficIncident(52.0, 4.0, "accident", "high");
+            incident.setTrafficData(data);
+            data.setIncidents(new ArrayList<>(List.of(incident)));
+            readings.add(data);
+            writeBehind.enqueue(data);
+        }
+        // The flusher writes full batches at once and the remainder after the flush interval
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((Long) writeBehind.getStats().get("written") < writtenBefore + 120 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(dataBefore + 120, trafficDataRepository.count());
+        assertEquals(incidentsBefore + 120, trafficIncidentRepository.count());
+        for (TrafficData data : readings) {
+            assertNotNull(data.getId());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.traffictrack.backend.timeseries;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class GorillaChunkTest {
+
+    @Test
+    public void testIrregularPointsRoundTrip() {
+        Random random = new Random(7);
+        long[] times = new long[500];
+        double[] values = new double[500];
+        long time = 1_700_000_000L;
+        for (int i = 0; i < times.length; i++) {
+            // Mix repeated, jittered, large and backwards-shrinking gaps, and equal or arbitrary values
+            time += switch (i % 5) {
+                case 0 -> 0;
+                case 1 -> 60;
+                case 2 -> 60 + random.nextInt(5);
+                case 3 -> random.nextInt(100_000);
+                default -> 1L << 40;
+            };
+            times[i] = time;
+            values[i] = i % 4 == 0 && i > 0 ? values[i - 1] : random.nextDouble() * (i % 3 == 0 ? -1e6 : 1);
+        }
+        values[10] = Double.NaN;
+        values[11] = 0.0;
+        values[12] = -0.0;
+
+        GorillaChunk chunk = new GorillaChunk(times.length);
+        for (int i = 0; i < times.length; i++) assertTrue(chunk.append(times[i], values[i]));
+        assertTrue(chunk.isFull());
+        assertFalse(chunk.append(time + 1, 1.0));
+        assertPoints(times, values, chunk);
+
+        chunk.seal();
+        GorillaChunk restored = GorillaChunk.fromBytes(chunk.toBytes(), times.length);
+        assertEquals(times[0], restored.firstTime());
+        assertEquals(times[times.length - 1], restored.lastTime());
+        assertPoints(times, values, restored);
+    }
+
+    @Test
+    public void testRangeReadAndOrdering() {
+        GorillaChunk chunk = new GorillaChunk(100);
+        for (int i = 0; i < 50; i++) chunk.append(1000 + i * 60L, i / 10.0);
+        assertFalse(chunk.append(1000, 1.0)); // before the last point
+
+        List<Long> times = new ArrayList<>();
+        chunk.read(1000 + 10 * 60, 1000 + 19 * 60, (t, v) -> times.add(t));
+        assertEquals(10, times.size());
+        assertEquals(1000 + 10 * 60L, times.get(0));
+
+        List<Long> none = new ArrayList<>();
+        chunk.read(0, 999, (t, v) -> none.add(t));
+        assertTrue(none.isEmpty());
+    }
+
+    @Test
+    public void testRegularReadingsCompress() {
+        // A reading a minute with a value that changes slowly, as one tile's congestion does
+        GorillaChunk chunk = new GorillaChunk(120);
+        double value = 0.42;
+        for (int i = 0; i < 120; i++) {
+            if (i % 10 == 0) value = Math.round((value + 0.01) * 100) / 100.0;
+            chunk.append(1_700_000_000L + i * 60L, value);
+        }
+        chunk.seal();
+        assertTrue(chunk.sizeBytes() < 120 * 3, "expected under 3 bytes per point, got " + chunk.sizeBytes());
+    }
+
+    private static void assertPoints(long[] times, double[] values, GorillaChunk chunk) {
+        List<Long> readTimes = new ArrayList<>();
+        List<Double> readValues = new ArrayList<>();
+        chunk.read(Long.MIN_VALUE, Long.MAX_VALUE, (t, v) -> {
+            readTimes.add(t);
+            readValues.add(v);
+        });
+        assertArrayEquals(times, readTimes.stream().mapToLong(Long::longValue).toArray());
+        long[] expectedBits = new long[values.length];
+        long[] actualBits = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            expectedBits[i] = Double.doubleToRawLongBits(values[i]);
+            actualBits[i] = Double.doubleToRawLongBits(readValues.get(i));
+        }
+        assertArrayEquals(expectedBits, actualBits);
+    }
+}
@@ -4,7 +4,7 @@ import L from 'leaflet';
 import 'leaflet/dist/leaflet.css';
 import Chart from 'chart.js/auto';
 import './SwarmMap.css';
-import { fetchSwarmData, API_ORIGIN } from '../services/swarmApi';
+import { fetchSwarmChanges, fetchSwarmTile, openSwarmStream, API_ORIGIN } from '../services/swarmApi';
 import { fetchGridTrafficData, transformGridDataToIntersections, getCongestionColor, getRoadColor, setupAutoRefresh } from '../services/trafficService';
 import { Box, Button, Slider, TextField, Select, MenuItem, Typography, Paper, Stack, IconButton, Snackbar, Alert } from '@mui/material';
 import PlayArrowIcon from '@mui/icons-material/PlayArrow';
@@ -70,7 +70,7 @@ function SwarmMap(props, ref) {
   useEffect(() => { simRefs.current.step = stepCount; }, [stepCount]);
 
   // Keep local objects in refs so we don't re-create map/markers on each render
-  const objectsRef = useRef({ map: null, tileLayers: null, currentTile: null, trafficMarkers: [], swarmMarkers: [], roadLayers: [], vehicles: [], chart: null, intervals: [] });
+  const objectsRef = useRef({ map: null, tileLayers: null, currentTile: null, trafficMarkers: [], swarmMarkers: [], roadLayers: [], vehicles: [], chart: null, intervals: [], backendFeatures: { intersections: new Map(), roads: new Map() }, backendLights: new Map() });
 
   // Initialize map + chart once
   useEffect(() => {
@@ -143,6 +143,18 @@ function SwarmMap(props, ref) {
   function generateSwarmAgents(center, radius) { const a=[]; const ac = parseInt(simRefs.current.swarmSize || 20,10); for(let i=0;i<ac;i++){ const lat = center.lat + (Math.random()*radius - radius/2)*0.8; const lng = center.lng + (Math.random()*radius - radius/2)*0.8; const ag = L.marker([lat,lng],{icon:L.divIcon({className:'swarm-marker',html:`<div style="background-color:#FF5722; width:12px; height:12px; border-radius:50%; border:2px solid white;"></div>`,iconSize:[16,16]})}).addTo(objectsRef.current.map); a.push(ag);} return a; }
 
   // core draw function using React state updates instead of DOM writes
+  // Traffic light list from the backend signals nearest the map centre; their cycle start and
+  // duration drive the countdown. The local simulation's lights are only listed until these arrive.
+  const publishBackendLights = useCallback(() => {
+    const o = objectsRef.current;
+    if (!o.map || o.backendLights.size === 0) return;
+    const center = o.map.getCenter();
+    const nearest = [...o.backendLights.values()]
+      .sort((a, b) => center.distanceTo([a.lat, a.lng]) - center.distanceTo([b.lat, b.lng]))
+      .slice(0, 50);
+    setTrafficLights(nearest.map(l => ({ name: l.name, cycleStart: l.cycleStart, cycleDuration: l.cycleDuration, timeRemaining: l.timeRemaining })));
+  }, []);
+
   const drawTrafficVisualization = useCallback(async (center, radius, forceLive = false) => {
     const o = objectsRef.current;
     // clear old
@@ -207,8 +219,10 @@ function SwarmMap(props, ref) {
     o.vehicles = generateVehicles(generatedRoads);
     o.swarmMarkers = generateSwarmAgents(center, radius);
 
-    // update traffic light list state
-    setTrafficLights(intersections.map(i => ({ name: i.name, timeRemaining: i.timeRemaining })));
+    // update traffic light list state, unless backend signals are already listed
+    if (o.backendLights.size === 0) {
+      setTrafficLights(intersections.map(i => ({ name: i.name, timeRemaining: i.timeRemaining, cycleDuration: i.cycleDuration })));
+    }
   }, [generateGridIntersections, generateGridRoads, useLiveData]);
 
   // expose imperative handle for search from parent header
@@ -273,7 +287,10 @@ function SwarmMap(props, ref) {
 
       // update statuses
   setSystemStatus(s => ({ ...s, dataRefresh: (newStep % 15 < 2) ? 'Syncing...' : 'Active', optimizationAI: (newStep % 20 < 8) ? 'Analyzing' : (newStep % 20 < 10) ? 'Optimizing...' : 'Idle' }));
-  setTrafficLights(t => t.map((tl, idx) => ({ ...tl, timeRemaining: Math.max(0, (tl.timeRemaining || 0) - 1) })));
+  // backend signals carry their cycle start, so the countdown is read off the clock instead of drifting
+  setTrafficLights(t => t.map((tl, idx) => ({ ...tl, timeRemaining: tl.cycleStart != null && tl.cycleDuration
+    ? tl.cycleDuration - Math.floor((((Date.now() - tl.cycleStart) % (tl.cycleDuration * 1000)) + tl.cycleDuration * 1000) % (tl.cycleDuration * 1000) / 1000)
+    : Math.max(0, (tl.timeRemaining || 0) - 1) })));
   // notify parent of status and step
   try { props.onStatusChange && props.onStatusChange(simRefs.current.status); } catch (e) {}
     };
@@ -283,20 +300,167 @@ function SwarmMap(props, ref) {
     return () => clearInterval(id);
   }, [stepCount]);
 
-  // live backend polling
+  // live backend updates: pushed over server-sent events, polled for changes when unavailable.
+  // Each frame carries only changed rows, which are restyled in place on the backend layer;
+  // frames never redraw the local simulation or call the provider grid endpoint.
   useEffect(() => {
+    const map = objectsRef.current.map;
+    if (!map) return;
+    const readingsLayer = L.layerGroup().addTo(map);
+    const readingMarkers = new Map();
+
+    // last swarm version applied, so a (re)connect can catch up on what it missed
+    let version = null;
+    const applySwarm = data => {
+      if (data.version != null && (version == null || data.version > version)) version = data.version;
+      const { backendFeatures: features, backendLights: lights } = objectsRef.current;
+      let lightsChanged = false;
+      (data.intersections || []).forEach(i => {
+        if (lights.has(i.id)) {
+          lights.set(i.id, i);
+          lightsChanged = true;
+        }
+        const marker = features.intersections.get(i.id);
+        if (!marker) return;
+        marker.setStyle({ fillColor: getCongestionColor(i.congestion) });
+        marker.setTooltipContent(`${i.name}: ${Math.round(i.congestion * 100)}%`);
+      });
+      (data.roads || []).forEach(r => {
+        const line = features.roads.get(r.id);
+        if (line) line.setStyle({ color: getRoadColor(r.congestion) });
+      });
+      if (lightsChanged) publishBackendLights();
+    };
+    const applyTraffic = data => {
+      (data.readings || []).forEach(r => {
+        const key = `${r.lat},${r.lng}`;
+        let marker = readingMarkers.get(key);
+        if (!marker) {
+          marker = L.circleMarker([r.lat, r.lng], { radius: 6, weight: 2, color: '#4CAF50', fillOpacity: 0.8 }).bindTooltip('').addTo(readingsLayer);
+          readingMarkers.set(key, marker);
+        }
+        marker.setStyle({ fillColor: getCongestionColor(r.congestion) });
+        marker.setTooltipContent(`Live reading: ${Math.round(r.congestion * 100)}% congestion`);
+      });
+    };
+    const catchUp = async since => {
+      const data = await fetchSwarmChanges(since);
+      if (data) applySwarm(data);
+    };
+    const applyFrame = (type, data) => {
+      if (type === 'hello') {
+        // the first greeting only sets the baseline; the tiles hold the state up to it
+        if (version == null) version = data.version;
+        else if (data.version > version) catchUp(version);
+      } else if (type === 'swarm') applySwarm(data);
+      else applyTraffic(data);
+    };
+
+    let stream = null;
+    const connect = () => {
+      if (stream) stream.close();
+      // Readings are kept for the subscribed viewport only
+      readingsLayer.clearLayers();
+      readingMarkers.clear();
+      stream = openSwarmStream(map.getBounds(), applyFrame);
+    };
+    connect();
+    if (stream) {
+      map.on('moveend', connect);
+      return () => {
+        map.off('moveend', connect);
+        if (stream) stream.close();
+        map.removeLayer(readingsLayer);
+      };
+    }
+
     const id = setInterval(async () => {
       try {
-        const data = await fetchSwarmData();
-        if (data && data.intersections && Array.isArray(data.intersections) && data.intersections.length) {
-          // clear and render
-          drawTrafficVisualization(objectsRef.current.map.getCenter(), 0.05);
-        }
+        await catchUp(version);
       } catch (e) { /* ignore */ }
     }, 5000);
     objectsRef.current.intervals.push(id);
-    return () => clearInterval(id);
-  }, [drawTrafficVisualization]);
+    return () => { clearInterval(id); map.removeLayer(readingsLayer); };
+  },[publishBackendLights]);
+
+  // backend swarm layer, fetched per web map tile for the viewport only
+  useEffect(() => {
+    const map = objectsRef.current.map;
+    if (!map) return;
+    const layer = L.layerGroup().addTo(map);
+    let generation = 0;
+
+    const tileX = (lng, n) => Math.min(n - 1, Math.max(0, Math.floor((lng + 180) / 360 * n)));
+    const tileY = (lat, n) => {
+      const r = lat * Math.PI / 180;
+      return Math.min(n - 1, Math.max(0, Math.floor((1 - Math.log(Math.tan(r) + 1 / Math.cos(r)) / Math.PI) / 2 * n)));
+    };
+
+    const refresh = async () => {
+      const run = ++generation;
+      const bounds = map.getBounds();
+      // Coarser tiles when the viewport would need many; the server aggregates them into cells
+      let z = Math.max(0, Math.min(18, Math.round(map.getZoom())));
+      let range;
+      for (;;) {
+        const n = 2 ** z;
+        range = { z, x0: tileX(bounds.getWest(), n), x1: tileX(bounds.getEast(), n), y0: tileY(bounds.getNorth(), n), y1: tileY(bounds.getSouth(), n) };
+        if (z === 0 || (range.x1 - range.x0 + 1) * (range.y1 - range.y0 + 1) <= 16) break;
+        z -= 1;
+      }
+      const requests = [];
+      for (let x = range.x0; x <= range.x1; x++) {
+        for (let y = range.y0; y <= range.y1; y++) requests.push(fetchSwarmTile(range.z, x, y));
+      }
+      const tiles = await Promise.all(requests);
+      if (run !== generation) return;
+
+      layer.clearLayers();
+      // Markers by row id, so stream frames can restyle them without refetching tiles
+      const features = { intersections: new Map(), roads: new Map() };
+      const lights = new Map();
+      tiles.forEach(tile => {
+        if (!tile) return;
+        if (tile.lod === 'cells') {
+          (tile.cells || []).forEach(c => {
+            const congestion = c.congestion != null ? c.congestion : (c.roadCongestion || 0);
+            L.rectangle([[c.bounds[1], c.bounds[0]], [c.bounds[3], c.bounds[2]]], { weight: 0, fillColor: getCongestionColor(congestion), fillOpacity: 0.35 })
+              .bindTooltip(`${c.intersections} intersections, ${Math.round(congestion * 100)}% congestion`)
+              .addTo(layer);
+          });
+        } else {
+          // A road crossing several tiles is listed by each of them; draw it once
+          (tile.roads || []).forEach(r => {
+            if (features.roads.has(r.id)) return;
+            features.roads.set(r.id, L.polyline([r.start, r.end], { color: getRoadColor(r.congestion), weight: 2, opacity: 0.6, interactive: false }).addTo(layer));
+          });
+          (tile.intersections || []).forEach(i => lights.set(i.id, i));
+          (tile.intersections || []).forEach(i => features.intersections.set(i.id,
+            L.circleMarker([i.lat, i.lng], { radius: 4, weight: 1, color: '#166088', fillColor: getCongestionColor(i.congestion), fillOpacity: 0.7 })
+              .bindTooltip(`${i.name}: ${Math.round(i.congestion * 100)}%`)
+              .addTo(layer)));
+        }
+      });
+      objectsRef.current.backendFeatures = features;
+      // Zoomed out to aggregated cells there are no individual signals; keep the last list
+      if (lights.size > 0) {
+        objectsRef.current.backendLights = lights;
+        publishBackendLights();
+      }
+    };
+
+    refresh();
+    map.on('moveend', refresh);
+    // Tiles are served no-cache with ETags, so the browser revalidates them; a tile keeps its
+    // ETag until a row inside it changes, so quiet tiles come back as 304s from the HTTP cache
+    const id = setInterval(refresh, 10000);
+    return () => {
+      generation++;
+      clearInterval(id);
+      map.off('moveend', refresh);
+      map.removeLayer(layer);
+    };
+  },[publishBackendLights]);
 
   // announce API service changes for assistive tech
   useEffect(() => {
@@ -14,4 +14,42 @@ export async function fetchSwarmData() {
   }
 }
 
-export default { fetchSwarmData };
+// Changes since a version from a previous response; without one the server sends a full snapshot
+export async function fetchSwarmChanges(since) {
+  try {
+    const query = since == null ? '' : `?since=${encodeURIComponent(since)}`;
+    const res = await fetch(`${BASE}/swarm/changes${query}`);
+    if (!res.ok) throw new Error('Network error');
+    return res.json();
+  } catch (e) {
+    return null;
+  }
+}
+
+// One web map tile of the swarm: { lod: 'features', intersections, roads } when zoomed in,
+// { lod: 'cells', cells } of aggregated congestion further out
+export async function fetchSwarmTile(z, x, y) {
+  try {
+    const res = await fetch(`${BASE}/swarm/tiles/${z}/${x}/${y}`);
+    if (!res.ok) throw new Error('Network error');
+    return res.json();
+  } catch (e) {
+    return null;
+  }
+}
+
+// Server-sent swarm and traffic updates for the area inside a Leaflet LatLngBounds.
+// 'hello' carries the current swarm version and arrives on every (re)connect, including the
+// browser's automatic ones, so changes missed in between can be fetched with fetchSwarmChanges.
+// Returns null when the browser has no EventSource.
+export function openSwarmStream(bounds, onUpdate) {
+  if (typeof EventSource === 'undefined') return null;
+  const bbox = [bounds.getWest(), bounds.getSouth(), bounds.getEast(), bounds.getNorth()].join(',');
+  const source = new EventSource(`${BASE}/stream?bbox=${encodeURIComponent(bbox)}`);
+  ['hello', 'swarm', 'traffic'].forEach(type => source.addEventListener(type, e => {
+    try { onUpdate(type, JSON.parse(e.data)); } catch (err) { /* ignore malformed frame */ }
+  }));
+  return source;
+}
+
+export default { fetchSwarmData, fetchSwarmChanges, fetchSwarmTile, openSwarmStream };
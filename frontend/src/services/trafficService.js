@@ -140,7 +140,8 @@ export function transformGridDataToIntersections(gridData, existingIntersections
       point => point.gridX === intersection.gridX && point.gridY === intersection.gridY
     );
 
-    if (matchingPoint) {
+    // Pending cells missed the backend deadline and carry no readings yet
+    if (matchingPoint && matchingPoint.status !== 'pending') {
       return {
         ...intersection,
         congestion: matchingPoint.congestion || intersection.congestion,